@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.api;
+
+/**
+ * A read-only list of byte values, which avoids boxing every element. 
+ * 
+ * @author yqi
+ */
+public interface ByteList {
+	
+	/**
+	 * @return the number of elements in the list
+	 */
+	public int size();
+	
+	/**
+	 * Get the element at the position
+	 * @param index the position of the element in the list
+	 * @return the element at the position
+	 */
+	public byte get(int index);
+	
+	/**
+	 * Copy a range of elements into the array
+	 * @param srcIndex the position of the first element to copy
+	 * @param dst the destination array
+	 * @param dstOffset the position in the destination array
+	 * @param length the number of elements to copy
+	 */
+	public void copyTo(int srcIndex, byte[] dst, int dstOffset, int length);
+	
+	/**
+	 * @return a new array containing all elements in the list
+	 */
+	public byte[] toArray();
+}
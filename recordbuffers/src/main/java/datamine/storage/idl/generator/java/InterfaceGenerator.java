@@ -94,12 +94,13 @@ public class InterfaceGenerator implements CodeGenerator, ElementVisitor {
 				"{fieldSetter}",
 				"{fieldDefaultValue}",
 				"{fieldListSize}",
+				"{fieldListView}",
 				"{setDerivedImplementation}",
 				"}"
 		};
 		
 		String[] importString = {
-				"import datamine.storage.api.BaseInterface;",
+				"import datamine.storage.api.*;",
 				"",
 				"import java.util.List;"
 		};
@@ -134,6 +135,10 @@ public class InterfaceGenerator implements CodeGenerator, ElementVisitor {
 			if (((CollectionFieldType) type).getCollectionType() == CollectionType.LIST) {
 				currentTemplate.fillFields("fieldListSize", 
 						templateGenerator.getListSizeTemplate());	
+				if (getListViewTypeName(field) != null) {
+					currentTemplate.fillFields("fieldListView", 
+							templateGenerator.getListViewTemplate());
+				}
 			} else {
 				throw new IllegalArgumentException("Not support the type of " + 
 						((CollectionFieldType) type).getCollectionType());
@@ -229,6 +234,45 @@ public class InterfaceGenerator implements CodeGenerator, ElementVisitor {
 				.to(CaseFormat.UPPER_CAMEL, field.getName())).append("Size").toString();
 	}
 	
+	public static String getListViewGetterName(Field field) {
+		return new StringBuilder().append("get").append(CaseFormat.LOWER_UNDERSCORE
+				.to(CaseFormat.UPPER_CAMEL, field.getName())).append("View").toString();
+	}
+	
+	/**
+	 * Get the type of the primitive view of a list, e.g., IntList for a list of 
+	 * integers.
+	 *  
+	 * @param field the field of interest
+	 * @return the type of view, or null if the field is not a list of fixed-length primitives
+	 */
+	public static String getListViewTypeName(Field field) {
+		FieldType type = field.getType();
+		if (!(type instanceof CollectionFieldType) || 
+			!(((CollectionFieldType) type).getElementType() instanceof PrimitiveFieldType)) {
+			return null;
+		}
+		
+		switch (((PrimitiveFieldType) ((CollectionFieldType) type).getElementType()).getPrimitiveType()) {
+		case BOOL:
+			return "BoolList";
+		case BYTE:
+			return "ByteList";
+		case INT16:
+			return "ShortList";
+		case INT32:
+			return "IntList";
+		case INT64:
+			return "LongList";
+		case FLOAT:
+			return "FloatList";
+		case DOUBLE:
+			return "DoubleList";
+		default:
+			return null;
+		}
+	}
+	
 	/**
 	 * Define the template for {@link InterfaceGenerator}.
 	 * 
@@ -301,5 +345,18 @@ public class InterfaceGenerator implements CodeGenerator, ElementVisitor {
 			
 			return template;
 		}
+		
+		public CodeTemplate getListViewTemplate() {
+			String[] codeString = {
+					"		public {viewType} {getter}();",
+			};
+			
+			CodeTemplate template = new CodeTemplate(codeString);
+			
+			template.fillFields("viewType", getListViewTypeName(field));
+			template.fillFields("getter", getListViewGetterName(field));
+			
+			return template;
+		}
 	}
 }
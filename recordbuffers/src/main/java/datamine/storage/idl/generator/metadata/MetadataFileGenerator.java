@@ -86,7 +86,8 @@ public class MetadataFileGenerator implements ElementVisitor,
 				"",
 				"	private {metadataClassName}(short id, String name, FieldType type, ",
 				"		boolean isRequired, Object defaultValue, boolean isDesSorted, ",
-				"		boolean isAscSorted, boolean isFrequentlyUsed, boolean isDerived) {",
+				"		boolean isAscSorted, boolean isFrequentlyUsed, boolean isDerived, ",
+				"		boolean hasLargeList) {",
 				"		field = Field.newBuilder(id, name, type).", 
 				"				withDefaultValue(defaultValue).", 
 				"				isRequired(isRequired).", 
@@ -94,6 +95,7 @@ public class MetadataFileGenerator implements ElementVisitor,
 				"				isAscSorted(isAscSorted).", 
 				"				isFrequentlyUsed(isFrequentlyUsed).", 
 				"				isDerived(isDerived).", 
+				"				hasLargeList(hasLargeList).", 
 				"				build();",
 				"	}",
 				"",
@@ -180,6 +182,7 @@ public class MetadataFileGenerator implements ElementVisitor,
 		sb.append(field.isAscSortKey() ? ", true" : ", false");
 		sb.append(field.isFrequentlyUsed() ? ", true" : ", false");
 		sb.append(field.isDerived()? ", true" : ", false");
+		sb.append(field.hasLargeList()? ", true" : ", false");
 		sb.append("),");		
 		
 		CodeTemplate code = new CodeTemplate(new String[]{sb.toString()});
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The counters shared by the allocators reusing buffers: 
+ * <i> allocations: the number of buffers allocated
+ * <i> hits: the number of allocations served by a buffer for reuse
+ * <i> retained bytes: the number of bytes kept for reuse at the moment
+ * 
+ * @author yqi
+ */
+public abstract class AbstractBufferAllocator implements BufferAllocator {
+
+	private final AtomicLong numOfAllocations = new AtomicLong();
+	private final AtomicLong numOfHits = new AtomicLong();
+	private final AtomicLong numOfRetainedBytes = new AtomicLong();
+	
+	protected void countAllocation(boolean isHit) {
+		numOfAllocations.incrementAndGet();
+		if (isHit) {
+			numOfHits.incrementAndGet();
+		}
+	}
+	
+	protected void countRetainedBytes(long delta) {
+		numOfRetainedBytes.addAndGet(delta);
+	}
+	
+	/**
+	 * @return the number of buffers allocated
+	 */
+	public long getNumOfAllocations() {
+		return numOfAllocations.get();
+	}
+	
+	/**
+	 * @return the number of allocations served by a buffer for reuse
+	 */
+	public long getNumOfHits() {
+		return numOfHits.get();
+	}
+	
+	/**
+	 * @return the ratio of allocations served by a buffer for reuse, or 0 
+	 * if nothing is allocated
+	 */
+	public double getHitRate() {
+		long total = numOfAllocations.get();
+		return total == 0 ? 0 : (double) numOfHits.get() / total;
+	}
+	
+	/**
+	 * @return the number of bytes kept for reuse
+	 */
+	public long getNumOfRetainedBytes() {
+		return numOfRetainedBytes.get();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s[allocations=%d, hits=%d, retainedBytes=%d]", 
+				getClass().getSimpleName(), getNumOfAllocations(), getNumOfHits(), 
+				getNumOfRetainedBytes());
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * The allocator carving buffers out of large chunks for a batch of records, 
+ * e.g., the ones of a block being read or written. 
+ * 
+ * <p>
+ * Releasing a single buffer does nothing; instead all buffers of the batch are
+ * released at once with {@link #releaseAll()}, after which the chunks are 
+ * reused by the next batch. A buffer larger than the chunk size gets its own 
+ * array, which is not reused. 
+ * </p>
+ * 
+ * <p>
+ * The instance is not thread-safe, i.e., every thread works with its own arena.
+ * </p>
+ * 
+ * @author yqi
+ */
+public class ArenaBufferAllocator extends AbstractBufferAllocator {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+	
+	private final int chunkSize;
+	private final List<byte[]> chunkList = Lists.newArrayList();
+	private int currentChunk = -1;
+	private int currentPosition = 0;
+	
+	public ArenaBufferAllocator() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+	
+	/**
+	 * @param chunkSize the number of bytes of a chunk
+	 */
+	public ArenaBufferAllocator(int chunkSize) {
+		Preconditions.checkArgument(chunkSize > 0);
+		this.chunkSize = chunkSize;
+	}
+	
+	@Override
+	public ByteBuffer allocate(int size) {
+		Preconditions.checkArgument(size >= 0);
+		if (size > chunkSize) {
+			countAllocation(false);
+			return ByteBuffer.allocate(size);
+		}
+		
+		boolean isHit = true;
+		if (currentChunk < 0 || currentPosition + size > chunkSize) {
+			// move to the next chunk, which is created when all are in use
+			++currentChunk;
+			currentPosition = 0;
+			if (currentChunk == chunkList.size()) {
+				chunkList.add(new byte[chunkSize]);
+				isHit = false;
+			} else {
+				countRetainedBytes(-chunkSize);
+			}
+		}
+		countAllocation(isHit);
+		
+		ByteBuffer buffer = ByteBuffer.wrap(chunkList.get(currentChunk), currentPosition, size).slice();
+		currentPosition += size;
+		return buffer;
+	}
+
+	@Override
+	public void release(ByteBuffer buffer) {
+		// released in bulk by releaseAll()
+	}
+	
+	/**
+	 * Release all buffers allocated since the last call, so that the chunks 
+	 * are reused from the beginning. None of those buffers can be used after. 
+	 */
+	public void releaseAll() {
+		int numOfChunksInUse = currentChunk + 1;
+		countRetainedBytes((long) numOfChunksInUse * chunkSize);
+		currentChunk = -1;
+		currentPosition = 0;
+	}
+	
+	/**
+	 * @return the number of chunks created
+	 */
+	public int getNumOfChunks() {
+		return chunkList.size();
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The allocator of the heap storage for {@link RecordBuffer}.
+ * 
+ * <p>
+ * A buffer allocated starts at the position 0 with at least the number of 
+ * bytes requested. It can be returned for reuse with {@link #release(ByteBuffer)}
+ * once no record refers to it; after that it must not be used any more.
+ * </p>
+ * 
+ * @see HeapBufferAllocator
+ * @see PooledBufferAllocator
+ * @see ArenaBufferAllocator
+ * @author yqi
+ */
+public interface BufferAllocator {
+
+	/**
+	 * Allocate a heap buffer
+	 * 
+	 * @param size the number of bytes required
+	 * @return a buffer whose capacity is at least the size
+	 */
+	public ByteBuffer allocate(int size);
+	
+	/**
+	 * Return a buffer allocated by the instance for reuse
+	 * 
+	 * @param buffer the buffer allocated by the instance
+	 */
+	public void release(ByteBuffer buffer);
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers to move bytes in and out of a {@link ByteBuffer} regardless of
+ * its backing storage.
+ *
+ * <p>
+ * A heap buffer is accessed through its array directly, while a direct or
+ * memory-mapped buffer is accessed through a duplicate so that the position
+ * and limit of the input are never changed. All indexes are absolute.
+ * </p>
+ *
+ * @author yqi
+ */
+public final class BufferUtils {
+
+	/**
+	 * The size of the temporary array used when writing a direct buffer out
+	 */
+	private static final int COPY_CHUNK_SIZE = 8 * 1024;
+
+	private BufferUtils() {}
+
+	/**
+	 * Copy the bytes of the buffer into an array
+	 *
+	 * @param src the source buffer
+	 * @param index the absolute position in the source buffer
+	 * @param dst the destination array
+	 * @param dstOffset the position in the destination array
+	 * @param length the number of bytes to copy
+	 */
+	public static void getBytes(ByteBuffer src, int index, byte[] dst, int dstOffset, int length) {
+		if (src.hasArray()) {
+			System.arraycopy(src.array(), src.arrayOffset() + index, dst, dstOffset, length);
+		} else {
+			ByteBuffer dup = src.duplicate();
+			dup.clear();
+			dup.position(index);
+			dup.get(dst, dstOffset, length);
+		}
+	}
+
+	/**
+	 * Copy the bytes of the buffer into a new array
+	 *
+	 * @param src the source buffer
+	 * @param index the absolute position in the source buffer
+	 * @param length the number of bytes to copy
+	 * @return a new array containing the bytes
+	 */
+	public static byte[] getBytes(ByteBuffer src, int index, int length) {
+		byte[] out = new byte[length];
+		getBytes(src, index, out, 0, length);
+		return out;
+	}
+
+	/**
+	 * Copy the bytes from one buffer to another
+	 *
+	 * @param src the source buffer
+	 * @param srcIndex the absolute position in the source buffer
+	 * @param dst the destination buffer
+	 * @param dstIndex the absolute position in the destination buffer
+	 * @param length the number of bytes to copy
+	 */
+	public static void copy(ByteBuffer src, int srcIndex, ByteBuffer dst, int dstIndex, int length) {
+		if (dst.hasArray()) {
+			getBytes(src, srcIndex, dst.array(), dst.arrayOffset() + dstIndex, length);
+		} else {
+			ByteBuffer in = src.duplicate();
+			in.clear();
+			in.position(srcIndex);
+			in.limit(srcIndex + length);
+			ByteBuffer out = dst.duplicate();
+			out.clear();
+			out.position(dstIndex);
+			out.put(in);
+		}
+	}
+
+	/**
+	 * Put the bytes of the array into the buffer within its limit
+	 *
+	 * @param dst the destination buffer
+	 * @param index the absolute position in the destination buffer
+	 * @param bytes the source array
+	 * @return the number of bytes put
+	 * @throws IndexOutOfBoundsException if the buffer has no enough space
+	 */
+	public static int put(ByteBuffer dst, int index, byte[] bytes) {
+		if (index < 0 || index + bytes.length > dst.limit()) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (dst.hasArray()) {
+			System.arraycopy(bytes, 0, dst.array(), dst.arrayOffset() + index, bytes.length);
+		} else {
+			ByteBuffer out = dst.duplicate();
+			out.clear();
+			out.position(index);
+			out.put(bytes);
+		}
+		return bytes.length;
+	}
+
+	/**
+	 * Write the bytes of the buffer to the output
+	 *
+	 * @param src the source buffer
+	 * @param index the absolute position in the source buffer
+	 * @param length the number of bytes to write
+	 * @param out the output
+	 * @throws IOException
+	 */
+	public static void write(ByteBuffer src, int index, int length, DataOutput out) throws IOException {
+		if (src.hasArray()) {
+			out.write(src.array(), src.arrayOffset() + index, length);
+		} else {
+			byte[] chunk = new byte[Math.min(length, COPY_CHUNK_SIZE)];
+			while (length > 0) {
+				int size = Math.min(length, chunk.length);
+				getBytes(src, index, chunk, 0, size);
+				out.write(chunk, 0, size);
+				index += size;
+				length -= size;
+			}
+		}
+	}
+
+	/**
+	 * Write the bytes of the buffer to the output stream
+	 *
+	 * @param src the source buffer
+	 * @param index the absolute position in the source buffer
+	 * @param length the number of bytes to write
+	 * @param out the output stream
+	 * @throws IOException
+	 */
+	public static void write(ByteBuffer src, int index, int length, OutputStream out) throws IOException {
+		if (src.hasArray()) {
+			out.write(src.array(), src.arrayOffset() + index, length);
+		} else {
+			byte[] chunk = new byte[Math.min(length, COPY_CHUNK_SIZE)];
+			while (length > 0) {
+				int size = Math.min(length, chunk.length);
+				getBytes(src, index, chunk, 0, size);
+				out.write(chunk, 0, size);
+				index += size;
+				length -= size;
+			}
+		}
+	}
+
+	/**
+	 * Create a read-only view of a region of the buffer without copying
+	 *
+	 * @param src the source buffer
+	 * @param index the absolute position in the source buffer
+	 * @param length the number of bytes in the view
+	 * @return a read-only buffer whose position 0 is the index of the source
+	 */
+	public static ByteBuffer slice(ByteBuffer src, int index, int length) {
+		ByteBuffer dup = src.asReadOnlyBuffer();
+		dup.clear();
+		dup.position(index);
+		dup.limit(index + length);
+		return dup.slice();
+	}
+
+	/**
+	 * Get the bytes of a record as an array.
+	 *
+	 * <p>
+	 * The backing array is returned directly when it holds exactly the record;
+	 * otherwise a copy is made.
+	 * </p>
+	 *
+	 * @param rb the record buffer
+	 * @return an array of bytes starting with the record
+	 */
+	public static byte[] array(RecordBuffer rb) {
+		ByteBuffer buf = rb.getByteBuffer();
+		if (buf.hasArray() && buf.arrayOffset() == 0 && buf.array().length == rb.getRecordBufferSize()) {
+			return buf.array();
+		} else {
+			return getBytes(buf, 0, rb.getRecordBufferSize());
+		}
+	}
+}
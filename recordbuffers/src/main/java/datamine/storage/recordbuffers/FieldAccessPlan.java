@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import datamine.storage.api.RecordMetadataInterface;
+import datamine.storage.idl.Field;
+import datamine.storage.idl.FieldValueOperatorInterface;
+import datamine.storage.idl.type.CollectionFieldType;
+import datamine.storage.idl.type.FieldType;
+import datamine.storage.idl.type.GroupFieldType;
+import datamine.storage.idl.type.PrimitiveFieldType;
+import datamine.storage.recordbuffers.idl.value.FieldValueOperatorFactory;
+
+/**
+ * The access plan compiled for every field of a table, so that reading a field 
+ * from the record buffer needs no type checking or operator lookup. 
+ * 
+ * <p>
+ * All information is kept in flat arrays indexed by the field position, i.e.,
+ * the field ID minus 1. 
+ * </p>
+ * 
+ * @author yqi
+ */
+public final class FieldAccessPlan {
+
+	/**
+	 * The kinds of fields, deciding how the value is stored
+	 */
+	public static final byte KIND_FIXED = 0; 		// a primitive with the fixed length
+	public static final byte KIND_STRING = 1; 		// a SHORT for the length + bytes
+	public static final byte KIND_BINARY = 2; 		// an INT for the length + bytes
+	public static final byte KIND_GROUP = 3; 		// an INT for the length + a record
+	public static final byte KIND_COLLECTION = 4; 	// an INT for the length + a collection
+	
+	/**
+	 * The kinds of references to a field in the reference section
+	 */
+	public static final byte REF_NONE = 0;
+	public static final byte REF_SORT_KEY = 1;
+	public static final byte REF_FREQUENTLY_USED = 2;
+	public static final byte REF_COLLECTION = 3;
+	
+	private final byte[] kinds;
+	private final int[] widths;
+	private final byte[] refKinds;
+	private final int[] refSlots;
+	private final FieldValueOperatorInterface[] operators;
+	
+	/**
+	 * The leading fields with the fixed length (up to 64) form a prefix, where the
+	 * offset of a field is computed from the null flags directly: a bit mask is 
+	 * kept for each width (1, 2, 4 and 8 bytes), and the flag of the field at 
+	 * position i takes the bit (63 - i), the same order as in the record buffer. 
+	 */
+	private final int fixedPrefixLength;
+	private final long width1Mask;
+	private final long width2Mask;
+	private final long width4Mask;
+	private final long width8Mask;
+	
+	<T extends Enum<T> & RecordMetadataInterface> FieldAccessPlan(RecordBufferMeta<T> meta) {
+		List<T> fieldList = meta.getFieldList();
+		int size = fieldList.size();
+		kinds = new byte[size];
+		widths = new int[size];
+		refKinds = new byte[size];
+		refSlots = new int[size];
+		operators = new FieldValueOperatorInterface[size];
+		
+		for (int i = 0; i < size; ++i) {
+			Field field = fieldList.get(i).getField();
+			FieldType type = field.getType();
+			FieldValueOperatorInterface valueOpr = FieldValueOperatorFactory.getOperator(field);
+			operators[i] = valueOpr;
+			widths[i] = -1;
+			
+			if (type instanceof PrimitiveFieldType) {
+				switch (((PrimitiveFieldType) type).getPrimitiveType()) {
+				case STRING:
+					kinds[i] = KIND_STRING;
+					break;
+				case BINARY:
+					kinds[i] = KIND_BINARY;
+					break;
+				default:
+					kinds[i] = KIND_FIXED;
+					widths[i] = valueOpr.getNumOfBytes(null);
+				}
+			} else if (type instanceof GroupFieldType) {
+				kinds[i] = KIND_GROUP;
+			} else if (type instanceof CollectionFieldType) {
+				kinds[i] = KIND_COLLECTION;
+			} else {
+				throw new IllegalArgumentException("Not support the type of " + type);
+			}
+			
+			// the same precedence as the reference section
+			if (field.isDesSortKey() && meta.hasSortedKey()) {
+				refKinds[i] = REF_SORT_KEY;
+			} else if (type instanceof CollectionFieldType) {
+				refKinds[i] = REF_COLLECTION;
+				refSlots[i] = meta.getSequenceOfCollectionField(field.getId());
+			} else if (field.isFrequentlyUsed()) {
+				refKinds[i] = REF_FREQUENTLY_USED;
+				refSlots[i] = field.getId();
+			} else {
+				refKinds[i] = REF_NONE;
+			}
+		}
+		
+		// find out the prefix of fields with the fixed length
+		int prefix = 0;
+		long[] masks = new long[4];
+		for (; prefix < size && prefix < 64 && kinds[prefix] == KIND_FIXED; ++prefix) {
+			int maskId = Integer.numberOfTrailingZeros(widths[prefix]);
+			if (Integer.bitCount(widths[prefix]) != 1 || maskId >= masks.length) {
+				break;
+			}
+			masks[maskId] |= 1L << (63 - prefix);
+		}
+		fixedPrefixLength = prefix;
+		width1Mask = masks[0];
+		width2Mask = masks[1];
+		width4Mask = masks[2];
+		width8Mask = masks[3];
+	}
+	
+	/**
+	 * @return the number of fields in the plan
+	 */
+	public int size() {
+		return kinds.length;
+	}
+	
+	/**
+	 * @param index the field position, i.e., the field ID minus 1
+	 * @return the kind of the field
+	 */
+	public byte getKind(int index) {
+		return kinds[index];
+	}
+	
+	/**
+	 * @param index the field position, i.e., the field ID minus 1
+	 * @return the number of bytes of a fixed-length field, or -1 otherwise
+	 */
+	public int getWidth(int index) {
+		return widths[index];
+	}
+	
+	/**
+	 * @param index the field position, i.e., the field ID minus 1
+	 * @return the kind of the reference to the field in the reference section
+	 */
+	public byte getReferenceKind(int index) {
+		return refKinds[index];
+	}
+	
+	/**
+	 * @param index the field position, i.e., the field ID minus 1
+	 * @return the sequence of a collection-type field, or the ID of a 
+	 * frequently-used field, in the reference section
+	 */
+	public int getReferenceSlot(int index) {
+		return refSlots[index];
+	}
+	
+	/**
+	 * @param index the field position, i.e., the field ID minus 1
+	 * @return the value operator of the field
+	 */
+	public FieldValueOperatorInterface getOperator(int index) {
+		return operators[index];
+	}
+	
+	/**
+	 * @return the number of leading fields with the fixed length, whose offsets 
+	 * are computed in constant time
+	 */
+	public int getFixedPrefixLength() {
+		return fixedPrefixLength;
+	}
+	
+	/**
+	 * Read the null flags of the fixed-length prefix, where the flag of the field 
+	 * at position i is at the bit (63 - i).
+	 * 
+	 * @param buffer the record buffer
+	 * @param posOfFlags the position of the null-flag bitmap
+	 * @param numOfAttrs the number of attributes stored in the record
+	 * @return the null flags of the prefix
+	 */
+	long getFixedPrefixFlags(ByteBuffer buffer, int posOfFlags, int numOfAttrs) {
+		int numOfBytes = Math.min((Math.min(numOfAttrs, fixedPrefixLength) + 7) / 8, 8);
+		long flags = 0;
+		for (int i = 0; i < numOfBytes; ++i) {
+			flags |= (buffer.get(posOfFlags + i) & 0xFFL) << (56 - 8 * i);
+		}
+		return flags;
+	}
+	
+	/**
+	 * Compute the offset of a field in the fixed-length prefix, by counting the
+	 * non-null fields ahead of it for every width.
+	 * 
+	 * @param flags the null flags of the prefix
+	 * @param posOfValues the position of the first value in the record buffer
+	 * @param index the field position, which must be in the prefix
+	 * @return the offset of the field, or -1 if it is null
+	 */
+	int getFixedPrefixOffset(long flags, int posOfValues, int index) {
+		long bit = 1L << (63 - index);
+		if ((flags & bit) != 0) {
+			return -1;
+		}
+		// the non-null fields ahead of the current one 
+		long ahead = ~flags & -(bit << 1);
+		return posOfValues + Long.bitCount(ahead & width1Mask) + 
+				(Long.bitCount(ahead & width2Mask) << 1) + 
+				(Long.bitCount(ahead & width4Mask) << 2) + 
+				(Long.bitCount(ahead & width8Mask) << 3);
+	}
+	
+	/**
+	 * Skip the value of a field stored at the offset
+	 * 
+	 * @param buffer the record buffer
+	 * @param index the field position, i.e., the field ID minus 1
+	 * @param offset the offset of the value 
+	 * @return the offset right after the value
+	 */
+	int skip(ByteBuffer buffer, int index, int offset) {
+		switch (kinds[index]) {
+		case KIND_FIXED:
+			return offset + widths[index];
+		case KIND_STRING:
+			// a zero length indicates a super-long string dropped by the writer
+			return offset + 2 + Math.max(buffer.getShort(offset), 0);
+		default:
+			return offset + 4 + Math.max(buffer.getInt(offset), 0);
+		}
+	}
+}
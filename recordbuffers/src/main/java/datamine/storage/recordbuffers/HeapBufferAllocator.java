@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The allocator creating a new heap array of the exact size for every 
+ * allocation, and leaving the released ones to the garbage collector. 
+ * It is the default of {@link RecordBuffer}.
+ * 
+ * @author yqi
+ */
+public final class HeapBufferAllocator implements BufferAllocator {
+
+	public static final HeapBufferAllocator INSTANCE = new HeapBufferAllocator();
+	
+	private HeapBufferAllocator() {}
+	
+	@Override
+	public ByteBuffer allocate(int size) {
+		return ByteBuffer.allocate(size);
+	}
+
+	@Override
+	public void release(ByteBuffer buffer) {
+		// nothing to do
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import datamine.storage.recordbuffers.idl.value.CollectionValueOperator;
+
+/**
+ * A forward-only cursor over the elements of a list-type field. 
+ * 
+ * <p>
+ * When the list is stored in a record buffer, each element is decoded directly 
+ * from the buffer on {@link #next()}, i.e., the list as a whole is never 
+ * materialized. The cursor is valid as long as the buffer does not change. 
+ * </p>
+ * 
+ * @author yqi
+ */
+public class ListCursor implements Iterator<Object> {
+
+	private final CollectionValueOperator valueOpr;
+	private final ByteBuffer buffer;
+	private final List<?> list;
+	private final int size;
+	
+	private int position = 0;
+	private int offset;
+	
+	/**
+	 * Constructor for a list stored in the buffer
+	 * 
+	 * @param valueOpr the value operator of the list
+	 * @param buffer the byte buffer containing the list
+	 * @param index the index where the list gets started to store
+	 */
+	ListCursor(CollectionValueOperator valueOpr, ByteBuffer buffer, int index) {
+		this.valueOpr = valueOpr;
+		this.buffer = buffer;
+		this.list = null;
+		this.size = valueOpr.getListSize(buffer, index);
+		this.offset = index + 4;
+	}
+	
+	/**
+	 * Constructor for a list of objects, e.g., a value not serialized yet
+	 * 
+	 * @param list the list of objects
+	 */
+	ListCursor(List<?> list) {
+		this.valueOpr = null;
+		this.buffer = null;
+		this.list = list;
+		this.size = list.size();
+		this.offset = 0;
+	}
+	
+	/**
+	 * @return the number of elements in the list
+	 */
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public boolean hasNext() {
+		return position < size;
+	}
+
+	@Override
+	public Object next() {
+		if (position >= size) {
+			throw new NoSuchElementException();
+		}
+		
+		++position;
+		if (list != null) {
+			return list.get(offset++);
+		} 
+		
+		Object result = valueOpr.getElement(buffer, offset);
+		if (position < size) {
+			offset = valueOpr.getNextElementOffset(buffer, offset);
+		}
+		return result;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("The list cannot be changed through a cursor!");
+	}
+}
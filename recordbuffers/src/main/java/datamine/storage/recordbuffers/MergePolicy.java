@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+/**
+ * The policies to merge the values of a field from two records, i.e., the
+ * existing one on the left and the update on the right, see {@link RecordMergeOperator}.
+ *
+ * <p>
+ * When the value is absent from one side, the one of the other side is taken
+ * for all policies. For the arithmetic ones, an absent value with a default
+ * value is taken as the default value instead.
+ * </p>
+ *
+ * @author yqi
+ */
+public enum MergePolicy {
+
+	/**
+	 * The value of the update wins, i.e., the last writer wins
+	 */
+	OVERWRITE,
+
+	/**
+	 * The existing value is kept
+	 */
+	KEEP,
+
+	/**
+	 * The sum of both values, for the numeric fields
+	 */
+	SUM,
+
+	/**
+	 * The smaller value, for the numeric fields
+	 */
+	MIN,
+
+	/**
+	 * The larger value, for the numeric fields
+	 */
+	MAX,
+
+	/**
+	 * The elements of the update appended to the existing ones, for the lists
+	 */
+	LIST_APPEND,
+
+	/**
+	 * The union of elements, for the lists: the elements are identified by the
+	 * sort key of the nested table if any, or by their bytes otherwise, and the
+	 * ones of the update replace the existing ones with the same identity
+	 */
+	LIST_UNION;
+
+	/**
+	 * @return true if the policy applies to the numeric fields only
+	 */
+	public boolean isArithmetic() {
+		return this == SUM || this == MIN || this == MAX;
+	}
+
+	/**
+	 * @return true if the policy applies to the list-type fields only
+	 */
+	public boolean isForList() {
+		return this == LIST_APPEND || this == LIST_UNION;
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The allocator keeping the released arrays in thread-local pools for reuse. 
+ * 
+ * <p>
+ * The arrays are grouped by size classes, i.e., the powers of two between the 
+ * minimum and the maximum size. An allocation takes an array of the smallest 
+ * class fitting the size from the pool of the current thread, or creates one 
+ * if the pool is empty. An allocation over the maximum size is never pooled. 
+ * Every pool keeps up to a limited number of arrays per class, and the others 
+ * released are left to the garbage collector. 
+ * </p>
+ * 
+ * <p>
+ * An array released by another thread goes to the pool of that thread, so the
+ * instance can be shared by threads without locking. 
+ * </p>
+ * 
+ * @author yqi
+ */
+public class PooledBufferAllocator extends AbstractBufferAllocator {
+
+	public static final int DEFAULT_MIN_SIZE = 64;
+	public static final int DEFAULT_MAX_SIZE = 1 << 20;
+	public static final int DEFAULT_MAX_ARRAYS_PER_CLASS = 64;
+	
+	private final int minShift;
+	private final int maxShift;
+	private final int maxArraysPerClass;
+	private final ThreadLocal<List<ArrayDeque<byte[]>>> pools = 
+			new ThreadLocal<List<ArrayDeque<byte[]>>>() {
+		@Override
+		protected List<ArrayDeque<byte[]>> initialValue() {
+			int numOfClasses = maxShift - minShift + 1;
+			List<ArrayDeque<byte[]>> classes = new ArrayList<ArrayDeque<byte[]>>(numOfClasses);
+			for (int i = 0; i < numOfClasses; ++i) {
+				classes.add(new ArrayDeque<byte[]>());
+			}
+			return classes;
+		}
+	};
+	
+	public PooledBufferAllocator() {
+		this(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_MAX_ARRAYS_PER_CLASS);
+	}
+	
+	/**
+	 * @param minSize the size of the smallest class, which must be a power of two
+	 * @param maxSize the size of the largest class, which must be a power of two
+	 * @param maxArraysPerClass the maximum number of arrays of a class in a pool
+	 */
+	public PooledBufferAllocator(int minSize, int maxSize, int maxArraysPerClass) {
+		Preconditions.checkArgument(minSize > 0 && Integer.bitCount(minSize) == 1, 
+				"The minimum size must be a power of two: %s", minSize);
+		Preconditions.checkArgument(maxSize >= minSize && Integer.bitCount(maxSize) == 1, 
+				"The maximum size must be a power of two no less than the minimum: %s", maxSize);
+		Preconditions.checkArgument(maxArraysPerClass >= 0);
+		this.minShift = Integer.numberOfTrailingZeros(minSize);
+		this.maxShift = Integer.numberOfTrailingZeros(maxSize);
+		this.maxArraysPerClass = maxArraysPerClass;
+	}
+	
+	/**
+	 * @return the shift of the smallest class fitting the size
+	 */
+	private int getShift(int size) {
+		return size <= (1 << minShift) ? minShift : 32 - Integer.numberOfLeadingZeros(size - 1);
+	}
+	
+	@Override
+	public ByteBuffer allocate(int size) {
+		Preconditions.checkArgument(size >= 0);
+		int shift = getShift(size);
+		if (shift > maxShift) {
+			countAllocation(false);
+			return ByteBuffer.allocate(size);
+		}
+		
+		byte[] array = pools.get().get(shift - minShift).poll();
+		if (array != null) {
+			countAllocation(true);
+			countRetainedBytes(-array.length);
+		} else {
+			countAllocation(false);
+			array = new byte[1 << shift];
+		}
+		return ByteBuffer.wrap(array);
+	}
+
+	@Override
+	public void release(ByteBuffer buffer) {
+		if (buffer == null || !buffer.hasArray() || buffer.arrayOffset() != 0) {
+			return;
+		}
+		byte[] array = buffer.array();
+		int length = array.length;
+		if (Integer.bitCount(length) != 1) {
+			return;
+		}
+		int shift = Integer.numberOfTrailingZeros(length);
+		if (shift < minShift || shift > maxShift) {
+			return;
+		}
+		
+		ArrayDeque<byte[]> pool = pools.get().get(shift - minShift);
+		if (pool.size() < maxArraysPerClass) {
+			pool.push(array);
+			countRetainedBytes(length);
+		}
+	}
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.nio.ByteBuffer;
+
+import datamine.storage.api.BoolList;
+import datamine.storage.api.ByteList;
+import datamine.storage.api.DoubleList;
+import datamine.storage.api.FloatList;
+import datamine.storage.api.IntList;
+import datamine.storage.api.LongList;
+import datamine.storage.api.ShortList;
+import datamine.storage.idl.type.PrimitiveType;
+
+/**
+ * The primitive lists backed by the record buffer directly, i.e., an element 
+ * is read from the buffer on request and never boxed. 
+ * 
+ * <p>
+ * A view is valid as long as the bytes of the record do not change. 
+ * </p>
+ * 
+ * @author yqi
+ */
+public abstract class PrimitiveListView {
+
+	/**
+	 * The buffer used by the empty lists
+	 */
+	static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+	
+	protected final ByteBuffer buffer;
+	protected final int offset; // the position of the first element
+	protected final int size;
+	
+	protected PrimitiveListView(ByteBuffer buffer, int offset, int size) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.size = size;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	protected void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+	
+	/**
+	 * Get a duplicate of the buffer positioned at the element, after checking 
+	 * the range of elements to read
+	 */
+	protected ByteBuffer getBuffer(int srcIndex, int length, int width) {
+		if (srcIndex < 0 || length < 0 || srcIndex + length > size) {
+			throw new IndexOutOfBoundsException("Range: [" + srcIndex + ", " + 
+					(srcIndex + length) + "), Size: " + size);
+		}
+		ByteBuffer dup = buffer.duplicate();
+		dup.clear();
+		dup.position(offset + srcIndex * width);
+		return dup;
+	}
+	
+	/**
+	 * Create a view for the list of the input element type
+	 * 
+	 * @param type the primitive type of elements
+	 * @param buffer the buffer containing the list
+	 * @param offset the position of the first element
+	 * @param size the number of elements
+	 * @return the view of the list
+	 */
+	static PrimitiveListView newView(PrimitiveType type, 
+			ByteBuffer buffer, int offset, int size) {
+		switch (type) {
+		case BOOL:
+			return new BoolListView(buffer, offset, size);
+		case BYTE:
+			return new ByteListView(buffer, offset, size);
+		case INT16:
+			return new ShortListView(buffer, offset, size);
+		case INT32:
+			return new IntListView(buffer, offset, size);
+		case INT64:
+			return new LongListView(buffer, offset, size);
+		case FLOAT:
+			return new FloatListView(buffer, offset, size);
+		case DOUBLE:
+			return new DoubleListView(buffer, offset, size);
+		default:
+			throw new IllegalArgumentException("Not a list of fixed-length primitives - " + type);
+		}
+	}
+
+	public static class BoolListView extends PrimitiveListView implements BoolList {
+
+		public BoolListView(ByteBuffer buffer, int offset, int size) {
+			super(buffer, offset, size);
+		}
+
+		@Override
+		public boolean get(int index) {
+			checkIndex(index);
+			return buffer.get(offset + index) == 1;
+		}
+
+		@Override
+		public void copyTo(int srcIndex, boolean[] dst, int dstOffset, int length) {
+			ByteBuffer src = getBuffer(srcIndex, length, 1);
+			for (int i = 0; i < length; ++i) {
+				dst[dstOffset + i] = src.get() == 1;
+			}
+		}
+
+		@Override
+		public boolean[] toArray() {
+			boolean[] out = new boolean[size];
+			copyTo(0, out, 0, size);
+			return out;
+		}
+	}
+
+	public static class ByteListView extends PrimitiveListView implements ByteList {
+
+		public ByteListView(ByteBuffer buffer, int offset, int size) {
+			super(buffer, offset, size);
+		}
+
+		@Override
+		public byte get(int index) {
+			checkIndex(index);
+			return buffer.get(offset + index);
+		}
+
+		@Override
+		public void copyTo(int srcIndex, byte[] dst, int dstOffset, int length) {
+			getBuffer(srcIndex, length, 1).get(dst, dstOffset, length);
+		}
+
+		@Override
+		public byte[] toArray() {
+			byte[] out = new byte[size];
+			copyTo(0, out, 0, size);
+			return out;
+		}
+	}
+
+	public static class ShortListView extends PrimitiveListView implements ShortList {
+
+		public ShortListView(ByteBuffer buffer, int offset, int size) {
+			super(buffer, offset, size);
+		}
+
+		@Override
+		public short get(int index) {
+			checkIndex(index);
+			return buffer.getShort(offset + index * 2);
+		}
+
+		@Override
+		public void copyTo(int srcIndex, short[] dst, int dstOffset, int length) {
+			getBuffer(srcIndex, length, 2).asShortBuffer().get(dst, dstOffset, length);
+		}
+
+		@Override
+		public short[] toArray() {
+			short[] out = new short[size];
+			copyTo(0, out, 0, size);
+			return out;
+		}
+	}
+
+	public static class IntListView extends PrimitiveListView implements IntList {
+
+		public IntListView(ByteBuffer buffer, int offset, int size) {
+			super(buffer, offset, size);
+		}
+
+		@Override
+		public int get(int index) {
+			checkIndex(index);
+			return buffer.getInt(offset + index * 4);
+		}
+
+		@Override
+		public void copyTo(int srcIndex, int[] dst, int dstOffset, int length) {
+			getBuffer(srcIndex, length, 4).asIntBuffer().get(dst, dstOffset, length);
+		}
+
+		@Override
+		public int[] toArray() {
+			int[] out = new int[size];
+			copyTo(0, out, 0, size);
+			return out;
+		}
+	}
+
+	public static class LongListView extends PrimitiveListView implements LongList {
+
+		public LongListView(ByteBuffer buffer, int offset, int size) {
+			super(buffer, offset, size);
+		}
+
+		@Override
+		public long get(int index) {
+			checkIndex(index);
+			return buffer.getLong(offset + index * 8);
+		}
+
+		@Override
+		public void copyTo(int srcIndex, long[] dst, int dstOffset, int length) {
+			getBuffer(srcIndex, length, 8).asLongBuffer().get(dst, dstOffset, length);
+		}
+
+		@Override
+		public long[] toArray() {
+			long[] out = new long[size];
+			copyTo(0, out, 0, size);
+			return out;
+		}
+	}
+
+	public static class FloatListView extends PrimitiveListView implements FloatList {
+
+		public FloatListView(ByteBuffer buffer, int offset, int size) {
+			super(buffer, offset, size);
+		}
+
+		@Override
+		public float get(int index) {
+			checkIndex(index);
+			return buffer.getFloat(offset + index * 4);
+		}
+
+		@Override
+		public void copyTo(int srcIndex, float[] dst, int dstOffset, int length) {
+			getBuffer(srcIndex, length, 4).asFloatBuffer().get(dst, dstOffset, length);
+		}
+
+		@Override
+		public float[] toArray() {
+			float[] out = new float[size];
+			copyTo(0, out, 0, size);
+			return out;
+		}
+	}
+
+	public static class DoubleListView extends PrimitiveListView implements DoubleList {
+
+		public DoubleListView(ByteBuffer buffer, int offset, int size) {
+			super(buffer, offset, size);
+		}
+
+		@Override
+		public double get(int index) {
+			checkIndex(index);
+			return buffer.getDouble(offset + index * 8);
+		}
+
+		@Override
+		public void copyTo(int srcIndex, double[] dst, int dstOffset, int length) {
+			getBuffer(srcIndex, length, 8).asDoubleBuffer().get(dst, dstOffset, length);
+		}
+
+		@Override
+		public double[] toArray() {
+			double[] out = new double[size];
+			copyTo(0, out, 0, size);
+			return out;
+		}
+	}
+}
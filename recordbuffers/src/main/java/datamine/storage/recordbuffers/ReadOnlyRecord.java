@@ -15,27 +15,42 @@
  */
 package datamine.storage.recordbuffers;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
-import java.util.List;
+import java.util.Collections;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
 
+import datamine.storage.api.BoolList;
+import datamine.storage.api.ByteList;
+import datamine.storage.api.DoubleList;
+import datamine.storage.api.FloatList;
+import datamine.storage.api.IntList;
+import datamine.storage.api.LongList;
 import datamine.storage.api.RecordMetadataInterface;
+import datamine.storage.api.ShortList;
 import datamine.storage.idl.Field;
 import datamine.storage.idl.FieldValueOperatorInterface;
 import datamine.storage.idl.type.CollectionFieldType;
 import datamine.storage.idl.type.FieldType;
-import datamine.storage.idl.type.GroupFieldType;
 import datamine.storage.idl.type.PrimitiveFieldType;
 import datamine.storage.idl.type.PrimitiveType;
-import datamine.storage.recordbuffers.idl.value.FieldValueOperatorFactory;
+import datamine.storage.recordbuffers.idl.value.CollectionValueOperator;
 
 /**
  * It defines a read-only record. In other words, writing/updating is not allowed. 
  * 
+ * <p>
+ * The record can be used as a flyweight: one instance may be re-pointed at 
+ * another record through {@link #reset(RecordBuffer)}, in which case the offset 
+ * array and other internal states are reused instead of being re-allocated. 
+ * </p>
+ * 
  * @author yqi
  */
 public class ReadOnlyRecord<T extends Enum<T> & RecordMetadataInterface> extends Record<T> {
@@ -51,19 +66,105 @@ public class ReadOnlyRecord<T extends Enum<T> & RecordMetadataInterface> extends
 	 */
 	private int[] offsetArray = null;
 	
+	/**
+	 * The number of attributes stored in the current record, i.e., the number 
+	 * of offsets the array can have. 
+	 * 
+	 * <p>
+	 * It is negative when the header has not been read for the current record. 
+	 * </p>
+	 */
+	private int numOfOffsets = -1;
+	
+	/**
+	 * The offsets are resolved lazily and incrementally: only the attributes in
+	 * front of the one requested are walked through, and the walk resumes from
+	 * where it stopped for the following requests. 
+	 * 
+	 * <p>
+	 * The offsets of the attributes [0, numOfResolved) are known, and the value 
+	 * of the next attribute (if exists) starts at nextOffset. 
+	 * </p>
+	 */
+	private int numOfResolved = 0;
+	private int nextOffset = 0;
+	
+	/**
+	 * The position of the null-flag bitmap in the record buffer
+	 */
+	private int posOfFlags = 0;
+	
+	/**
+	 * The null flags of the fixed-length prefix, see {@link FieldAccessPlan}
+	 */
+	private long fixedPrefixFlags = 0;
+	private int posOfValues = 0;
+	
 	/**
 	 * The number of bytes used by the the instance of {@link RecordBuffer}.
 	 */
 	private int numOfBytes = 0;
 	
+	/**
+	 * The layout of the version of the current record, or null if the header 
+	 * has not been read
+	 */
+	private RecordVersionLayout layout = null;
+	
+	/**
+	 * A reusable holder when the record is reset onto a window of a byte array
+	 */
+	private RecordBuffer windowBuffer = null;
+	
+	/**
+	 * The access plan of fields compiled for the table
+	 */
+	private final FieldAccessPlan plan;
+	
 	public ReadOnlyRecord(Class<T> clazz) {
 		super(clazz);
+		this.plan = meta.getAccessPlan();
 	}
 	
 	public ReadOnlyRecord(Class<T> clazz, RecordBuffer buf) {
 		super(clazz, buf);
+		this.plan = meta.getAccessPlan();
 		this.numOfBytes = buf.getRecordBufferSize();
 	}
+	
+	/**
+	 * Re-point the record at another instance of {@link RecordBuffer}. 
+	 * 
+	 * <p>
+	 * The offset array built for the previous record is kept and will be 
+	 * overwritten on demand, so no allocation is needed for the new record.
+	 * </p>
+	 * 
+	 * @param buf the non-null instance of {@link RecordBuffer}
+	 */
+	public void reset(RecordBuffer buf) {
+		Preconditions.checkArgument(buf != null);
+		this.buffer = buf;
+		this.numOfBytes = buf.getRecordBufferSize();
+		this.numOfOffsets = -1;
+		this.numOfResolved = 0;
+		this.layout = null;
+	}
+	
+	/**
+	 * Re-point the record at a window of the input array without copying.
+	 * 
+	 * @param recordBytes the array containing the record
+	 * @param offset the position where the record starts in the array
+	 * @param length the number of bytes of the record
+	 */
+	public void reset(byte[] recordBytes, int offset, int length) {
+		if (windowBuffer == null) {
+			windowBuffer = new RecordBuffer();
+		}
+		windowBuffer.wrap(recordBytes, offset, length);
+		reset(windowBuffer);
+	}
 
 	/**
 	 * Update the value of the input field
@@ -87,33 +188,125 @@ public class ReadOnlyRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		throw new IllegalAccessError("No change is allowed for the read-only record!");
 	}
 	
-	private int getOffset(Field  field) {
+	@Override
+	public void setBool(T col, boolean val) {
+		throw new IllegalAccessError("No change is allowed for the read-only record!");
+	}
+	
+	@Override
+	public void setBool(Field field, boolean val) {
+		throw new IllegalAccessError("No change is allowed for the read-only record!");
+	}
+	
+	@Override
+	public void setByte(T col, byte val) {
+		throw new IllegalAccessError("No change is allowed for the read-only record!");
+	}
+	
+	@Override
+	public void setByte(Field field, byte val) {
+		throw new IllegalAccessError("No change is allowed for the read-only record!");
+	}
+	
+	@Override
+	public void setShort(T col, short val) {
+		throw new IllegalAccessError("No change is allowed for the read-only record!");
+	}
+	
+	@Override
+	public void setShort(Field field, short val) {
+		throw new IllegalAccessError("No change is allowed for the read-only record!");
+	}
+	
+	@Override
+	public void setInt(T col, int val) {
+		throw new IllegalAccessError("No change is allowed for the read-only record!");
+	}
+	
+	@Override
+	public void setInt(Field field, int val) {
+		throw new IllegalAccessError("No change is allowed for the read-only record!");
+	}
+	
+	@Override
+	public void setLong(T col, long val) {
+		throw new IllegalAccessError("No change is allowed for the read-only record!");
+	}
+	
+	@Override
+	public void setLong(Field field, long val) {
+		throw new IllegalAccessError("No change is allowed for the read-only record!");
+	}
+	
+	@Override
+	public void setFloat(T col, float val) {
+		throw new IllegalAccessError("No change is allowed for the read-only record!");
+	}
+	
+	@Override
+	public void setFloat(Field field, float val) {
+		throw new IllegalAccessError("No change is allowed for the read-only record!");
+	}
+	
+	@Override
+	public void setDouble(T col, double val) {
+		throw new IllegalAccessError("No change is allowed for the read-only record!");
+	}
+	
+	@Override
+	public void setDouble(Field field, double val) {
+		throw new IllegalAccessError("No change is allowed for the read-only record!");
+	}
+	
+	/**
+	 * @return the absolute offset of the field in the record buffer, or -1 if absent
+	 */
+	int getOffset(Field field) {
 
-		// when the column has its offset in the reference section
-		FieldType type = field.getType();
-		if ((field.isSortKey() || field.isFrequentlyUsed() || type instanceof CollectionFieldType) 
-				&& offsetArray == null && this.buffer.getRecordBufferSize() > 0) {
-			// find out the offset directly
-			if (field.isSortKey()) {
-				return this.meta.getSortKeyOffset(buffer);
-			}
-				
-			if (field.isFrequentlyUsed()) {
-				return this.meta.getFieldWithReferenceOffset(field, buffer);
+		int id = field.getId() - 1; // note that id starts at 1.
+		if (id < numOfResolved) {
+			return offsetArray[id];
+		}
+		
+		// no value when the record is empty, or the field is not in the version
+		// of the record 
+		if (numOfBytes <= 0) {
+			return -1;
+		}
+		RecordVersionLayout curLayout = getLayout();
+		if (id >= curLayout.getNumOfAttributes()) {
+			return -1;
+		}
+		
+		// when the column is one of the leading fixed-length ones
+		if (id < curLayout.getFixedPrefixLength()) {
+			if (numOfOffsets < 0) {
+				initOffsetArray();
 			}
-					
-			// a collection-type field
-			return this.meta.getCollectionOffset(field, buffer);
+			return plan.getFixedPrefixOffset(fixedPrefixFlags, posOfValues, id);
 		}
 		
+		// when the column has its offset in the reference section, find 
+		// out the offset directly
+		ByteBuffer bytebuffer = buffer.getByteBuffer();
+		switch (plan.getReferenceKind(id)) {
+		case FieldAccessPlan.REF_SORT_KEY:
+			return curLayout.getSortKeyOffset(bytebuffer);
+		case FieldAccessPlan.REF_COLLECTION:
+			return curLayout.getCollectionOffset(bytebuffer, plan.getReferenceSlot(id));
+		case FieldAccessPlan.REF_FREQUENTLY_USED:
+			return curLayout.getReferenceOffset(bytebuffer, id + 1, 
+					meta.getSlotOfReferenceField(id + 1));
+		default:
+			break;
+		}
+			
 		// other fields
-		if (offsetArray == null) {
+		if (numOfOffsets < 0) {
 			initOffsetArray();
 		}
-
-		int id = field.getId() - 1; // note that id starts at 1.
-		return offsetArray != null && offsetArray.length > id ? 				
-				offsetArray[id] : -1;
+		resolveOffsets(id);
+		return offsetArray[id];
 	}
 	
 	@Override
@@ -124,25 +317,22 @@ public class ReadOnlyRecord<T extends Enum<T> & RecordMetadataInterface> extends
 	@Override
 	public Object getValue(Field field) {
 	
-		FieldType type = field.getType();
-		FieldValueOperatorInterface valueOpr = FieldValueOperatorFactory.getOperator(type);
-		ByteBuffer buf = buffer.getByteBuffer();
 		Object result = null;
 		int offset = getOffset(field);
-		if (offset > 0 && type instanceof PrimitiveFieldType) {
-			PrimitiveType priType = ((PrimitiveFieldType) type).getPrimitiveType();
-			switch (priType) {
-			case STRING:
-				result = valueOpr.getValue(buf, offset + 2, buf.getShort(offset));
+		if (offset > 0) {
+			int id = field.getId() - 1; // note that id starts at 1.
+			FieldValueOperatorInterface valueOpr = plan.getOperator(id);
+			ByteBuffer buf = buffer.getByteBuffer();
+			switch (plan.getKind(id)) {
+			case FieldAccessPlan.KIND_FIXED:
+				result = valueOpr.getValue(buf, offset, plan.getWidth(id));
 				break;
-			case BINARY:
-				result = valueOpr.getValue(buf, offset + 4, buf.getInt(offset));
+			case FieldAccessPlan.KIND_STRING:
+				result = valueOpr.getValue(buf, offset + 2, buf.getShort(offset));
 				break;
 			default:
-				result = valueOpr.getValue(buf, offset, valueOpr.getNumOfBytes(null));
+				result = valueOpr.getValue(buf, offset + 4, buf.getInt(offset));
 			}
-		} else if (offset > 0 && (type instanceof GroupFieldType || type instanceof CollectionFieldType)) {
-			result = valueOpr.getValue(buf, offset + 4, buf.getInt(offset));
 		} 
 		
 		// never return NULL
@@ -247,11 +437,8 @@ public class ReadOnlyRecord<T extends Enum<T> & RecordMetadataInterface> extends
 	public byte[] getBinary(Field field) {
 		int offset = getOffset(field);
 		if (offset > 0) {
-			int length = buffer.getByteBuffer().getInt(offset);
-			byte[] out = new byte[length];
-			byte[] src = buffer.getByteBuffer().array();
-			System.arraycopy(src, offset + 4, out, 0, length);
-			return out;
+			ByteBuffer src = buffer.getByteBuffer();
+			return BufferUtils.getBytes(src, offset + 4, src.getInt(offset));
 		} else {
 			return (byte[]) field.getDefaultValue();
 		}
@@ -261,11 +448,93 @@ public class ReadOnlyRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		return getBinary(col.getField());
 	}
 	
+	public ByteBuffer getBinaryBuffer(Field field) {
+		int offset = getOffset(field);
+		if (offset > 0) {
+			ByteBuffer src = buffer.getByteBuffer();
+			return BufferUtils.slice(src, offset + 4, src.getInt(offset));
+		} else {
+			byte[] defaultValue = (byte[]) field.getDefaultValue();
+			return defaultValue == null ? null : ByteBuffer.wrap(defaultValue).asReadOnlyBuffer();
+		}
+	}
+	
+	public ByteBuffer getBinaryBuffer(T col) {
+		return getBinaryBuffer(col.getField());
+	}
+	
+	public int getBinaryLength(Field field) {
+		int offset = getOffset(field);
+		if (offset > 0) {
+			return buffer.getByteBuffer().getInt(offset);
+		} else {
+			byte[] defaultValue = (byte[]) field.getDefaultValue();
+			return defaultValue == null ? 0 : defaultValue.length;
+		}
+	}
+	
+	public int getBinaryLength(T col) {
+		return getBinaryLength(col.getField());
+	}
+	
+	public int writeBinary(Field field, OutputStream out) throws IOException {
+		int offset = getOffset(field);
+		if (offset > 0) {
+			ByteBuffer src = buffer.getByteBuffer();
+			int length = src.getInt(offset);
+			BufferUtils.write(src, offset + 4, length, out);
+			return length;
+		} else {
+			return writeBinary((byte[]) field.getDefaultValue(), out);
+		}
+	}
+	
+	public int writeBinary(T col, OutputStream out) throws IOException {
+		return writeBinary(col.getField(), out);
+	}
+	
+	public int writeBinary(Field field, ByteBuffer out) {
+		int offset = getOffset(field);
+		if (offset > 0) {
+			ByteBuffer src = buffer.getByteBuffer();
+			int length = src.getInt(offset);
+			return writeBinary(src, offset + 4, length, out);
+		} else {
+			byte[] defaultValue = (byte[]) field.getDefaultValue();
+			return defaultValue == null ? 0 : 
+				writeBinary(ByteBuffer.wrap(defaultValue), 0, defaultValue.length, out);
+		}
+	}
+	
+	public int writeBinary(T col, ByteBuffer out) {
+		return writeBinary(col.getField(), out);
+	}
+	
+	/**
+	 * Put the bytes at the position of the output, and move the position forward
+	 */
+	static int writeBinary(ByteBuffer src, int index, int length, ByteBuffer out) {
+		if (out.remaining() < length) {
+			throw new BufferOverflowException();
+		}
+		BufferUtils.copy(src, index, out, out.position(), length);
+		out.position(out.position() + length);
+		return length;
+	}
+	
+	static int writeBinary(byte[] value, OutputStream out) throws IOException {
+		if (value == null) {
+			return 0;
+		}
+		out.write(value);
+		return value.length;
+	}
+	
 	public String getString(Field field) {
 		int offset = getOffset(field);
 		if (offset > 0) {
-			int length = buffer.getByteBuffer().getShort(offset);
-			return new String(buffer.getByteBuffer().array(), offset + 2, length);
+			ByteBuffer src = buffer.getByteBuffer();
+			return Utf8Utils.decode(src, offset + 2, src.getShort(offset));
 		} else {
 			return (String) field.getDefaultValue();
 		}
@@ -275,6 +544,152 @@ public class ReadOnlyRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		return getString(col.getField());
 	}
 	
+	public int compareString(Field field, String value) {
+		int offset = getOffset(field);
+		if (offset > 0) {
+			ByteBuffer src = buffer.getByteBuffer();
+			return Utf8Utils.compare(src, offset + 2, src.getShort(offset), value);
+		} else {
+			return Utf8Utils.compare((String) field.getDefaultValue(), value);
+		}
+	}
+	
+	public int compareString(T col, String value) {
+		return compareString(col.getField(), value);
+	}
+	
+	public boolean isStringEqual(Field field, String value) {
+		int offset = getOffset(field);
+		if (offset > 0) {
+			ByteBuffer src = buffer.getByteBuffer();
+			return Utf8Utils.equals(src, offset + 2, src.getShort(offset), value);
+		} else {
+			return value.equals(field.getDefaultValue());
+		}
+	}
+	
+	public boolean isStringEqual(T col, String value) {
+		return isStringEqual(col.getField(), value);
+	}
+	
+	public boolean isStringPrefixedBy(Field field, String prefix) {
+		int offset = getOffset(field);
+		if (offset > 0) {
+			ByteBuffer src = buffer.getByteBuffer();
+			return Utf8Utils.startsWith(src, offset + 2, src.getShort(offset), prefix);
+		} else {
+			String defaultValue = (String) field.getDefaultValue();
+			return defaultValue != null && defaultValue.startsWith(prefix);
+		}
+	}
+	
+	public boolean isStringPrefixedBy(T col, String prefix) {
+		return isStringPrefixedBy(col.getField(), prefix);
+	}
+	
+	public int getStringHashCode(Field field) {
+		int offset = getOffset(field);
+		if (offset > 0) {
+			ByteBuffer src = buffer.getByteBuffer();
+			return Utf8Utils.hashCode(src, offset + 2, src.getShort(offset));
+		} else {
+			Object defaultValue = field.getDefaultValue();
+			return defaultValue == null ? 0 : defaultValue.hashCode();
+		}
+	}
+	
+	public int getStringHashCode(T col) {
+		return getStringHashCode(col.getField());
+	}
+	
+	/**
+	 * Get a view of the list whose elements are the fixed-length primitives
+	 */
+	private PrimitiveListView getPrimitiveList(Field field, PrimitiveType elementType) {
+		FieldType type = field.getType();
+		Preconditions.checkArgument(type instanceof CollectionFieldType && 
+				((CollectionFieldType) type).getElementType() instanceof PrimitiveFieldType && 
+				((PrimitiveFieldType) ((CollectionFieldType) type).getElementType()).getPrimitiveType() == elementType, 
+				"%s is not a list of %s", field.getName(), elementType);
+		
+		int offset = getOffset(field);
+		if (offset <= 0) {
+			return PrimitiveListView.newView(elementType, PrimitiveListView.EMPTY_BUFFER, 0, 0);
+		}
+		ByteBuffer buf = buffer.getByteBuffer();
+		return PrimitiveListView.newView(elementType, buf, offset + 8, buf.getInt(offset + 4));
+	}
+	
+	@Override
+	public BoolList getBoolList(Field field) {
+		return (BoolList) getPrimitiveList(field, PrimitiveType.BOOL);
+	}
+	
+	@Override
+	public BoolList getBoolList(T col) {
+		return getBoolList(col.getField());
+	}
+	
+	@Override
+	public ByteList getByteList(Field field) {
+		return (ByteList) getPrimitiveList(field, PrimitiveType.BYTE);
+	}
+	
+	@Override
+	public ByteList getByteList(T col) {
+		return getByteList(col.getField());
+	}
+	
+	@Override
+	public ShortList getShortList(Field field) {
+		return (ShortList) getPrimitiveList(field, PrimitiveType.INT16);
+	}
+	
+	@Override
+	public ShortList getShortList(T col) {
+		return getShortList(col.getField());
+	}
+	
+	@Override
+	public IntList getIntList(Field field) {
+		return (IntList) getPrimitiveList(field, PrimitiveType.INT32);
+	}
+	
+	@Override
+	public IntList getIntList(T col) {
+		return getIntList(col.getField());
+	}
+	
+	@Override
+	public LongList getLongList(Field field) {
+		return (LongList) getPrimitiveList(field, PrimitiveType.INT64);
+	}
+	
+	@Override
+	public LongList getLongList(T col) {
+		return getLongList(col.getField());
+	}
+	
+	@Override
+	public FloatList getFloatList(Field field) {
+		return (FloatList) getPrimitiveList(field, PrimitiveType.FLOAT);
+	}
+	
+	@Override
+	public FloatList getFloatList(T col) {
+		return getFloatList(col.getField());
+	}
+	
+	@Override
+	public DoubleList getDoubleList(Field field) {
+		return (DoubleList) getPrimitiveList(field, PrimitiveType.DOUBLE);
+	}
+	
+	@Override
+	public DoubleList getDoubleList(T col) {
+		return getDoubleList(col.getField());
+	}
+	
 	/**
 	 * Get the record buffer containing the record.
 	 * @return the record buffer containing the record
@@ -294,7 +709,7 @@ public class ReadOnlyRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		// first create the record buffer if necessary
 		getRecordBuffer();
 		if (buffer != null) {
-			return buffer.getByteBuffer().array();
+			return BufferUtils.array(buffer);
 		} else {
 			return new byte[0];
 		}
@@ -309,83 +724,106 @@ public class ReadOnlyRecord<T extends Enum<T> & RecordMetadataInterface> extends
 	public int getListSize(Field field) {
 		//1. the input must be a collection-type field
 		Preconditions.checkArgument(
-				field.getType() instanceof CollectionFieldType);
+				plan.getKind(field.getId() - 1) == FieldAccessPlan.KIND_COLLECTION);
 		
 		//2. read the size directly from the byte array with the offset
 		return this.meta.getCollectionSize(field, this.buffer);
 	}
 	
+	@Override
+	public Object getListElement(T col, int index) {
+		return getListElement(col.getField(), index);
+	}
+	
+	@Override
+	public Object getListElement(Field field, int index) {
+		Preconditions.checkArgument(
+				plan.getKind(field.getId() - 1) == FieldAccessPlan.KIND_COLLECTION);
+		
+		int offset = getOffset(field);
+		if (offset <= 0) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
+		}
+		ByteBuffer buf = buffer.getByteBuffer();
+		CollectionValueOperator valueOpr = (CollectionValueOperator) plan.getOperator(field.getId() - 1);
+		return valueOpr.getElement(buf, 
+				valueOpr.getElementOffset(buf, offset + 4, buf.getInt(offset), index));
+	}
+	
+	@Override
+	public ListCursor getListCursor(T col) {
+		return getListCursor(col.getField());
+	}
+	
+	@Override
+	public ListCursor getListCursor(Field field) {
+		Preconditions.checkArgument(
+				plan.getKind(field.getId() - 1) == FieldAccessPlan.KIND_COLLECTION);
+		
+		int offset = getOffset(field);
+		if (offset <= 0) {
+			return new ListCursor(Collections.emptyList());
+		}
+		return new ListCursor((CollectionValueOperator) plan.getOperator(field.getId() - 1), 
+				buffer.getByteBuffer(), offset + 4);
+	}
+	
 	/**
-	 * Initiate the offset array for all valid values in the record buffer.
+	 * @return the layout of the version of the current record, which must not 
+	 * be empty
+	 */
+	private RecordVersionLayout getLayout() {
+		if (layout == null) {
+			layout = meta.getVersionLayout(buffer.getByteBuffer());
+		}
+		return layout;
+	}
+	
+	/**
+	 * Initiate the offset array for the record buffer by the layout of its 
+	 * version, where only the null flags of the fixed-length prefix are read 
+	 * and no offset is resolved.
 	 */
 	private void initOffsetArray() {
 		if (buffer != null && this.buffer.getRecordBufferSize() > 0) {
-			constructOffsetArrayFromRecordBuffer();
+			RecordVersionLayout curLayout = getLayout();
+			int length = curLayout.getNumOfAttributes();
+			if (offsetArray == null || offsetArray.length < length) {
+				offsetArray = new int[Math.max(length, this.meta.getTableSize())];
+			}
+			numOfOffsets = length;
+			numOfResolved = 0;
+			posOfFlags = curLayout.getPosOfFlags();
+			posOfValues = curLayout.getPosOfValues();
+			nextOffset = posOfValues;
+			fixedPrefixFlags = plan.getFixedPrefixFlags(buffer.getByteBuffer(), posOfFlags, length);
 		} 
 	}
 	
 	/**
-	 * It creates an array of offsets from the instance of {@link RecordBuffer}. 
+	 * Resolve the offsets of attributes up to the input one (inclusive), starting
+	 * from where the last resolution stopped.  
+	 * 
+	 * @param id the position of the attribute, i.e., the field ID minus 1
 	 */
-	private void constructOffsetArrayFromRecordBuffer() {
+	private void resolveOffsets(int id) {
 
-		int initOffset = 0;
 		ByteBuffer bytebuffer = this.buffer.getByteBuffer();
-		List<T> fieldList = this.meta.getFieldList();
-		
-		//1. get the index of all fixed-length columns
-		short length = bytebuffer.getShort(initOffset + 2); // the number of attributes
-		short refSectionLength = bytebuffer.getShort(initOffset + 4);
-		int posOfAttrs = refSectionLength + 6 + initOffset;
-	
-		offsetArray = new int[length];
-
-		int offset = posOfAttrs + (length + 7) / 8; // skip # of attrs, flags;
-		for (int i = 0; i < length; i++) {
-			byte flag = bytebuffer.get(posOfAttrs + i / 8); 
+		int offset = nextOffset;
+		for (int i = numOfResolved; i <= id; i++) {
+			byte flag = bytebuffer.get(posOfFlags + i / 8); 
 			byte bit = (byte) (1 << ((7 - (i % 8))));
-			T curField = fieldList.get(i); 
 			if ((flag & bit) == 0) {
 				offsetArray[i] = offset;
-						
-				FieldType fieldType = curField.getField().getType();
-				FieldValueOperatorInterface valueOpr = FieldValueOperatorFactory.getOperator(fieldType);
-				if (fieldType instanceof PrimitiveFieldType) {
-					switch (((PrimitiveFieldType) fieldType).getPrimitiveType()) {
-					case STRING:
-						// string requires a SHORT to store its length (max < 32k)
-						short arrayLength = bytebuffer.getShort(offset);
-						if (arrayLength > 0) {
-							offset += 2 + arrayLength;	
-						}
-						break;
-					case BINARY:
-						// other types require a INT to store its length info
-						int arrayLength2 = bytebuffer.getInt(offset);
-						if (arrayLength2 > 0) {
-							offset += 4 + arrayLength2;	
-						}
-						break;
-					default:// all other types with the fixed length
-						int size = valueOpr.getNumOfBytes(null);
-						offset += size;
-						break;
-					}
-				} else if (fieldType instanceof GroupFieldType) {
-					int arrayLength2 = bytebuffer.getInt(offset);
-					if (arrayLength2 > 0) {
-						offset += 4 + arrayLength2;	
-					}
-				} else if (fieldType instanceof CollectionFieldType) {
-					int arrayLength2 = bytebuffer.getInt(offset);
-					if (arrayLength2 > 0) {
-						offset += 4 + arrayLength2;	
-					}
-				}
+				offset = plan.skip(bytebuffer, i, offset);
 			} else {
 				this.offsetArray[i] = -1;
 			}
 		}	
-		this.numOfBytes = offset - initOffset;
+		numOfResolved = id + 1;
+		nextOffset = offset;
+		if (numOfResolved == numOfOffsets) {
+			this.numOfBytes = offset;
+		}
 	}
 }
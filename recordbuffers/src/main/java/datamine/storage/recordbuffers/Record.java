@@ -15,9 +15,20 @@
  */
 package datamine.storage.recordbuffers;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
 import com.google.common.base.Preconditions;
 
+import datamine.storage.api.BoolList;
+import datamine.storage.api.ByteList;
+import datamine.storage.api.DoubleList;
+import datamine.storage.api.FloatList;
+import datamine.storage.api.IntList;
+import datamine.storage.api.LongList;
 import datamine.storage.api.RecordMetadataInterface;
+import datamine.storage.api.ShortList;
 import datamine.storage.idl.Field;
 
 /**
@@ -77,6 +88,29 @@ public abstract class Record<T extends Enum<T> & RecordMetadataInterface> {
 	abstract public void setValue(T col, Object val);
 	abstract public void setValue(Field field, Object val);
 	
+	/**
+	 * Update the value of a primitive field of the fixed length without boxing
+	 * 
+	 * @param col the field of interest
+	 * @param val the new value of the concerned field
+	 * @throws IllegalArgumentException if the field is not of the type
+	 */
+	abstract public void setBool(T col, boolean val);
+	abstract public void setByte(T col, byte val);
+	abstract public void setShort(T col, short val);
+	abstract public void setInt(T col, int val);
+	abstract public void setLong(T col, long val);
+	abstract public void setFloat(T col, float val);
+	abstract public void setDouble(T col, double val);
+	
+	abstract public void setBool(Field field, boolean val);
+	abstract public void setByte(Field field, byte val);
+	abstract public void setShort(Field field, short val);
+	abstract public void setInt(Field field, int val);
+	abstract public void setLong(Field field, long val);
+	abstract public void setFloat(Field field, float val);
+	abstract public void setDouble(Field field, double val);
+	
 	/**
 	 * Get the value of the input column
 	 * @param col the input field
@@ -99,6 +133,9 @@ public abstract class Record<T extends Enum<T> & RecordMetadataInterface> {
 	abstract public int getNumOfBytes();
 	
 	/**
+	 * Note that the array is a copy when the record is not stored at the 
+	 * beginning of a heap buffer, e.g., in a direct or memory-mapped buffer.
+	 * 
 	 * @return An array of bytes used by the instance of {@link RecordBuffer}
 	 */
 	abstract public byte[] array();
@@ -112,6 +149,26 @@ public abstract class Record<T extends Enum<T> & RecordMetadataInterface> {
 	abstract public int getListSize(T col); 
 	abstract public int getListSize(Field field); 
 
+	/**
+	 * Get an element nested in the list-type field without decoding the others.
+	 * 
+	 * @param col the input of a list-type field.
+	 * @param index the position of the element in the list
+	 * @return the element at the position
+	 * @throws IndexOutOfBoundsException if the index is out of the list
+	 */
+	abstract public Object getListElement(T col, int index);
+	abstract public Object getListElement(Field field, int index);
+	
+	/**
+	 * Get a forward-only cursor over the elements nested in the list-type field. 
+	 * 
+	 * @param col the input of a list-type field.
+	 * @return a cursor to read the elements one by one
+	 */
+	abstract public ListCursor getListCursor(T col);
+	abstract public ListCursor getListCursor(Field field);
+
 	///////////////////////////////////////////////////////////////////////////
 	// The following getters define approaches to get the primitive when the 
 	// selected column is primitive
@@ -137,4 +194,60 @@ public abstract class Record<T extends Enum<T> & RecordMetadataInterface> {
 	abstract public byte[] getBinary(Field field);
 	abstract public String getString(Field field);
 
+	///////////////////////////////////////////////////////////////////////////
+	// The following methods access a binary column without copying the bytes 
+	// into a new array. The buffer returned is a read-only view, valid as long 
+	// as the record does not change, and the default value is used when the
+	// column is absent. The number of bytes transferred is returned by writers.
+	///////////////////////////////////////////////////////////////////////////
+	abstract public ByteBuffer getBinaryBuffer(T col);
+	abstract public int getBinaryLength(T col);
+	abstract public int writeBinary(T col, OutputStream out) throws IOException;
+	abstract public int writeBinary(T col, ByteBuffer out);
+
+	abstract public ByteBuffer getBinaryBuffer(Field field);
+	abstract public int getBinaryLength(Field field);
+	abstract public int writeBinary(Field field, OutputStream out) throws IOException;
+	abstract public int writeBinary(Field field, ByteBuffer out);
+
+	///////////////////////////////////////////////////////////////////////////
+	// The following methods evaluate a string column against a query value on 
+	// the UTF-8 bytes directly, without creating a string for the column. 
+	// The order is the one of unicode code points, see Utf8Utils.
+	///////////////////////////////////////////////////////////////////////////
+	abstract public int compareString(T col, String value);
+	abstract public boolean isStringEqual(T col, String value);
+	abstract public boolean isStringPrefixedBy(T col, String prefix);
+	/**
+	 * @return the same hash code as the one of the string value
+	 */
+	abstract public int getStringHashCode(T col);
+
+	abstract public int compareString(Field field, String value);
+	abstract public boolean isStringEqual(Field field, String value);
+	abstract public boolean isStringPrefixedBy(Field field, String prefix);
+	abstract public int getStringHashCode(Field field);
+
+	///////////////////////////////////////////////////////////////////////////
+	// The following getters define approaches to get a view of the list-type 
+	// column whose elements are fixed-length primitives. The view reads the 
+	// elements from the record buffer directly without boxing. 
+	///////////////////////////////////////////////////////////////////////////
+
+	abstract public BoolList getBoolList(T col);
+	abstract public ByteList getByteList(T col);
+	abstract public ShortList getShortList(T col);
+	abstract public IntList getIntList(T col);
+	abstract public LongList getLongList(T col);
+	abstract public FloatList getFloatList(T col);
+	abstract public DoubleList getDoubleList(T col);
+
+	abstract public BoolList getBoolList(Field field);
+	abstract public ByteList getByteList(Field field);
+	abstract public ShortList getShortList(Field field);
+	abstract public IntList getIntList(Field field);
+	abstract public LongList getLongList(Field field);
+	abstract public FloatList getFloatList(Field field);
+	abstract public DoubleList getDoubleList(Field field);
+
 }
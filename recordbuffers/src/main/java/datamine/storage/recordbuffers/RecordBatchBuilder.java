@@ -0,0 +1,397 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import datamine.storage.api.RecordMetadataInterface;
+import datamine.storage.idl.Field;
+import datamine.storage.idl.FieldValueOperatorInterface;
+import datamine.storage.idl.type.PrimitiveFieldType;
+import datamine.storage.idl.type.PrimitiveType;
+
+/**
+ * A builder creating a batch of records from the values given by columns,
+ * i.e., an array or list per field with one value for every record.
+ *
+ * <p>
+ * The records are built in two passes. The null flags and the sizes of all
+ * records are computed column by column first, so that the flags of a field
+ * are decided for the whole batch at once, and one buffer is allocated for
+ * the batch. The records are then written one after another into the buffer,
+ * where the header without values is copied from the template of the table.
+ * The records are the same as the ones built by {@link WritableRecord} with
+ * the same values, e.g., a null or default value is stored as absent.
+ * </p>
+ *
+ * <p>
+ * The instance is not thread-safe, and the arrays and lists of values should
+ * not change until the records are built.
+ * </p>
+ *
+ * @author yqi
+ */
+public class RecordBatchBuilder<T extends Enum<T> & RecordMetadataInterface> {
+
+	private final RecordBufferMeta<T> meta;
+	private final int numOfRecords;
+
+	/**
+	 * The values of the fixed length in bits, see {@link WritableRecord#toBits(PrimitiveType, Object)},
+	 * and the markers of the null ones if set by a list
+	 */
+	private final long[][] bitsColumns;
+	private final boolean[][] nullColumns;
+
+	/**
+	 * The values of a variable length
+	 */
+	private final Object[][] valueColumns;
+
+	private final RecordHeaderLayout headerLayout;
+	private final int numOfFlagBytes;
+
+	/**
+	 * The allocator of the buffer of the batch, or null for the default one
+	 */
+	private BufferAllocator allocator = null;
+
+	public RecordBatchBuilder(Class<T> clazz, int numOfRecords) {
+		Preconditions.checkArgument(numOfRecords >= 0);
+		this.meta = RecordBufferMeta.getRecordOperator(clazz);
+		this.numOfRecords = numOfRecords;
+
+		int numOfFields = meta.getFieldList().size();
+		this.bitsColumns = new long[numOfFields][];
+		this.nullColumns = new boolean[numOfFields][];
+		this.valueColumns = new Object[numOfFields][];
+
+		this.headerLayout = meta.getHeaderLayout();
+		this.numOfFlagBytes = (numOfFields + 7) / 8;
+	}
+
+	/**
+	 * Set the allocator of the buffer of the batch, e.g., an {@link ArenaBufferAllocator}
+	 *
+	 * @param allocator the allocator, or null for the default one of {@link RecordBuffer}
+	 */
+	public void setAllocator(BufferAllocator allocator) {
+		this.allocator = allocator;
+	}
+
+	/**
+	 * @return the number of records in the batch
+	 */
+	public int getNumOfRecords() {
+		return numOfRecords;
+	}
+
+	public void setBools(Field field, boolean[] values) {
+		checkColumn(field, PrimitiveType.BOOL, values.length);
+		long[] bits = new long[numOfRecords];
+		for (int i = 0; i < numOfRecords; ++i) {
+			bits[i] = values[i] ? 1 : 0;
+		}
+		setBits(field, bits, null);
+	}
+
+	public void setBools(T col, boolean[] values) {
+		setBools(col.getField(), values);
+	}
+
+	public void setBytes(Field field, byte[] values) {
+		checkColumn(field, PrimitiveType.BYTE, values.length);
+		long[] bits = new long[numOfRecords];
+		for (int i = 0; i < numOfRecords; ++i) {
+			bits[i] = values[i];
+		}
+		setBits(field, bits, null);
+	}
+
+	public void setBytes(T col, byte[] values) {
+		setBytes(col.getField(), values);
+	}
+
+	public void setShorts(Field field, short[] values) {
+		checkColumn(field, PrimitiveType.INT16, values.length);
+		long[] bits = new long[numOfRecords];
+		for (int i = 0; i < numOfRecords; ++i) {
+			bits[i] = values[i];
+		}
+		setBits(field, bits, null);
+	}
+
+	public void setShorts(T col, short[] values) {
+		setShorts(col.getField(), values);
+	}
+
+	public void setInts(Field field, int[] values) {
+		checkColumn(field, PrimitiveType.INT32, values.length);
+		long[] bits = new long[numOfRecords];
+		for (int i = 0; i < numOfRecords; ++i) {
+			bits[i] = values[i];
+		}
+		setBits(field, bits, null);
+	}
+
+	public void setInts(T col, int[] values) {
+		setInts(col.getField(), values);
+	}
+
+	public void setLongs(Field field, long[] values) {
+		checkColumn(field, PrimitiveType.INT64, values.length);
+		setBits(field, values.clone(), null);
+	}
+
+	public void setLongs(T col, long[] values) {
+		setLongs(col.getField(), values);
+	}
+
+	public void setFloats(Field field, float[] values) {
+		checkColumn(field, PrimitiveType.FLOAT, values.length);
+		long[] bits = new long[numOfRecords];
+		for (int i = 0; i < numOfRecords; ++i) {
+			bits[i] = Float.floatToIntBits(values[i]);
+		}
+		setBits(field, bits, null);
+	}
+
+	public void setFloats(T col, float[] values) {
+		setFloats(col.getField(), values);
+	}
+
+	public void setDoubles(Field field, double[] values) {
+		checkColumn(field, PrimitiveType.DOUBLE, values.length);
+		long[] bits = new long[numOfRecords];
+		for (int i = 0; i < numOfRecords; ++i) {
+			bits[i] = Double.doubleToLongBits(values[i]);
+		}
+		setBits(field, bits, null);
+	}
+
+	public void setDoubles(T col, double[] values) {
+		setDoubles(col.getField(), values);
+	}
+
+	/**
+	 * Set the values of a field of any type, e.g., strings, lists or nested
+	 * records, where a null value is stored as absent.
+	 *
+	 * @param field the field of interest
+	 * @param values the values, one for every record
+	 */
+	public void setValues(Field field, List<?> values) {
+		int id = checkField(field);
+		Preconditions.checkArgument(values.size() == numOfRecords,
+				"%s values for %s records", values.size(), numOfRecords);
+
+		FieldAccessPlan plan = meta.getAccessPlan();
+		if (plan.getKind(id) != FieldAccessPlan.KIND_FIXED) {
+			bitsColumns[id] = null;
+			nullColumns[id] = null;
+			valueColumns[id] = values.toArray();
+			return;
+		}
+
+		// unbox the values of the fixed length
+		PrimitiveType type = ((PrimitiveFieldType) field.getType()).getPrimitiveType();
+		FieldValueOperatorInterface valOpr = plan.getOperator(id);
+		long[] bits = new long[numOfRecords];
+		boolean[] isNull = new boolean[numOfRecords];
+		int i = 0;
+		for (Object val : values) {
+			if (val == null || !valOpr.isValid(val)) {
+				isNull[i] = true;
+			} else {
+				bits[i] = WritableRecord.toBits(type, val);
+			}
+			++i;
+		}
+		setBits(field, bits, isNull);
+	}
+
+	public void setValues(T col, List<?> values) {
+		setValues(col.getField(), values);
+	}
+
+	private void setBits(Field field, long[] bits, boolean[] isNull) {
+		int id = field.getId() - 1; // note that id starts at 1
+		bitsColumns[id] = bits;
+		nullColumns[id] = isNull;
+		valueColumns[id] = null;
+	}
+
+	private void checkColumn(Field field, PrimitiveType type, int length) {
+		checkField(field);
+		Preconditions.checkArgument(field.getType() instanceof PrimitiveFieldType &&
+				((PrimitiveFieldType) field.getType()).getPrimitiveType() == type,
+				"%s is not of %s", field.getName(), type);
+		Preconditions.checkArgument(length == numOfRecords,
+				"%s values for %s records", length, numOfRecords);
+	}
+
+	private int checkField(Field field) {
+		int id = field.getId() - 1; // note that id starts at 1
+		Preconditions.checkArgument(id >= 0 && id < valueColumns.length,
+				"%s is not a field of %s", field.getName(), meta.getTableName());
+		return id;
+	}
+
+	/**
+	 * Build the records into one buffer, one after another.
+	 *
+	 * @param offsets the array for the offsets of records, of a length larger
+	 * than the number of records: the record i takes the bytes from offsets[i]
+	 * to offsets[i + 1]
+	 * @return the buffer of the records
+	 */
+	public ByteBuffer build(int[] offsets) {
+		Preconditions.checkArgument(offsets.length > numOfRecords,
+				"%s offsets for %s records", offsets.length, numOfRecords);
+
+		//1. find out the null flags and the sizes of records, column by column
+		byte[] flags = new byte[numOfRecords * numOfFlagBytes];
+		long numOfBytes = (long) numOfRecords * headerLayout.getLength();
+		for (int id = 0; id < valueColumns.length; ++id) {
+			numOfBytes += computeFlags(id, flags);
+		}
+		Preconditions.checkArgument(numOfBytes <= Integer.MAX_VALUE,
+				"Too many bytes for a batch: %s", numOfBytes);
+
+		//2. write the records into one buffer of the exact size
+		BufferAllocator allocator = this.allocator == null ?
+				RecordBuffer.getDefaultAllocator() : this.allocator;
+		ByteBuffer out = allocator.allocate((int) numOfBytes);
+		writeRecords(out, flags, offsets);
+		Preconditions.checkState(offsets[numOfRecords] == numOfBytes,
+				"%s bytes are written for the batch sized %s", offsets[numOfRecords], numOfBytes);
+		return out;
+	}
+
+	/**
+	 * Build the records as the views on one buffer, see {@link RecordBuffer#createView(ByteBuffer, int, int)}.
+	 * Any record built on a view copies the bytes before writing.
+	 *
+	 * @return the record buffers
+	 */
+	public List<RecordBuffer> build() {
+		int[] offsets = new int[numOfRecords + 1];
+		ByteBuffer out = build(offsets);
+		List<RecordBuffer> records = Lists.newArrayListWithCapacity(numOfRecords);
+		for (int i = 0; i < numOfRecords; ++i) {
+			records.add(RecordBuffer.createView(out, offsets[i], offsets[i + 1] - offsets[i]));
+		}
+		return records;
+	}
+
+	/**
+	 * Set the null flags of a field for all records
+	 *
+	 * @return the number of bytes of the values of the field
+	 */
+	private long computeFlags(int id, byte[] flags) {
+		int flagIndex = id / 8;
+		byte flagBit = (byte) (1 << (7 - (id % 8)));
+		Field field = meta.getFieldList().get(id).getField();
+		FieldValueOperatorInterface valOpr = meta.getAccessPlan().getOperator(id);
+		long numOfBytes = 0;
+
+		if (bitsColumns[id] != null) {
+			long[] bits = bitsColumns[id];
+			boolean[] isNull = nullColumns[id];
+			Object defaultValue = field.getDefaultValue();
+			boolean hasDefault = defaultValue != null;
+			long defaultBits = hasDefault ? WritableRecord.toBits(
+					((PrimitiveFieldType) field.getType()).getPrimitiveType(), defaultValue) : 0;
+			int numOfValues = 0;
+			for (int i = 0; i < numOfRecords; ++i) {
+				// the default value is stored as absent
+				if ((isNull != null && isNull[i]) || (hasDefault && bits[i] == defaultBits)) {
+					flags[i * numOfFlagBytes + flagIndex] |= flagBit;
+				} else {
+					++numOfValues;
+				}
+			}
+			numOfBytes = (long) numOfValues * meta.getAccessPlan().getWidth(id);
+		} else if (valueColumns[id] != null) {
+			Object[] values = valueColumns[id];
+			for (int i = 0; i < numOfRecords; ++i) {
+				// the default or empty value is stored as absent
+				int valueLength = WritableRecord.getValueLength(field, valOpr, values[i]);
+				if (valueLength < 0) {
+					flags[i * numOfFlagBytes + flagIndex] |= flagBit;
+				} else {
+					numOfBytes += valueLength;
+				}
+			}
+		} else {
+			for (int i = 0; i < numOfRecords; ++i) {
+				flags[i * numOfFlagBytes + flagIndex] |= flagBit;
+			}
+		}
+		return numOfBytes;
+	}
+
+	/**
+	 * Write the records one after another with the null flags computed, i.e.,
+	 * only the values present are written.
+	 */
+	private void writeRecords(ByteBuffer out, byte[] flags, int[] offsets) {
+		List<T> fieldList = meta.getFieldList();
+		FieldAccessPlan plan = meta.getAccessPlan();
+		int numOfFields = fieldList.size();
+		int curPosition = 0;
+		for (int i = 0; i < numOfRecords; ++i) {
+			int start = curPosition;
+			int flagStart = i * numOfFlagBytes;
+			offsets[i] = start;
+
+			//1. copy the header, and then the null flags
+			curPosition += headerLayout.writeHeader(out, start);
+			int posOfFlags = start + headerLayout.getPosOfFlags();
+			for (int k = 0; k < numOfFlagBytes; ++k) {
+				out.put(posOfFlags + k, flags[flagStart + k]);
+			}
+
+			//2. write the present values
+			for (int id = 0; id < numOfFields; ++id) {
+				byte flagBit = (byte) (1 << (7 - (id % 8)));
+				if ((flags[flagStart + id / 8] & flagBit) != 0) {
+					continue;
+				}
+
+				Field field = fieldList.get(id).getField();
+				int valueLength;
+				if (bitsColumns[id] != null) {
+					valueLength = WritableRecord.putFixedValue(out, curPosition,
+							((PrimitiveFieldType) field.getType()).getPrimitiveType(), bitsColumns[id][i]);
+				} else {
+					valueLength = WritableRecord.writeValue(out, curPosition, field,
+							plan.getOperator(id), valueColumns[id][i]);
+				}
+				
+				//3. patch the reference section
+				headerLayout.putReference(out, start, id, curPosition - start);
+				curPosition += valueLength;
+			}
+		}
+		offsets[numOfRecords] = curPosition;
+	}
+}
@@ -28,6 +28,20 @@ import com.google.common.base.Preconditions;
 /**
  * The implementation of storage for a record. 
  * 
+ * <p>
+ * The bytes can be held by a heap buffer, or by a direct or memory-mapped
+ * buffer via {@link #wrap(ByteBuffer, int, int)}. In any case the position 0 
+ * of {@link #getByteBuffer()} is the beginning of the record, and no code 
+ * should assume the buffer has an accessible array. 
+ * </p>
+ * 
+ * <p>
+ * The heap storage of a copy, or of the bytes read by {@link #readFields(DataInput)}, 
+ * comes from a {@link BufferAllocator}, which is the default one unless given 
+ * in the constructor. Such storage can be returned to the allocator with 
+ * {@link #release()} once no record refers to it. 
+ * </p>
+ * 
  * @author yqi
  * @date Jul 31, 2014
  */
@@ -43,6 +57,28 @@ public class RecordBuffer implements Writable {
 	 */
 	private ByteBuffer recordByteBuffer = null;
 	
+	/**
+	 * True if the bytes are shared with another record, e.g., a nested record
+	 * viewing the bytes of its parent. A shared buffer must never be changed. 
+	 */
+	private boolean isShared = false;
+	
+	/**
+	 * The allocator of the storage copied or read into the instance, or null
+	 * for the default one
+	 */
+	private BufferAllocator allocator = null;
+	
+	/**
+	 * True if the bytes are held by the storage from the allocator
+	 */
+	private boolean isAllocated = false;
+	
+	/**
+	 * The allocator used when none is given to the instance
+	 */
+	private static volatile BufferAllocator defaultAllocator = HeapBufferAllocator.INSTANCE;
+	
 	/**
 	 * This is a dummy constructor for Hadoop MR job
 	 */
@@ -50,23 +86,177 @@ public class RecordBuffer implements Writable {
 		
 	} 
 	
+	/**
+	 * @param allocator the allocator of the storage read by {@link #readFields(DataInput)}
+	 */
+	public RecordBuffer(BufferAllocator allocator) {
+		this.allocator = allocator;
+	}
+	
 	public RecordBuffer(RecordBuffer record) {
-		this(record.getByteBuffer().array(), 0, record.getRecordBufferSize());
+		this(record.getByteBuffer(), 0, record.getRecordBufferSize());
+	}
+	
+	/**
+	 * Create a copy of the record with the storage from the allocator
+	 * 
+	 * @param record the record to copy
+	 * @param allocator the allocator of the storage
+	 */
+	public RecordBuffer(RecordBuffer record, BufferAllocator allocator) {
+		this.allocator = allocator;
+		copyFrom(record.getByteBuffer(), 0, record.getRecordBufferSize());
 	}
 	
 	public RecordBuffer(byte[] recordBytes, int offset, int length) {
+		this(ByteBuffer.wrap(recordBytes), offset, length);
+	}	
+	
+	/**
+	 * Create an instance over the storage allocated by the allocator, which
+	 * the instance owns from now on.
+	 */
+	RecordBuffer(ByteBuffer storage, int length, BufferAllocator allocator) {
+		this.allocator = allocator;
+		setStorage(storage, length);
+	}
+
+	/**
+	 * Create a heap copy of the record stored in the input buffer, which can
+	 * be a direct or memory-mapped one.  
+	 * 
+	 * @param src the buffer containing the record
+	 * @param offset the absolute position where the record starts in the buffer
+	 * @param length the number of bytes of the record
+	 */
+	public RecordBuffer(ByteBuffer src, int offset, int length) {
+		copyFrom(src, offset, length);
+	}
+	
+	private void copyFrom(ByteBuffer src, int offset, int length) {
 		Preconditions.checkArgument(length > 0);
+		setStorage(getAllocator().allocate(length), length);
+		BufferUtils.copy(src, offset, this.recordByteBuffer, 0, length);
+	}
+	
+	private void setStorage(ByteBuffer storage, int length) {
 		this.recordByteBufferSize = length;
-		this.recordByteBuffer = ByteBuffer.allocate(length);
-		this.recordByteBuffer.put(recordBytes, offset, length);
-	}	
+		this.recordByteBuffer = storage;
+		this.recordByteBuffer.clear();
+		this.recordByteBuffer.limit(length);
+		this.isShared = false;
+		this.isAllocated = true;
+	}
+	
+	/**
+	 * @return the allocator of the storage copied or read into the instance
+	 */
+	public BufferAllocator getAllocator() {
+		return allocator == null ? defaultAllocator : allocator;
+	}
+	
+	/**
+	 * @return the allocator used by the instances not given one
+	 */
+	public static BufferAllocator getDefaultAllocator() {
+		return defaultAllocator;
+	}
+	
+	/**
+	 * Set the allocator used by the instances not given one, e.g., a 
+	 * {@link PooledBufferAllocator} for the whole process.
+	 * 
+	 * @param allocator the allocator
+	 */
+	public static void setDefaultAllocator(BufferAllocator allocator) {
+		defaultAllocator = Preconditions.checkNotNull(allocator);
+	}
 
+	/**
+	 * Make the instance refer to a window of the input array without copying. 
+	 * 
+	 * <p>
+	 * The byte buffer is a slice starting at the offset, so that the position 0
+	 * of the buffer is always the beginning of the record. Wrapping the same 
+	 * array at the same offset again reuses the existing byte buffer, which 
+	 * allows a scan to re-point one instance at each record without allocation. 
+	 * </p>
+	 * 
+	 * @param recordBytes the array containing the record
+	 * @param offset the position where the record starts in the array
+	 * @param length the number of bytes of the record
+	 */
 	public void wrap(byte[] recordBytes, int offset, int length) {
 		Preconditions.checkArgument(length > 0);
+		Preconditions.checkArgument(offset >= 0 && offset + length <= recordBytes.length);
 		this.recordByteBufferSize = length;
-		this.recordByteBuffer = ByteBuffer.wrap(recordBytes, offset, length);
+		this.isShared = false;
+		this.isAllocated = false;
+		if (this.recordByteBuffer != null && this.recordByteBuffer.hasArray() && 
+				this.recordByteBuffer.array() == recordBytes && 
+				this.recordByteBuffer.arrayOffset() == offset) {
+			this.recordByteBuffer.clear();
+		} else {
+			this.recordByteBuffer = ByteBuffer.wrap(recordBytes, offset, 
+					recordBytes.length - offset).slice();
+		}
+		this.recordByteBuffer.limit(length);
 	}
 
+	/**
+	 * Make the instance refer to a region of the input buffer without copying.
+	 * 
+	 * <p>
+	 * The input can be a heap, direct or memory-mapped buffer. Its position,
+	 * limit and byte order are not changed. 
+	 * </p>
+	 * 
+	 * @param src the buffer containing the record
+	 * @param offset the absolute position where the record starts in the buffer
+	 * @param length the number of bytes of the record
+	 */
+	public void wrap(ByteBuffer src, int offset, int length) {
+		Preconditions.checkArgument(length > 0);
+		Preconditions.checkArgument(offset >= 0 && offset + length <= src.capacity());
+		ByteBuffer dup = src.duplicate();
+		dup.clear();
+		dup.position(offset);
+		dup.limit(offset + length);
+		this.recordByteBufferSize = length;
+		this.recordByteBuffer = dup.slice(); // always in BIG_ENDIAN
+		this.isShared = false;
+		this.isAllocated = false;
+	}
+	
+	/**
+	 * Create a read-only view of the record stored in a region of the input 
+	 * buffer; the bytes are shared rather than copied.
+	 * 
+	 * <p>
+	 * The view is valid as long as the bytes of the input buffer do not change. 
+	 * Any record built on the view should copy it before writing (i.e., 
+	 * copy-on-write), see {@link #isShared()}.
+	 * </p>
+	 * 
+	 * @param src the buffer containing the record
+	 * @param offset the absolute position where the record starts in the buffer
+	 * @param length the number of bytes of the record
+	 * @return a view of the record sharing the bytes with the input buffer
+	 */
+	public static RecordBuffer createView(ByteBuffer src, int offset, int length) {
+		RecordBuffer view = new RecordBuffer();
+		view.wrap(src, offset, length);
+		view.isShared = true;
+		return view;
+	}
+	
+	/**
+	 * @return true if the bytes are shared with another record and must not be changed
+	 */
+	public boolean isShared() {
+		return isShared;
+	}
+	
 	/**
 	 * FIXME is it right, always?
 	 * @return the recordBufferSize
@@ -85,24 +275,58 @@ public class RecordBuffer implements Writable {
 	public void clear() {
 		this.recordByteBuffer = null;
 		this.recordByteBufferSize = 0;
+		this.isShared = false;
+		this.isAllocated = false;
+	}
+	
+	/**
+	 * @return true if the bytes are held by the storage from the allocator, 
+	 * which can be returned with {@link #release()}
+	 */
+	public boolean isAllocated() {
+		return isAllocated;
+	}
+	
+	/**
+	 * Return the storage to the allocator if it comes from there, and clear 
+	 * the instance. The bytes wrapped or shared are never released. 
+	 * 
+	 * <p>
+	 * Neither the instance nor any record or view over its bytes can be used
+	 * after, as the storage may be handed out again.
+	 * </p>
+	 */
+	public void release() {
+		if (this.isAllocated) {
+			getAllocator().release(this.recordByteBuffer);
+		}
+		clear();
 	}
 	
 	@Override
 	public void readFields(DataInput in) throws IOException {
-		this.recordByteBufferSize = in.readInt();
-		if (this.recordByteBuffer == null || this.recordByteBufferSize > this.recordByteBuffer.capacity()) {
-			this.recordByteBuffer = ByteBuffer.allocate(this.recordByteBufferSize);
+		int length = in.readInt();
+		// a direct, read-only or shared buffer cannot be filled in place
+		if (this.recordByteBuffer == null || !this.recordByteBuffer.hasArray() || this.isShared ||
+				length > this.recordByteBuffer.capacity()) {
+			if (this.isAllocated) {
+				getAllocator().release(this.recordByteBuffer);
+			}
+			setStorage(getAllocator().allocate(length), length);
 		} else {
+			this.recordByteBufferSize = length;
 			this.recordByteBuffer.clear();
+			this.recordByteBuffer.limit(length);
 		}
 		
-		in.readFully(this.recordByteBuffer.array(), 0, this.recordByteBufferSize);
+		in.readFully(this.recordByteBuffer.array(), 
+				this.recordByteBuffer.arrayOffset(), this.recordByteBufferSize);
 	}
 
 	@Override
 	public void write(DataOutput out) throws IOException {
 		out.writeInt(this.recordByteBufferSize);
-		out.write(this.recordByteBuffer.array(), 0, this.recordByteBufferSize);
+		BufferUtils.write(this.recordByteBuffer, 0, this.recordByteBufferSize, out);
 	}
 
 }
@@ -16,10 +16,13 @@
 package datamine.storage.recordbuffers;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,21 +49,47 @@ public class RecordBufferMeta<T extends Enum<T> & RecordMetadataInterface> {
 	private final List<T> fieldList; // a list of fields ordered by its 'ID'
 	private final Map<String, T> nameFieldMap;
 	private final ReferenceSection refSection;
+	private final FieldAccessPlan accessPlan;
+	private final RecordHeaderLayout headerLayout;
+	
+	/**
+	 * The layouts of records by version: the current one, and the older ones 
+	 * found in the records read
+	 */
+	private final RecordVersionLayout currentLayout;
+	private final ConcurrentMap<Short, RecordVersionLayout> olderLayouts = 
+			new ConcurrentHashMap<Short, RecordVersionLayout>();
 
 	// The factory pattern to minimize the instances of the class
 	@SuppressWarnings("rawtypes")
-	private static Map<Class, RecordBufferMeta> operatorMap = Maps.newHashMap();
+	private static final ConcurrentMap<Class, RecordBufferMeta> operatorMap = 
+			new ConcurrentHashMap<Class, RecordBufferMeta>();
 	
+	/**
+	 * Get the only instance for a table, which can be called by threads 
+	 * concurrently. 
+	 * 
+	 * <p>
+	 * The lookup of an existing instance takes no lock. When threads race to 
+	 * create the first instance of a table, each may build one, but only the 
+	 * one published first is kept and returned to all. 
+	 * </p>
+	 * 
+	 * @param enumClass the ENUM defines the table schema
+	 * @return the instance for the table
+	 */
 	@SuppressWarnings("unchecked")
 	public static <T extends Enum<T> & RecordMetadataInterface> RecordBufferMeta<T> 
 		getRecordOperator(Class<T> enumClass) {
-		if (operatorMap.containsKey(enumClass)) {
-			return operatorMap.get(enumClass);
-		} else {
+		RecordBufferMeta<T> meta = operatorMap.get(enumClass);
+		if (meta == null) {
 			RecordBufferMeta<T> newElem = new RecordBufferMeta<T>(enumClass);
-			operatorMap.put(enumClass, newElem);
-			return newElem;
+			meta = operatorMap.putIfAbsent(enumClass, newElem);
+			if (meta == null) {
+				meta = newElem;
+			}
 		}
+		return meta;
 	}
 
 
@@ -89,6 +118,56 @@ public class RecordBufferMeta<T extends Enum<T> & RecordMetadataInterface> {
 
 		// build the reference section
 		refSection = new ReferenceSection(fieldList); // 4 bytes for version # and # of attributes
+		
+		// compile the access plan once the reference section is known
+		accessPlan = new FieldAccessPlan(this);
+		headerLayout = new RecordHeaderLayout(this);
+		currentLayout = new RecordVersionLayout(fieldList.get(0).getVersion(), fieldList.size(), 
+				refSection.length, refSection.hasSortKey, refSection.numOfCollections, 
+				refSection.numOfReferences, accessPlan.getFixedPrefixLength());
+	}
+
+	/**
+	 * @return the access plan compiled for all fields of the table
+	 */
+	public FieldAccessPlan getAccessPlan() {
+		return accessPlan;
+	}
+	
+	/**
+	 * @return the layout of the record header, for the writers building records
+	 */
+	RecordHeaderLayout getHeaderLayout() {
+		return headerLayout;
+	}
+
+	/**
+	 * Get the layout of the record by its version. 
+	 * 
+	 * <p>
+	 * The layout of an older version is read from the header of the first record 
+	 * of the version, and kept for all records of the same version. It can be 
+	 * called by threads concurrently. 
+	 * </p>
+	 * 
+	 * @param buffer the non-empty byte buffer starting with the record
+	 * @return the layout of all records of the same version
+	 */
+	RecordVersionLayout getVersionLayout(ByteBuffer buffer) {
+		short version = buffer.getShort(0);
+		if (version == currentLayout.getVersion()) {
+			return currentLayout;
+		}
+		RecordVersionLayout layout = olderLayouts.get(version);
+		if (layout == null) {
+			RecordVersionLayout newLayout = RecordVersionLayout.read(
+					buffer, hasSortedKey(), accessPlan.getFixedPrefixLength());
+			layout = olderLayouts.putIfAbsent(version, newLayout);
+			if (layout == null) {
+				layout = newLayout;
+			}
+		}
+		return layout;
 	}
 
 	/**
@@ -158,30 +237,28 @@ public class RecordBufferMeta<T extends Enum<T> & RecordMetadataInterface> {
 	 * @return true if there is any collection-type field in the record
 	 */
 	public boolean hasCollectionFieldInReferenceSection() {
-		return this.refSection.collectionReferenceSequenceMap != null;
+		return this.refSection.numOfCollections > 0;
 	}
 	
 	/**
 	 * @return true if there is any non-collection-type field in the reference section.
 	 */
 	public boolean hasNonCollectionFieldInReferenceSection() {
-		return this.refSection.nonCollectionReferenceOffsetMap != null;
+		return this.refSection.numOfReferences > 0;
 	}
 	
 	/**
 	 * @return the number of collection-type fields in the record
 	 */
 	public byte getNumOfCollectionFieldInReferenceSection() {
-		return (byte) (hasCollectionFieldInReferenceSection() 
-				? this.refSection.collectionReferenceSequenceMap.size() : 0);
+		return (byte) this.refSection.numOfCollections;
 	}
 	
 	/**
 	 * @return the number of non-collection-type fields in the reference section
 	 */
 	public byte getNumOfNonCollectionFieldInReferenceSection() {
-		return (byte) (hasNonCollectionFieldInReferenceSection() 
-				? this.refSection.nonCollectionReferenceOffsetMap.size() : 0);
+		return (byte) this.refSection.numOfReferences;
 	}
 	
 	/**
@@ -196,8 +273,25 @@ public class RecordBufferMeta<T extends Enum<T> & RecordMetadataInterface> {
 	 * @return the sequence id (starting at 0) of the input collection-type field
 	 */
 	public int getSequenceOfCollectionField(int fieldId) {
-		return hasCollectionFieldInReferenceSection() 
-				? this.refSection.collectionReferenceSequenceMap.get(fieldId) : -1;
+		int[] sequences = this.refSection.collectionSequences;
+		return fieldId >= 0 && fieldId < sequences.length ? sequences[fieldId] : -1;
+	}
+	
+	/**
+	 * Every field with 'hasRef' annotation has a slot in the reference section, 
+	 * in the order of field IDs. The function gets the slot (starting at 0) of 
+	 * the input field. 
+	 * 
+	 * <p>
+	 * If the input is not a field with 'hasRef' annotation, -1 would be returned. 
+	 * </p>
+	 * 
+	 * @param fieldId the field ID of the input attribute
+	 * @return the slot (starting at 0) of the input field in the reference section
+	 */
+	public int getSlotOfReferenceField(int fieldId) {
+		int[] slots = this.refSection.referenceSlots;
+		return fieldId >= 0 && fieldId < slots.length ? slots[fieldId] : -1;
 	}
 	
 	/** 
@@ -242,21 +336,18 @@ public class RecordBufferMeta<T extends Enum<T> & RecordMetadataInterface> {
 	 * @return the offset of the input field in the record buffer
 	 */
 	public int getCollectionOffset(Field field, RecordBuffer rb) {
+		return getCollectionOffset(this.getSequenceOfCollectionField(field.getId()), rb);
+	}
+	
+	/**
+	 * Find out the offset of the collection-type field given its sequence id
+	 * @param seqenceNo the sequence id (starting at 0) of the collection-type field
+	 * @param rb the record buffer storing the record
+	 * @return the offset of the field in the record buffer
+	 */
+	int getCollectionOffset(int seqenceNo, RecordBuffer rb) {
 		ByteBuffer byteBuffer = rb.getByteBuffer();
-		int initOffset = 0;
-		int id = field.getId();
-		int seqenceNo = this.getSequenceOfCollectionField(id);
-		if (seqenceNo >= 0) {
-			int offset = initOffset + 4 + 2 + (this.hasSortedKey() ? 4 : 0);
-			int numOfCollectionsInRecord = byteBuffer.get(offset);
-			offset += 1; // for the number of collection-type fields
-
-			if (seqenceNo < numOfCollectionsInRecord) {
-				offset += 4 * seqenceNo; // the position of the reference
-				return byteBuffer.getInt(offset);
-			} 
-		}
-		return -1;
+		return getVersionLayout(byteBuffer).getCollectionOffset(byteBuffer, seqenceNo);
 	}
 	
 	/**
@@ -276,33 +367,26 @@ public class RecordBufferMeta<T extends Enum<T> & RecordMetadataInterface> {
 	 * @return the offset of the field with 'hasRef' annotation.
 	 */
 	public int getFieldWithReferenceOffset(Field field, RecordBuffer rb) {
-		
+		return getFieldWithReferenceOffset(field.getId(), rb);
+	}
+	
+	/**
+	 * Get the offset of the field with 'hasRef' annotation given its ID
+	 * 
+	 * <p>
+	 * The reference of the field is read from its own slot by the layout of the 
+	 * record version, so no scan is needed in general, see 
+	 * {@link RecordVersionLayout#getReferenceOffset(ByteBuffer, int, int)}.
+	 * </p>
+	 * 
+	 * @param id the ID of the field with 'hasRef' annotation
+	 * @param rb the record buffer storing the record
+	 * @return the offset of the field with 'hasRef' annotation.
+	 */
+	int getFieldWithReferenceOffset(int id, RecordBuffer rb) {
 		ByteBuffer byteBuffer = rb.getByteBuffer();
-		int initOffset = 0;
-		
-		int id = field.getId();
-		int length = byteBuffer.getShort(initOffset + 4);
-		if (length > 2) {
-
-			int offset = initOffset +  
-					4 + // version # + # of attributes
-					2 + // length of reference section
-					(this.hasSortedKey() ? 4 : 0);
-
-			int numOfCollectionType = byteBuffer.get(offset);
-			offset += 1 + // the # of collection-type fields
-					4 * numOfCollectionType;
-
-			int refereceFieldNum = byteBuffer.get(offset);
-			offset += 1;
-			for (int i = 0; i < refereceFieldNum; ++i) {
-				if (id == byteBuffer.getShort(offset)) {
-					return byteBuffer.getInt(offset + 2);
-				}
-				offset += 2 + 4;
-			}
-		}
-		return -1;
+		return getVersionLayout(byteBuffer).getReferenceOffset(
+				byteBuffer, id, getSlotOfReferenceField(id));
 	}
 	
 	/**
@@ -344,15 +428,19 @@ public class RecordBufferMeta<T extends Enum<T> & RecordMetadataInterface> {
 		private short length = 2; 				
 		// must decide at the creation; once set, no way to peel
 		private boolean hasSortKey = false; 	
-		// monotonic increasing
-		private Map<Integer, Integer> collectionReferenceSequenceMap;  
-		// can change from version to version
-		private Map<Integer, Integer> nonCollectionReferenceOffsetMap; 
+		// monotonic increasing, indexed by the field ID (-1 if not a collection)
+		private final int[] collectionSequences;
+		private int numOfCollections = 0;
+		// can change from version to version, indexed by the field ID (-1 if no reference)
+		private final int[] referenceSlots;
+		private int numOfReferences = 0;
 
 		public ReferenceSection(final List<T> fieldList) {
-			boolean hasCollectionType = false;
-			int sequenceNo = 0;
-			boolean hasReferenceType = false;
+			int maxId = fieldList.isEmpty() ? 0 : fieldList.get(fieldList.size() - 1).getField().getId();
+			collectionSequences = new int[maxId + 1];
+			referenceSlots = new int[maxId + 1];
+			Arrays.fill(collectionSequences, -1);
+			Arrays.fill(referenceSlots, -1);
 			for (T cur : fieldList) {
 				Field field = cur.getField();
 				if (field.isDesSortKey()) {
@@ -361,21 +449,12 @@ public class RecordBufferMeta<T extends Enum<T> & RecordMetadataInterface> {
 				}
 
 				if (field.getType() instanceof CollectionFieldType) {
-					if (!hasCollectionType) {
-						hasCollectionType = true;
-						collectionReferenceSequenceMap = Maps.newHashMap();
-					}
-					collectionReferenceSequenceMap.put(field.getId(), sequenceNo++);
+					collectionSequences[field.getId()] = numOfCollections++;
 					length += 4;
 				} else if (field.isFrequentlyUsed()) {
 					// A collection-type field should not have "REFERENCE"
-					if (!hasReferenceType) {
-						hasReferenceType = true;
-						nonCollectionReferenceOffsetMap = Maps.newHashMap();
-					}
-					// 2 bytes for the field ID
-					nonCollectionReferenceOffsetMap.put(field.getId(), length + 2); 
-					length += 2 + 4; // additional 4 bytes for the reference 
+					referenceSlots[field.getId()] = numOfReferences++;
+					length += 2 + 4; // 2 bytes for the field ID and 4 bytes for the reference 
 				}
 			}
 		}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import datamine.storage.api.RecordMetadataInterface;
+import datamine.storage.idl.Field;
+
+/**
+ * The layout of the record header of a table, used by the writers that build
+ * records from scratch, e.g., {@link RecordBatchBuilder}.
+ *
+ * <p>
+ * The header without any value, i.e., all offsets in the reference section
+ * absent and all null flags cleared, is kept as a template, which is copied
+ * at the start of every record. The offsets are then patched in place once
+ * the values are written. Every field with reference has its own slot in the
+ * reference section, so that it can be read directly, see
+ * {@link RecordBufferMeta#getSlotOfReferenceField(int)}.
+ * </p>
+ *
+ * @author yqi
+ */
+final class RecordHeaderLayout {
+
+	private final byte[] template;
+	private final int posOfSortedKey;
+	private final int posOfCollections;
+	private final int posOfReferences;
+	private final int posOfFlags;
+
+	/**
+	 * The kinds of references of every field: whether it is the sort key, the
+	 * sequence of a collection-type field (or -1), and the slot of a frequently-used
+	 * field (or -1)
+	 */
+	private final boolean[] isSortKey;
+	private final int[] collectionSequences;
+	private final int[] referenceSlots;
+
+	<T extends Enum<T> & RecordMetadataInterface> RecordHeaderLayout(RecordBufferMeta<T> meta) {
+		List<T> fieldList = meta.getFieldList();
+		int numOfFields = fieldList.size();
+
+		//1. the positions in the header
+		posOfSortedKey = 6;
+		posOfCollections = posOfSortedKey + (meta.hasSortedKey() ? 4 : 0) + 1;
+		posOfReferences = posOfCollections + 4 * meta.getNumOfCollectionFieldInReferenceSection() + 1;
+		posOfFlags = posOfReferences + 6 * meta.getNumOfNonCollectionFieldInReferenceSection();
+
+		//2. the template
+		ByteBuffer header = ByteBuffer.allocate(posOfFlags + (numOfFields + 7) / 8);
+		header.putShort(0, fieldList.get(0).getVersion());
+		header.putShort(2, (short) numOfFields);
+		header.putShort(4, meta.getReferenceSectionLength());
+		header.put(posOfCollections - 1, meta.getNumOfCollectionFieldInReferenceSection());
+		for (int i = posOfCollections; i < posOfReferences - 1; i += 4) {
+			header.putInt(i, -1);
+		}
+		header.put(posOfReferences - 1, meta.getNumOfNonCollectionFieldInReferenceSection());
+
+		//3. the references of fields, in the same way as the reference section
+		isSortKey = new boolean[numOfFields];
+		collectionSequences = new int[numOfFields];
+		referenceSlots = new int[numOfFields];
+		for (int i = 0; i < numOfFields; ++i) {
+			Field field = fieldList.get(i).getField();
+			isSortKey[i] = field.isDesSortKey();
+			collectionSequences[i] = meta.getSequenceOfCollectionField(field.getId());
+			referenceSlots[i] = collectionSequences[i] < 0 ? meta.getSlotOfReferenceField(field.getId()) : -1;
+			if (referenceSlots[i] >= 0) {
+				// the field ID with an absent offset
+				header.putShort(posOfReferences + 6 * referenceSlots[i], (short) field.getId());
+				header.putInt(posOfReferences + 6 * referenceSlots[i] + 2, -1);
+			}
+		}
+		template = header.array();
+	}
+
+	/**
+	 * @return the number of bytes of the header
+	 */
+	int getLength() {
+		return template.length;
+	}
+
+	/**
+	 * @return the position of the null flags relative to the start of a record
+	 */
+	int getPosOfFlags() {
+		return posOfFlags;
+	}
+
+	/**
+	 * Copy the header without any value to the output
+	 *
+	 * @param out the output buffer
+	 * @param start the absolute position where the record starts
+	 * @return the number of bytes of the header
+	 * @throws IndexOutOfBoundsException if the output has no enough space
+	 */
+	int writeHeader(ByteBuffer out, int start) {
+		return BufferUtils.put(out, start, template);
+	}
+
+	/**
+	 * Mark the value of a field as absent
+	 *
+	 * @param out the output buffer
+	 * @param start the absolute position where the record starts
+	 * @param index the field position, i.e., the field ID minus 1
+	 */
+	void setNullFlag(ByteBuffer out, int start, int index) {
+		int pos = start + posOfFlags + index / 8;
+		out.put(pos, (byte) (out.get(pos) | (1 << (7 - (index % 8)))));
+	}
+
+	/**
+	 * Patch the reference section for a value written
+	 *
+	 * @param out the output buffer
+	 * @param start the absolute position where the record starts
+	 * @param index the field position, i.e., the field ID minus 1
+	 * @param offset the offset of the value relative to the start
+	 */
+	void putReference(ByteBuffer out, int start, int index, int offset) {
+		if (isSortKey[index]) {
+			out.putInt(start + posOfSortedKey, offset);
+		}
+		if (collectionSequences[index] >= 0) {
+			out.putInt(start + posOfCollections + 4 * collectionSequences[index], offset);
+		} else if (referenceSlots[index] >= 0) {
+			out.putInt(start + posOfReferences + 6 * referenceSlots[index] + 2, offset);
+		}
+	}
+}
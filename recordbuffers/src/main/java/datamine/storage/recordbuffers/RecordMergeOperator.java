@@ -0,0 +1,404 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+import datamine.operator.BinaryOperatorInterface;
+import datamine.storage.api.RecordMetadataInterface;
+import datamine.storage.idl.Field;
+import datamine.storage.idl.type.CollectionFieldType;
+import datamine.storage.idl.type.FieldType;
+import datamine.storage.idl.type.GroupFieldType;
+import datamine.storage.idl.type.PrimitiveFieldType;
+import datamine.storage.idl.type.PrimitiveType;
+import datamine.storage.recordbuffers.idl.value.CollectionValueOperator;
+
+/**
+ * An operator merging two records of the same table at the byte level, i.e.,
+ * the existing record on the left and the update on the right, by the policy
+ * of every field, see {@link MergePolicy}. All fields are overwritten by the
+ * update by default.
+ *
+ * <p>
+ * Neither record is decoded. The value taken from either side is copied as
+ * bytes, and so are the consecutive values from the same side at once. Only
+ * the values combined from both sides are written anew, e.g., a sum, or a
+ * list with the elements of both sides copied one after another.
+ * </p>
+ *
+ * <p>
+ * The instance can be shared by threads once the policies and the allocator
+ * are set.
+ * </p>
+ *
+ * @author yqi
+ */
+public class RecordMergeOperator<T extends Enum<T> & RecordMetadataInterface> implements
+		BinaryOperatorInterface<RecordBuffer, RecordBuffer, RecordBuffer> {
+
+	/**
+	 * Where the value of a field in the result comes from
+	 */
+	private static final byte SOURCE_NONE = 0;
+	private static final byte SOURCE_LEFT = 1;
+	private static final byte SOURCE_RIGHT = 2;
+	private static final byte SOURCE_BOTH = 3;
+
+	private final Class<T> clazz;
+	private final RecordBufferMeta<T> meta;
+	private final Field[] fields;
+	private final MergePolicy[] policies;
+
+	/**
+	 * The sort key of the nested table for a list of nested records, which
+	 * identifies the elements in {@link MergePolicy#LIST_UNION}, or null
+	 */
+	private final Field[] elementKeys;
+
+	/**
+	 * The allocator of the records merged, or null for the default one
+	 */
+	private BufferAllocator allocator = null;
+
+	public RecordMergeOperator(Class<T> clazz) {
+		this.clazz = clazz;
+		this.meta = RecordBufferMeta.getRecordOperator(clazz);
+		List<T> fieldList = meta.getFieldList();
+		int numOfFields = fieldList.size();
+		this.fields = new Field[numOfFields];
+		this.policies = new MergePolicy[numOfFields];
+		this.elementKeys = new Field[numOfFields];
+		Arrays.fill(policies, MergePolicy.OVERWRITE);
+
+		for (int i = 0; i < numOfFields; ++i) {
+			fields[i] = fieldList.get(i).getField();
+			FieldType type = fields[i].getType();
+			if (type instanceof CollectionFieldType &&
+					((CollectionFieldType) type).getElementType() instanceof GroupFieldType) {
+				Class<?> tableClass = ((GroupFieldType) ((CollectionFieldType) type).getElementType()).getTableClass();
+				for (Object col : tableClass.getEnumConstants()) {
+					Field nestedField = ((RecordMetadataInterface) col).getField();
+					if (nestedField.getId() > 0 && nestedField.isDesSortKey()) {
+						elementKeys[i] = nestedField;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Set the policy to merge the values of a field
+	 *
+	 * @param field the field of interest
+	 * @param policy the policy
+	 * @throws IllegalArgumentException if the policy does not apply to the type of the field
+	 */
+	public void setPolicy(Field field, MergePolicy policy) {
+		int id = field.getId() - 1; // note that id starts at 1
+		Preconditions.checkArgument(id >= 0 && id < fields.length,
+				"%s is not a field of %s", field.getName(), meta.getTableName());
+		FieldType type = field.getType();
+		if (policy.isArithmetic()) {
+			Preconditions.checkArgument(type instanceof PrimitiveFieldType &&
+					meta.getAccessPlan().getKind(id) == FieldAccessPlan.KIND_FIXED &&
+					((PrimitiveFieldType) type).getPrimitiveType() != PrimitiveType.BOOL,
+					"%s is not a numeric field for %s", field.getName(), policy);
+		} else if (policy.isForList()) {
+			Preconditions.checkArgument(type instanceof CollectionFieldType,
+					"%s is not a list for %s", field.getName(), policy);
+		}
+		policies[id] = policy;
+	}
+
+	public void setPolicy(T col, MergePolicy policy) {
+		setPolicy(col.getField(), policy);
+	}
+
+	public MergePolicy getPolicy(Field field) {
+		return policies[field.getId() - 1];
+	}
+
+	public MergePolicy getPolicy(T col) {
+		return getPolicy(col.getField());
+	}
+
+	/**
+	 * @param allocator the allocator of the records merged, or null for the
+	 * default one of {@link RecordBuffer}
+	 */
+	public void setAllocator(BufferAllocator allocator) {
+		this.allocator = allocator;
+	}
+
+	/**
+	 * Merge the update into the existing record
+	 *
+	 * @param left the existing record
+	 * @param right the update
+	 * @return a new record merged, or either input as it is if the other one
+	 * is null or empty
+	 */
+	@Override
+	public RecordBuffer apply(RecordBuffer left, RecordBuffer right) {
+		if (right == null || right.getRecordBufferSize() == 0) {
+			return left;
+		} else if (left == null || left.getRecordBufferSize() == 0) {
+			return right;
+		}
+
+		ReadOnlyRecord<T> leftRecord = new ReadOnlyRecord<T>(clazz, left);
+		ReadOnlyRecord<T> rightRecord = new ReadOnlyRecord<T>(clazz, right);
+		ByteBuffer leftBuf = left.getByteBuffer();
+		ByteBuffer rightBuf = right.getByteBuffer();
+		FieldAccessPlan plan = meta.getAccessPlan();
+		int numOfFields = fields.length;
+
+		//1. find out where the value of every field comes from
+		byte[] sources = new byte[numOfFields];
+		int[] leftOffsets = new int[numOfFields];
+		int[] rightOffsets = new int[numOfFields];
+		int[] leftLengths = new int[numOfFields];
+		int[] rightLengths = new int[numOfFields];
+		long numOfBytes = meta.getHeaderLayout().getLength();
+		for (int id = 0; id < numOfFields; ++id) {
+			Field field = fields[id];
+			int leftOffset = leftRecord.getOffset(field);
+			int rightOffset = rightRecord.getOffset(field);
+			boolean hasLeft = leftOffset > 0;
+			boolean hasRight = rightOffset > 0;
+			if (hasLeft) {
+				leftOffsets[id] = leftOffset;
+				leftLengths[id] = plan.skip(leftBuf, id, leftOffset) - leftOffset;
+			}
+			if (hasRight) {
+				rightOffsets[id] = rightOffset;
+				rightLengths[id] = plan.skip(rightBuf, id, rightOffset) - rightOffset;
+			}
+
+			MergePolicy policy = policies[id];
+			if (!hasLeft && !hasRight) {
+				sources[id] = SOURCE_NONE;
+			} else if (policy == MergePolicy.OVERWRITE) {
+				sources[id] = hasRight ? SOURCE_RIGHT : SOURCE_LEFT;
+			} else if (policy == MergePolicy.KEEP) {
+				sources[id] = hasLeft ? SOURCE_LEFT : SOURCE_RIGHT;
+			} else if ((hasLeft && hasRight) ||
+					(policy.isArithmetic() && field.getDefaultValue() != null)) {
+				sources[id] = SOURCE_BOTH;
+			} else {
+				sources[id] = hasRight ? SOURCE_RIGHT : SOURCE_LEFT;
+			}
+
+			switch (sources[id]) {
+			case SOURCE_LEFT:
+				numOfBytes += leftLengths[id];
+				break;
+			case SOURCE_RIGHT:
+				numOfBytes += rightLengths[id];
+				break;
+			case SOURCE_BOTH:
+				numOfBytes += policy.isArithmetic() ? plan.getWidth(id) : leftLengths[id] + rightLengths[id];
+				break;
+			default:
+				break;
+			}
+		}
+		Preconditions.checkArgument(numOfBytes <= Integer.MAX_VALUE,
+				"Too many bytes for a record: %s", numOfBytes);
+
+		//2. write the result, which takes no more bytes than the sum of both sides
+		BufferAllocator allocator = this.allocator == null ?
+				RecordBuffer.getDefaultAllocator() : this.allocator;
+		ByteBuffer out = allocator.allocate((int) numOfBytes);
+		try {
+			int length = writeMerged(out, sources, leftBuf, leftOffsets, leftLengths,
+					rightBuf, rightOffsets, rightLengths);
+			return WritableRecord.createRecordBuffer(allocator, out, length);
+		} catch (RuntimeException e) {
+			allocator.release(out);
+			throw e;
+		}
+	}
+
+	/**
+	 * Write the merged record from the start of the output. The values copied
+	 * from the same side back to back are copied at once, when the values
+	 * combined from both sides are written in between.
+	 *
+	 * @return the number of bytes of the record
+	 */
+	private int writeMerged(ByteBuffer out, byte[] sources,
+			ByteBuffer leftBuf, int[] leftOffsets, int[] leftLengths,
+			ByteBuffer rightBuf, int[] rightOffsets, int[] rightLengths) {
+		RecordHeaderLayout headerLayout = meta.getHeaderLayout();
+		int pos = headerLayout.writeHeader(out, 0);
+
+		// the range of bytes to copy from one side
+		ByteBuffer runSource = null;
+		int runStart = 0;
+		int runEnd = 0;
+		int runTarget = 0;
+		for (int id = 0; id < sources.length; ++id) {
+			int valueLength;
+			if (sources[id] == SOURCE_NONE) {
+				headerLayout.setNullFlag(out, 0, id);
+				continue;
+			} else if (sources[id] == SOURCE_BOTH) {
+				valueLength = writeCombined(id, out, pos, leftBuf, leftOffsets[id], leftLengths[id],
+						rightBuf, rightOffsets[id], rightLengths[id]);
+				if (valueLength < 0) {
+					headerLayout.setNullFlag(out, 0, id);
+					continue;
+				}
+			} else {
+				ByteBuffer source = sources[id] == SOURCE_LEFT ? leftBuf : rightBuf;
+				int offset = sources[id] == SOURCE_LEFT ? leftOffsets[id] : rightOffsets[id];
+				valueLength = sources[id] == SOURCE_LEFT ? leftLengths[id] : rightLengths[id];
+				if (source == runSource && offset == runEnd) {
+					runEnd += valueLength;
+				} else {
+					if (runSource != null) {
+						BufferUtils.copy(runSource, runStart, out, runTarget, runEnd - runStart);
+					}
+					runSource = source;
+					runStart = offset;
+					runEnd = offset + valueLength;
+					runTarget = pos;
+				}
+			}
+
+			headerLayout.putReference(out, 0, id, pos);
+			pos += valueLength;
+		}
+		if (runSource != null) {
+			BufferUtils.copy(runSource, runStart, out, runTarget, runEnd - runStart);
+		}
+		return pos;
+	}
+
+	/**
+	 * Write the value combined from both sides by the policy of the field
+	 *
+	 * @return the number of bytes written, or -1 if the value should be absent
+	 */
+	private int writeCombined(int id, ByteBuffer out, int pos,
+			ByteBuffer leftBuf, int leftOffset, int leftLength,
+			ByteBuffer rightBuf, int rightOffset, int rightLength) {
+		Field field = fields[id];
+		MergePolicy policy = policies[id];
+
+		if (policy.isArithmetic()) {
+			// an absent value is taken as the default value
+			PrimitiveType type = ((PrimitiveFieldType) field.getType()).getPrimitiveType();
+			Object defaultValue = field.getDefaultValue();
+			long defaultBits = defaultValue == null ? 0 : WritableRecord.toBits(type, defaultValue);
+			long leftBits = leftOffset > 0 ? WritableRecord.getFixedValue(leftBuf, leftOffset, type) : defaultBits;
+			long rightBits = rightOffset > 0 ? WritableRecord.getFixedValue(rightBuf, rightOffset, type) : defaultBits;
+			long bits = combine(policy, type, leftBits, rightBits);
+			return WritableRecord.isDefaultValue(field, type, bits) ? -1 :
+				WritableRecord.putFixedValue(out, pos, type, bits);
+		}
+
+		// the elements of both lists are copied after the length and size of the result
+		CollectionValueOperator valOpr = (CollectionValueOperator) meta.getAccessPlan().getOperator(id);
+		int index = pos + 4;
+		int elementsEnd = index + 4;
+		int num;
+		if (policy == MergePolicy.LIST_APPEND) {
+			num = 0;
+			for (int k = 0; k < 2; ++k) {
+				ByteBuffer buf = k == 0 ? leftBuf : rightBuf;
+				int listIndex = (k == 0 ? leftOffset : rightOffset) + 4;
+				int listLength = (k == 0 ? leftLength : rightLength) - 4;
+				int length = valOpr.getElementsEnd(buf, listIndex, listLength) - listIndex - 4;
+				BufferUtils.copy(buf, listIndex + 4, out, elementsEnd, length);
+				elementsEnd += length;
+				num += valOpr.getListSize(buf, listIndex);
+			}
+		} else {
+			Map<Object, ByteBuffer> elements = Maps.newLinkedHashMap();
+			collectElements(valOpr, elementKeys[id], leftBuf, leftOffset + 4, elements);
+			collectElements(valOpr, elementKeys[id], rightBuf, rightOffset + 4, elements);
+			for (ByteBuffer element : elements.values()) {
+				int length = element.remaining();
+				BufferUtils.copy(element, 0, out, elementsEnd, length);
+				elementsEnd += length;
+			}
+			num = elements.size();
+		}
+
+		int length = valOpr.completeList(out, index, num, elementsEnd);
+		out.putInt(pos, length);
+		return 4 + length;
+	}
+
+	/**
+	 * Collect the elements of a list by their identities, where an element
+	 * replaces the one collected with the same identity in place
+	 */
+	private static void collectElements(CollectionValueOperator valOpr, Field key,
+			ByteBuffer buf, int index, Map<Object, ByteBuffer> elements) {
+		int offset = index + 4;
+		for (int i = 0, size = valOpr.getListSize(buf, index); i < size; ++i) {
+			int next = valOpr.getNextElementOffset(buf, offset);
+			ByteBuffer element = BufferUtils.slice(buf, offset, next - offset);
+			elements.put(key == null ? element : ((Record<?>) valOpr.getElement(buf, offset)).getValue(key),
+					element);
+			offset = next;
+		}
+	}
+
+	/**
+	 * Combine two values of the fixed length in bits by the arithmetic policy
+	 */
+	private static long combine(MergePolicy policy, PrimitiveType type, long left, long right) {
+		switch (type) {
+		case FLOAT: {
+			float x = Float.intBitsToFloat((int) left);
+			float y = Float.intBitsToFloat((int) right);
+			return Float.floatToIntBits(policy == MergePolicy.SUM ? x + y :
+				policy == MergePolicy.MIN ? Math.min(x, y) : Math.max(x, y));
+		}
+		case DOUBLE: {
+			double x = Double.longBitsToDouble(left);
+			double y = Double.longBitsToDouble(right);
+			return Double.doubleToLongBits(policy == MergePolicy.SUM ? x + y :
+				policy == MergePolicy.MIN ? Math.min(x, y) : Math.max(x, y));
+		}
+		default:
+			long result = policy == MergePolicy.SUM ? left + right :
+				policy == MergePolicy.MIN ? Math.min(left, right) : Math.max(left, right);
+			// wrap around as the arithmetic of the type
+			switch (type) {
+			case BYTE:
+				return (byte) result;
+			case INT16:
+				return (short) result;
+			case INT32:
+				return (int) result;
+			default:
+				return result;
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.util.List;
+
+import datamine.storage.api.RecordMetadataInterface;
+import datamine.storage.idl.Field;
+
+/**
+ * An immutable read-only record, which can be shared by threads and read
+ * concurrently without locks, e.g., a decoded record cached for lookups.
+ *
+ * <p>
+ * Unlike {@link ReadOnlyRecord}, whose offsets are resolved lazily on reads,
+ * the offsets of all fields are resolved once when the snapshot is created,
+ * and no state changes afterwards. Every value read is a view or a copy for
+ * the caller only, e.g., a nested record or a list cursor.
+ * </p>
+ *
+ * <p>
+ * The snapshot reads the bytes of the record buffer without copying, so the
+ * bytes must not change as long as the snapshot is in use, e.g., a record
+ * buffer from a reused window or an arena should be copied first through
+ * {@link RecordBuffer#RecordBuffer(RecordBuffer)}. As any immutable object
+ * cached, it should be shared through a safe publication, e.g., a concurrent
+ * map or a volatile field.
+ * </p>
+ *
+ * @author yqi
+ */
+public final class RecordSnapshot<T extends Enum<T> & RecordMetadataInterface> extends ReadOnlyRecord<T> {
+
+	/**
+	 * The absolute offsets of all fields of the table, -1 for the absent ones
+	 */
+	private final int[] offsets;
+
+	public RecordSnapshot(Class<T> clazz, RecordBuffer buf) {
+		super(clazz, buf);
+
+		List<T> fieldList = meta.getFieldList();
+		int[] resolved = new int[fieldList.size()];
+		for (int i = 0; i < resolved.length; ++i) {
+			resolved[i] = super.getOffset(fieldList.get(i).getField());
+		}
+		this.offsets = resolved;
+	}
+
+	@Override
+	int getOffset(Field field) {
+		int id = field.getId() - 1; // note that id starts at 1.
+		return id < offsets.length ? offsets[id] : -1;
+	}
+
+	/**
+	 * The snapshot cannot be re-pointed at another record.
+	 */
+	@Override
+	public void reset(RecordBuffer buf) {
+		throw new IllegalAccessError("No change is allowed for the record snapshot!");
+	}
+
+	/**
+	 * The snapshot cannot be re-pointed at another record.
+	 */
+	@Override
+	public void reset(byte[] recordBytes, int offset, int length) {
+		throw new IllegalAccessError("No change is allowed for the record snapshot!");
+	}
+}
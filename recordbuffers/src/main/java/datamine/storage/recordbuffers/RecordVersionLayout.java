@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The layout of the records of one version of a table, i.e., the positions
+ * in the header, which are the same for all records of the version.
+ *
+ * <p>
+ * A table only gets new fields from version to version (see
+ * {@link datamine.storage.idl.validate.SchemaEvolutionValidation}), so the
+ * fields of an older version are the leading ones of the current table, and
+ * the others are absent in its records. The sort key, if any, stays the same.
+ * </p>
+ *
+ * <p>
+ * The layout of the current version is known from the table, and the one
+ * of an older version is read from the header of its first record, see
+ * {@link RecordBufferMeta#getVersionLayout(ByteBuffer)}.
+ * </p>
+ *
+ * @author yqi
+ */
+final class RecordVersionLayout {
+
+	private final short version;
+	private final int numOfAttributes;
+	private final int posOfFlags;
+	private final int posOfValues;
+	private final int fixedPrefixLength;
+
+	/**
+	 * The references in the reference section
+	 */
+	private final boolean hasSortKey;
+	private final int posOfCollections;
+	private final int numOfCollections;
+	private final int posOfReferences;
+	private final int numOfReferences;
+
+	RecordVersionLayout(short version, int numOfAttributes, int referenceSectionLength,
+			boolean hasSortKey, int numOfCollections, int numOfReferences, int fixedPrefixLength) {
+		this.version = version;
+		this.numOfAttributes = numOfAttributes;
+		this.posOfFlags = 6 + referenceSectionLength;
+		this.posOfValues = posOfFlags + (numOfAttributes + 7) / 8;
+		this.fixedPrefixLength = Math.min(fixedPrefixLength, numOfAttributes);
+		this.hasSortKey = hasSortKey;
+		this.posOfCollections = 6 + (hasSortKey ? 4 : 0) + 1;
+		this.numOfCollections = numOfCollections;
+		this.posOfReferences = posOfCollections + 4 * numOfCollections + 1;
+		this.numOfReferences = numOfReferences;
+	}
+
+	/**
+	 * Read the layout from the header of a record
+	 *
+	 * @param buffer the byte buffer starting with the record
+	 * @param hasSortKey true if the table has the sort key
+	 * @param fixedPrefixLength the number of leading fields with the fixed length
+	 * in the current table, see {@link FieldAccessPlan#getFixedPrefixLength()}
+	 * @return the layout of all records of the same version
+	 */
+	static RecordVersionLayout read(ByteBuffer buffer, boolean hasSortKey, int fixedPrefixLength) {
+		int posOfCollections = 6 + (hasSortKey ? 4 : 0) + 1;
+		int numOfCollections = buffer.get(posOfCollections - 1);
+		return new RecordVersionLayout(buffer.getShort(0), buffer.getShort(2), buffer.getShort(4),
+				hasSortKey, numOfCollections, buffer.get(posOfCollections + 4 * numOfCollections),
+				fixedPrefixLength);
+	}
+
+	/**
+	 * @return the version of the records
+	 */
+	short getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the number of attributes stored in the records, and the fields
+	 * behind are absent in the version
+	 */
+	int getNumOfAttributes() {
+		return numOfAttributes;
+	}
+
+	/**
+	 * @return the position of the null-flag bitmap
+	 */
+	int getPosOfFlags() {
+		return posOfFlags;
+	}
+
+	/**
+	 * @return the position of the first value
+	 */
+	int getPosOfValues() {
+		return posOfValues;
+	}
+
+	/**
+	 * @return the number of leading fields with the fixed length stored in the
+	 * records
+	 */
+	int getFixedPrefixLength() {
+		return fixedPrefixLength;
+	}
+
+	/**
+	 * @param buffer the byte buffer starting with the record
+	 * @return the offset of the sort-key field, or -1 if no sort key
+	 */
+	int getSortKeyOffset(ByteBuffer buffer) {
+		return hasSortKey ? buffer.getInt(6) : -1;
+	}
+
+	/**
+	 * @param buffer the byte buffer starting with the record
+	 * @param sequenceNo the sequence id (starting at 0) of the collection-type field
+	 * @return the offset of the field, or -1 if absent
+	 */
+	int getCollectionOffset(ByteBuffer buffer, int sequenceNo) {
+		if (sequenceNo >= 0 && sequenceNo < numOfCollections) {
+			return buffer.getInt(posOfCollections + 4 * sequenceNo);
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the offset of the field with 'hasRef' annotation.
+	 *
+	 * <p>
+	 * The reference is read from the slot of the field directly, while the
+	 * reference section is scanned for the field ID if the slot belongs to
+	 * another field, e.g., the references compacted by an earlier writer.
+	 * </p>
+	 *
+	 * @param buffer the byte buffer starting with the record
+	 * @param id the ID of the field
+	 * @param slot the slot of the field in the current table
+	 * @return the offset of the field, or -1 if absent
+	 */
+	int getReferenceOffset(ByteBuffer buffer, int id, int slot) {
+		if (id > numOfAttributes) {
+			return -1; // not in the version
+		}
+		if (slot >= 0 && slot < numOfReferences) {
+			int pos = posOfReferences + 6 * slot;
+			if (buffer.getShort(pos) == id) {
+				return buffer.getInt(pos + 2);
+			}
+		}
+		for (int i = 0, pos = posOfReferences; i < numOfReferences; ++i, pos += 6) {
+			if (buffer.getShort(pos) == id) {
+				return buffer.getInt(pos + 2);
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,324 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.nio.ByteBuffer;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Helpers to encode, decode and compare the strings stored in UTF-8.
+ *
+ * <p>
+ * Strings are always stored in UTF-8 regardless of the platform charset. The
+ * comparisons work on the stored bytes against a query string directly, so
+ * no string is created for the value in the buffer. The order is the one of
+ * the UTF-8 bytes, i.e., the order of unicode code points, which is the same
+ * as {@link String#compareTo(String)} except for the supplementary characters.
+ * As in {@link String#getBytes(java.nio.charset.Charset)}, an unpaired
+ * surrogate in the query is taken as '?'.
+ * </p>
+ *
+ * @author yqi
+ */
+public final class Utf8Utils {
+
+	private static final char REPLACEMENT_CHAR = '\uFFFD';
+
+	private Utf8Utils() {}
+
+	/**
+	 * @param value the string
+	 * @return the UTF-8 bytes of the string
+	 */
+	public static byte[] encode(String value) {
+		return value.getBytes(Charsets.UTF_8);
+	}
+
+	/**
+	 * Encode the string straight into the buffer, so that no intermediate array
+	 * is created. The bytes are the same as the ones of {@link #encode(String)}.
+	 *
+	 * @param value the string
+	 * @param out the output buffer
+	 * @param index the absolute position of the first byte
+	 * @return the number of bytes written
+	 * @throws IndexOutOfBoundsException if the buffer has no enough space
+	 */
+	public static int encode(String value, ByteBuffer out, int index) {
+		int n = value.length();
+		if (out.hasArray() && index >= 0 && index + 3L * n <= out.limit()) {
+			// every UTF-16 char takes up to three bytes, so no check is needed
+			return encode(value, out.array(), out.arrayOffset() + index);
+		}
+		
+		int pos = index;
+		for (int i = 0; i < n; ++i) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				out.put(pos++, (byte) c);
+			} else if (c < 0x800) {
+				out.put(pos++, (byte) (0xC0 | (c >> 6)));
+				out.put(pos++, (byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < n &&
+					Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				out.put(pos++, (byte) (0xF0 | (codePoint >> 18)));
+				out.put(pos++, (byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				out.put(pos++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				out.put(pos++, (byte) (0x80 | (codePoint & 0x3F)));
+			} else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				out.put(pos++, (byte) '?');
+			} else {
+				out.put(pos++, (byte) (0xE0 | (c >> 12)));
+				out.put(pos++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+				out.put(pos++, (byte) (0x80 | (c & 0x3F)));
+			}
+		}
+		return pos - index;
+	}
+
+	private static int encode(String value, byte[] out, int offset) {
+		int pos = offset;
+		for (int i = 0, n = value.length(); i < n; ++i) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				out[pos++] = (byte) c;
+			} else if (c < 0x800) {
+				out[pos++] = (byte) (0xC0 | (c >> 6));
+				out[pos++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < n &&
+					Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				out[pos++] = (byte) (0xF0 | (codePoint >> 18));
+				out[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				out[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				out[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				out[pos++] = (byte) '?';
+			} else {
+				out[pos++] = (byte) (0xE0 | (c >> 12));
+				out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				out[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		return pos - offset;
+	}
+
+	/**
+	 * Count the number of UTF-8 bytes of the string without encoding it
+	 *
+	 * @param value the string
+	 * @return the number of UTF-8 bytes
+	 */
+	public static int getEncodedLength(String value) {
+		int length = 0;
+		for (int i = 0, n = value.length(); i < n; ++i) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				length += 1;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < n &&
+					Character.isLowSurrogate(value.charAt(i + 1))) {
+				length += 4;
+				++i;
+			} else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				length += 1; // '?'
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Decode the UTF-8 bytes of the buffer
+	 *
+	 * @param buf the buffer
+	 * @param index the absolute position of the first byte
+	 * @param length the number of bytes
+	 * @return the string
+	 */
+	public static String decode(ByteBuffer buf, int index, int length) {
+		if (buf.hasArray()) {
+			return new String(buf.array(), buf.arrayOffset() + index, length, Charsets.UTF_8);
+		} else {
+			ByteBuffer dup = buf.duplicate();
+			dup.clear();
+			dup.position(index);
+			dup.limit(index + length);
+			return Charsets.UTF_8.decode(dup).toString();
+		}
+	}
+
+	/**
+	 * Compare the UTF-8 bytes of the buffer with the query
+	 *
+	 * @param buf the buffer
+	 * @param index the absolute position of the first byte
+	 * @param length the number of bytes
+	 * @param query the string to compare with
+	 * @return a negative integer, zero, or a positive integer as the stored
+	 * string is less than, equal to, or greater than the query
+	 */
+	public static int compare(ByteBuffer buf, int index, int length, String query) {
+		return compare(buf, index, length, query, false);
+	}
+
+	/**
+	 * @param buf the buffer
+	 * @param index the absolute position of the first byte
+	 * @param length the number of bytes
+	 * @param query the string to compare with
+	 * @return true if the UTF-8 bytes of the buffer are the ones of the query
+	 */
+	public static boolean equals(ByteBuffer buf, int index, int length, String query) {
+		// every UTF-16 char takes one to three bytes
+		int n = query.length();
+		if (length < n || length > 3 * n) {
+			return false;
+		}
+		return compare(buf, index, length, query, false) == 0;
+	}
+
+	/**
+	 * @param buf the buffer
+	 * @param index the absolute position of the first byte
+	 * @param length the number of bytes
+	 * @param prefix the prefix
+	 * @return true if the UTF-8 bytes of the buffer start with the ones of the prefix
+	 */
+	public static boolean startsWith(ByteBuffer buf, int index, int length, String prefix) {
+		if (length < prefix.length()) {
+			return false;
+		}
+		return compare(buf, index, length, prefix, true) == 0;
+	}
+
+	/**
+	 * Compute the hash code of the string stored in the buffer without decoding
+	 * it into a string. For the well-formed UTF-8 bytes, it is the same as
+	 * {@link String#hashCode()} of the decoded string, so that it can be used
+	 * to probe a hash set of strings.
+	 *
+	 * @param buf the buffer
+	 * @param index the absolute position of the first byte
+	 * @param length the number of bytes
+	 * @return the hash code
+	 */
+	public static int hashCode(ByteBuffer buf, int index, int length) {
+		int hash = 0;
+		int pos = index;
+		int end = index + length;
+		while (pos < end) {
+			int b = buf.get(pos) & 0xFF;
+			if (b < 0x80) {
+				hash = 31 * hash + b;
+				++pos;
+				continue;
+			}
+
+			int numOfBytes = 0;
+			int codePoint = 0;
+			int min = 0;
+			if (b >= 0xC2 && b < 0xE0) {
+				numOfBytes = 2;
+				codePoint = b & 0x1F;
+				min = 0x80;
+			} else if (b >= 0xE0 && b < 0xF0) {
+				numOfBytes = 3;
+				codePoint = b & 0x0F;
+				min = 0x800;
+			} else if (b >= 0xF0 && b < 0xF5) {
+				numOfBytes = 4;
+				codePoint = b & 0x07;
+				min = 0x10000;
+			}
+
+			boolean isValid = numOfBytes > 0 && pos + numOfBytes <= end;
+			for (int i = 1; isValid && i < numOfBytes; ++i) {
+				int next = buf.get(pos + i) & 0xFF;
+				isValid = (next & 0xC0) == 0x80;
+				codePoint = (codePoint << 6) | (next & 0x3F);
+			}
+			isValid = isValid && codePoint >= min && codePoint <= Character.MAX_CODE_POINT &&
+					!(codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE);
+
+			if (!isValid) {
+				hash = 31 * hash + REPLACEMENT_CHAR;
+				++pos;
+			} else if (numOfBytes == 4) {
+				int supplementary = codePoint - Character.MIN_SUPPLEMENTARY_CODE_POINT;
+				hash = 31 * hash + (Character.MIN_HIGH_SURROGATE + (supplementary >>> 10));
+				hash = 31 * hash + (Character.MIN_LOW_SURROGATE + (supplementary & 0x3FF));
+				pos += numOfBytes;
+			} else {
+				hash = 31 * hash + codePoint;
+				pos += numOfBytes;
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Compare a string with the query in the same order as the stored bytes
+	 *
+	 * @param value the string, which is less than any other if null
+	 * @param query the string to compare with
+	 * @return a negative integer, zero, or a positive integer as the string
+	 * is less than, equal to, or greater than the query
+	 */
+	public static int compare(String value, String query) {
+		if (value == null) {
+			return -1;
+		}
+		byte[] bytes = encode(value);
+		return compare(ByteBuffer.wrap(bytes), 0, bytes.length, query);
+	}
+
+	/**
+	 * Walk through the query by code points, and compare the UTF-8 bytes of
+	 * each with the ones in the buffer.
+	 */
+	private static int compare(ByteBuffer buf, int index, int length, String query, boolean isPrefix) {
+		int pos = index;
+		int end = index + length;
+		for (int i = 0, n = query.length(); i < n; ) {
+			int codePoint = query.codePointAt(i);
+			i += Character.charCount(codePoint);
+			if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+				codePoint = '?';
+			}
+
+			int numOfBytes = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+			for (int k = 0; k < numOfBytes; ++k) {
+				if (pos == end) {
+					return -1;
+				}
+				int shift = 6 * (numOfBytes - 1 - k);
+				int expected = numOfBytes == 1 ? codePoint :
+					k == 0 ? ((0xFF00 >> numOfBytes) & 0xFF) | (codePoint >> shift) :
+						0x80 | ((codePoint >> shift) & 0x3F);
+				int diff = (buf.get(pos++) & 0xFF) - expected;
+				if (diff != 0) {
+					return diff;
+				}
+			}
+		}
+		return pos == end || isPrefix ? 0 : 1;
+	}
+}
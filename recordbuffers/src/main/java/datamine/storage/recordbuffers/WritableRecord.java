@@ -15,17 +15,28 @@
  */
 package datamine.storage.recordbuffers;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 
+import datamine.storage.api.BoolList;
+import datamine.storage.api.ByteList;
+import datamine.storage.api.DoubleList;
+import datamine.storage.api.FloatList;
+import datamine.storage.api.IntList;
+import datamine.storage.api.LongList;
 import datamine.storage.api.RecordMetadataInterface;
+import datamine.storage.api.ShortList;
 import datamine.storage.idl.Field;
 import datamine.storage.idl.FieldValueOperatorInterface;
 import datamine.storage.idl.type.CollectionFieldType;
@@ -33,7 +44,9 @@ import datamine.storage.idl.type.FieldType;
 import datamine.storage.idl.type.GroupFieldType;
 import datamine.storage.idl.type.PrimitiveFieldType;
 import datamine.storage.idl.type.PrimitiveType;
-import datamine.storage.recordbuffers.idl.value.FieldValueOperatorFactory;
+import datamine.storage.recordbuffers.idl.value.CollectionValueOperator;
+import datamine.storage.recordbuffers.idl.value.ValueWriterInterface;
+import datamine.storage.recordbuffers.idl.value.primitive.StringValueOperator;
 
 /**
  * @author yqi
@@ -64,25 +77,50 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 	private Object[] valueArray = null;
 	
 	/**
-	 * The number of bytes used by the the instance of {@link RecordBuffer}.
+	 * The marker in the value array for a value of the fixed length, whose 
+	 * bits are kept in {@link #primitiveArray} without boxing. 
 	 */
-	private int numOfBytes = 0;
+	private static final Object PRIMITIVE_VALUE = new Object();
+	
+	/**
+	 * The bits of the values of the fixed length, e.g., {@link Double#doubleToLongBits(double)}
+	 * for a double, in the slots of the same positions as in the value array
+	 */
+	private long[] primitiveArray = null;
 	
 	/**
 	 * Handling reading if no writing is necessary
 	 */
 	private ReadOnlyRecord<T> readOnlyRecord = null;
 	
+	/**
+	 * The allocator of the record buffers built, or null for the default one
+	 */
+	private BufferAllocator allocator = null;
+	
 	public WritableRecord(Class<T> clazz) {
 		super(clazz);
 	}
 	
 	public WritableRecord(Class<T> clazz, RecordBuffer buf) {
 		super(clazz, buf);
-		this.numOfBytes = buf.getRecordBufferSize();
 		readOnlyRecord = new ReadOnlyRecord<T>(clazz, buf);
 	}
 
+	/**
+	 * Set the allocator of the record buffers built by the instance, e.g., an 
+	 * {@link ArenaBufferAllocator} for a batch of records. 
+	 * 
+	 * @param allocator the allocator, or null for the default one of {@link RecordBuffer}
+	 */
+	public void setAllocator(BufferAllocator allocator) {
+		this.allocator = allocator;
+	}
+	
+	private BufferAllocator getAllocator() {
+		return allocator == null ? RecordBuffer.getDefaultAllocator() : allocator;
+	}
+	
 	/**
 	 * Update the value of the input field
 	 * 
@@ -99,6 +137,15 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 	/**
 	 * Update the value of the input field
 	 * 
+	 * <p>
+	 * A present value with the fixed length is patched in the record buffer 
+	 * directly, see {@link #updateFixedValueInPlace(Field, PrimitiveType, long)}, and the 
+	 * one with a variable length is spliced into a new record buffer, see 
+	 * {@link #updateVariableValueBySplicing(Field, Object)}. Otherwise, the 
+	 * record is decoded into an array of objects, and serialized again when 
+	 * the record buffer is requested.
+	 * </p>
+	 * 
 	 * TODO (Yan) support the deletion by making col null.
 	 * 
 	 * @param Field the field of interest
@@ -107,27 +154,26 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 	@Override
 	public void setValue(Field field, Object val) {
 		if (val != null) {
+			int id = field.getId() - 1; // note that id starts at 1
+			FieldAccessPlan plan = meta.getAccessPlan();
+			FieldValueOperatorInterface valOpr = plan.getOperator(id);
+			
+			//0. unbox the value of the fixed length, or try to patch the record buffer
+			if (plan.getKind(id) == FieldAccessPlan.KIND_FIXED && valOpr.isValid(val)) {
+				PrimitiveType type = ((PrimitiveFieldType) field.getType()).getPrimitiveType();
+				setFixedValue(field, type, toBits(type, val));
+				return;
+			}
+			if (valueArray == null && updateVariableValueBySplicing(field, val)) {
+				return;
+			}
+			
 			//1. prepare the intermediate structure 
 			if (valueArray == null) {
 				initValueArray();	
 			}
-			//2. find out the number of bytes used for new value
-			int id = field.getId() - 1; // note that id starts at 1
-			int size = 0;
-			FieldType type = field.getType();
-			FieldValueOperatorInterface valOpr = FieldValueOperatorFactory.getOperator(type);
-
-			if (valueArray[id] != null) {
-				size = valOpr.getNumOfBytes(valueArray[id]);				
-			} else {
-				// add the overhead of the value
-				this.numOfBytes += valOpr.getMetadataLength();
-			}
-			//3. update the value in the intermediate structure
+			//2. update the value in the intermediate structure
 			valueArray[id] = val;
-			
-			//4. determine the difference of sizes for serialization
-			this.numOfBytes += valOpr.getNumOfBytes(val) - size;
 			hasNewValues = true;
 			if (this.buffer != null) {
 				this.buffer.clear();
@@ -136,6 +182,338 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		}
 	}
 
+	/**
+	 * Write the new value over the existing one in the record buffer, when both
+	 * are present and of the fixed length, i.e., neither the layout nor any 
+	 * null flag changes.
+	 * 
+	 * <p>
+	 * The bytes of the record buffer are changed in place, unless they are
+	 * shared or read-only, in which case the buffer is copied first. 
+	 * </p>
+	 * 
+	 * @return true if the value is updated
+	 */
+	private boolean updateFixedValueInPlace(Field field, PrimitiveType type, long bits) {
+		// the default value is stored as absent
+		if (buffer == null || isDefaultValue(field, type, bits)) {
+			return false;
+		}
+		
+		if (readOnlyRecord == null) {
+			readOnlyRecord = new ReadOnlyRecord<T>(meta.getTableEnumClass(), buffer);
+		}
+		int offset = readOnlyRecord.getOffset(field);
+		if (offset <= 0) {
+			return false;
+		}
+		
+		// copy on write
+		if (buffer.isShared() || buffer.getByteBuffer().isReadOnly()) {
+			buffer = new RecordBuffer(buffer, getAllocator());
+			readOnlyRecord.reset(buffer);
+		}
+		putFixedValue(buffer.getByteBuffer(), offset, type, bits);
+		return true;
+	}
+	
+	/**
+	 * Set the value of the fixed length without boxing
+	 * 
+	 * @param field the field of interest
+	 * @param type the primitive type of the field
+	 * @param bits the bits of the value, see {@link #toBits(PrimitiveType, Object)}
+	 */
+	private void setFixedValue(Field field, PrimitiveType type, long bits) {
+		Preconditions.checkArgument(field.getType() instanceof PrimitiveFieldType && 
+				((PrimitiveFieldType) field.getType()).getPrimitiveType() == type, 
+				"%s is not of %s", field.getName(), type);
+		
+		//1. try to patch the record buffer
+		if (valueArray == null && updateFixedValueInPlace(field, type, bits)) {
+			return;
+		}
+		
+		//2. otherwise keep the bits in the intermediate structure
+		if (valueArray == null) {
+			initValueArray();
+		}
+		if (primitiveArray == null) {
+			primitiveArray = new long[valueArray.length];
+		}
+		int id = field.getId() - 1; // note that id starts at 1
+		valueArray[id] = PRIMITIVE_VALUE;
+		primitiveArray[id] = bits;
+		
+		hasNewValues = true;
+		if (this.buffer != null) {
+			this.buffer.clear();
+			this.buffer = null;
+		}
+	}
+	
+	public void setBool(Field field, boolean val) {
+		setFixedValue(field, PrimitiveType.BOOL, val ? 1 : 0);
+	}
+	
+	public void setBool(T col, boolean val) {
+		setBool(col.getField(), val);
+	}
+	
+	public void setByte(Field field, byte val) {
+		setFixedValue(field, PrimitiveType.BYTE, val);
+	}
+	
+	public void setByte(T col, byte val) {
+		setByte(col.getField(), val);
+	}
+	
+	public void setShort(Field field, short val) {
+		setFixedValue(field, PrimitiveType.INT16, val);
+	}
+	
+	public void setShort(T col, short val) {
+		setShort(col.getField(), val);
+	}
+	
+	public void setInt(Field field, int val) {
+		setFixedValue(field, PrimitiveType.INT32, val);
+	}
+	
+	public void setInt(T col, int val) {
+		setInt(col.getField(), val);
+	}
+	
+	public void setLong(Field field, long val) {
+		setFixedValue(field, PrimitiveType.INT64, val);
+	}
+	
+	public void setLong(T col, long val) {
+		setLong(col.getField(), val);
+	}
+	
+	public void setFloat(Field field, float val) {
+		setFixedValue(field, PrimitiveType.FLOAT, Float.floatToIntBits(val));
+	}
+	
+	public void setFloat(T col, float val) {
+		setFloat(col.getField(), val);
+	}
+	
+	public void setDouble(Field field, double val) {
+		setFixedValue(field, PrimitiveType.DOUBLE, Double.doubleToLongBits(val));
+	}
+	
+	public void setDouble(T col, double val) {
+		setDouble(col.getField(), val);
+	}
+
+	public void appendElement(Field field, Object element) {
+		appendElement(field, element, 0);
+	}
+
+	public void appendElement(T col, Object element) {
+		appendElement(col.getField(), element, 0);
+	}
+
+	public void appendElement(T col, Object element, int reservedBytes) {
+		appendElement(col.getField(), element, reservedBytes);
+	}
+
+	/**
+	 * Append an element to a list-type field
+	 *
+	 * <p>
+	 * When the list is present in the record buffer with the index of element 
+	 * offsets (see {@link CollectionValueOperator}), the element is written in 
+	 * place if the list has enough spare bytes; otherwise the list is grown by 
+	 * splicing a new record buffer, with more spare bytes reserved as requested, 
+	 * so that the following appends move none of the values behind the list. 
+	 * No element is decoded either way. Otherwise, e.g., a list without the 
+	 * constraint of LARGE_LIST or written before the constraint is added, the 
+	 * element is appended to the list decoded, which is set again. Either way,
+	 * the size of the list stays the plain number of elements.
+	 * </p>
+	 *
+	 * @param field the list-type field of interest
+	 * @param element the new element
+	 * @param reservedBytes the number of spare bytes reserved when the list grows
+	 */
+	public void appendElement(Field field, Object element, int reservedBytes) {
+		int id = field.getId() - 1; // note that id starts at 1
+		FieldAccessPlan plan = meta.getAccessPlan();
+		Preconditions.checkArgument(id >= 0 && id < plan.size() &&
+				plan.getKind(id) == FieldAccessPlan.KIND_COLLECTION, "%s is not a list", field.getName());
+		Preconditions.checkNotNull(element);
+		Preconditions.checkArgument(reservedBytes >= 0);
+
+		if (valueArray == null && appendElementInBuffer(field, element, reservedBytes)) {
+			return;
+		}
+
+		List<Object> list = Lists.newArrayList();
+		Object cur = getValue(field);
+		if (cur instanceof List) {
+			list.addAll((List<?>) cur);
+		}
+		list.add(element);
+		setValue(field, list);
+	}
+
+	/**
+	 * Append an element to the list present in the record buffer, by writing
+	 * it into the spare bytes of the list, or inserting more spare bytes first.
+	 *
+	 * @return true if the element is appended
+	 */
+	private boolean appendElementInBuffer(Field field, Object element, int reservedBytes) {
+		if (buffer == null) {
+			return false;
+		}
+		if (readOnlyRecord == null) {
+			readOnlyRecord = new ReadOnlyRecord<T>(meta.getTableEnumClass(), buffer);
+		}
+		int offset = readOnlyRecord.getOffset(field);
+		if (offset <= 0) {
+			return false;
+		}
+
+		CollectionValueOperator valOpr = (CollectionValueOperator) meta.getAccessPlan().getOperator(field.getId() - 1);
+		ByteBuffer src = buffer.getByteBuffer();
+		int index = offset + 4; // after the length of the list
+		int length = src.getInt(offset);
+		int spare = valOpr.getNumOfSpareBytes(src, index, length);
+		if (spare < 0) {
+			return false;
+		}
+
+		//1. in place, when the spare bytes are enough
+		int needed = valOpr.getNumOfBytesToAppend(element);
+		if (needed <= spare) {
+			// copy on write
+			if (buffer.isShared() || src.isReadOnly()) {
+				buffer = new RecordBuffer(buffer, getAllocator());
+			}
+			valOpr.appendElement(buffer.getByteBuffer(), index, length, element);
+			readOnlyRecord.reset(buffer);
+			return true;
+		}
+
+		//2. otherwise insert the spare bytes right after the elements
+		int extra = needed - spare + reservedBytes;
+		int insertAt = valOpr.getElementsEnd(src, index, length);
+		int size = buffer.getRecordBufferSize();
+		BufferAllocator allocator = getAllocator();
+		ByteBuffer out = allocator.allocate(size + extra);
+		BufferUtils.copy(src, 0, out, 0, insertAt);
+		for (int i = 0; i < extra; ++i) {
+			out.put(insertAt + i, (byte) 0);
+		}
+		BufferUtils.copy(src, insertAt, out, insertAt + extra, size - insertAt);
+		out.putInt(offset, length + extra);
+		shiftReferences(out, offset, extra);
+		valOpr.appendElement(out, index, length + extra, element);
+
+		this.buffer = createRecordBuffer(allocator, out, size + extra);
+		readOnlyRecord.reset(this.buffer);
+		return true;
+	}
+
+	/**
+	 * Create a new record buffer with the new value of a variable length, when
+	 * both the new and old values are present. 
+	 * 
+	 * <p>
+	 * The bytes before and after the old value are copied as they are, and only 
+	 * the new value is serialized. The offsets in the reference section behind 
+	 * the value are then moved by the difference of sizes. 
+	 * </p>
+	 * 
+	 * @return true if the value is updated
+	 */
+	private boolean updateVariableValueBySplicing(Field field, Object val) {
+		int id = field.getId() - 1; // note that id starts at 1
+		FieldAccessPlan plan = meta.getAccessPlan();
+		if (buffer == null || id >= plan.size() || plan.getKind(id) == FieldAccessPlan.KIND_FIXED) {
+			return false;
+		}
+		
+		// the default or empty value is stored as absent
+		FieldValueOperatorInterface valOpr = plan.getOperator(id);
+		int newLength = getValueLength(field, valOpr, val);
+		if (newLength < 0) {
+			return false;
+		}
+		
+		if (readOnlyRecord == null) {
+			readOnlyRecord = new ReadOnlyRecord<T>(meta.getTableEnumClass(), buffer);
+		}
+		int offset = readOnlyRecord.getOffset(field);
+		if (offset <= 0) {
+			return false;
+		}
+		
+		//1. write the new value at the same offset of a new buffer
+		ByteBuffer src = buffer.getByteBuffer();
+		int size = buffer.getRecordBufferSize();
+		int oldLength = plan.skip(src, id, offset) - offset;
+		int newSize = size - oldLength + newLength;
+		BufferAllocator allocator = getAllocator();
+		ByteBuffer out = allocator.allocate(newSize);
+		int length = writeValue(out, offset, field, valOpr, val);
+		Preconditions.checkState(length == newLength, 
+				"%s bytes are written for the value sized %s", length, newLength);
+		
+		//2. copy the bytes before and after the old value
+		BufferUtils.copy(src, 0, out, 0, offset);
+		BufferUtils.copy(src, offset + oldLength, out, offset + newLength, size - offset - oldLength);
+		
+		//3. move the references behind the value
+		if (newLength != oldLength) {
+			shiftReferences(out, offset, newLength - oldLength);
+		}
+		
+		this.buffer = createRecordBuffer(allocator, out, newSize);
+		readOnlyRecord.reset(this.buffer);
+		return true;
+	}
+	
+	/**
+	 * Add the delta to every offset in the reference section behind the input
+	 * 
+	 * @param buf the buffer containing the record
+	 * @param offset the offset of the value whose size changes
+	 * @param delta the difference of sizes
+	 */
+	private void shiftReferences(ByteBuffer buf, int offset, int delta) {
+		int pos = 6; // version # + # of attributes + length of reference section
+		if (this.meta.hasSortedKey()) {
+			shiftOffset(buf, pos, offset, delta);
+			pos += 4;
+		}
+		
+		int numOfCollections = buf.get(pos);
+		pos += 1;
+		for (int i = 0; i < numOfCollections; ++i) {
+			shiftOffset(buf, pos, offset, delta);
+			pos += 4;
+		}
+		
+		int numOfReferenceFields = buf.get(pos);
+		pos += 1;
+		for (int i = 0; i < numOfReferenceFields; ++i) {
+			shiftOffset(buf, pos + 2, offset, delta); // skip the field ID
+			pos += 6;
+		}
+	}
+	
+	private static void shiftOffset(ByteBuffer buf, int pos, int offset, int delta) {
+		int cur = buf.getInt(pos);
+		if (cur > offset) {
+			buf.putInt(pos, cur + delta);
+		}
+	}
+
 	@Override
 	public Object getValue(Field field) {
 	
@@ -151,11 +529,20 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
  		Object result = valueArray != null && valueArray.length > id ? valueArray[id] : null;
 		if (result == null) { // never return NULL
 			return field.getDefaultValue();
+		} else if (result == PRIMITIVE_VALUE) {
+			return fromBits(((PrimitiveFieldType) field.getType()).getPrimitiveType(), primitiveArray[id]);
 		} else {
 			return result;
 		}
 	}
 	
+	/**
+	 * @return true if the value of the field is kept as bits in the primitive array
+	 */
+	private boolean hasPrimitiveValue(int id) {
+		return valueArray != null && valueArray.length > id && valueArray[id] == PRIMITIVE_VALUE;
+	}
+	
 	@Override
 	public Object getValue(T col) {
 		return getValue(col.getField());
@@ -187,14 +574,24 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 			
 			// clean up the flag and the object array
 			this.valueArray = null;
+			this.primitiveArray = null;
 			this.hasNewValues = false;
 		} 
 		return buffer;
 	}
 
+	/**
+	 * It is the exact number of bytes written by {@link #writeTo(ByteBuffer, int)}. 
+	 * With pending updates, it is computed from the values including the nested 
+	 * records, so that the changes to a nested record after being set are taken 
+	 * into account.
+	 */
 	@Override
 	public int getNumOfBytes() {
-		return this.numOfBytes;
+		if (valueArray != null && hasNewValues) {
+			return getNumOfBytesFromValueArray();
+		}
+		return buffer != null ? buffer.getRecordBufferSize() : 0;
 	}
 
 	@Override
@@ -202,7 +599,7 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		// first create the record buffer if necessary
 		getRecordBuffer();
 		if (buffer != null) {
-			return buffer.getByteBuffer().array();
+			return BufferUtils.array(buffer);
 		} else {
 			return new byte[0];
 		}
@@ -232,12 +629,59 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		return getListSize(col.getField());
 	}
 	
+	@Override
+	public Object getListElement(T col, int index) {
+		return getListElement(col.getField(), index);
+	}
+	
+	@Override
+	public Object getListElement(Field field, int index) {
+		if (valueArray == null && readOnlyRecord == null && buffer != null) {
+			readOnlyRecord = new ReadOnlyRecord<T>(meta.getTableEnumClass(), buffer);
+		}
+		
+		if (readOnlyRecord != null) {
+			return readOnlyRecord.getListElement(field, index);
+		}
+		return getListFromValueArray(field).get(index);
+	}
+	
+	@Override
+	public ListCursor getListCursor(T col) {
+		return getListCursor(col.getField());
+	}
+	
+	@Override
+	public ListCursor getListCursor(Field field) {
+		if (valueArray == null && readOnlyRecord == null && buffer != null) {
+			readOnlyRecord = new ReadOnlyRecord<T>(meta.getTableEnumClass(), buffer);
+		}
+		
+		if (readOnlyRecord != null) {
+			return readOnlyRecord.getListCursor(field);
+		}
+		return new ListCursor(getListFromValueArray(field));
+	}
+	
+	/**
+	 * Get the list of the field from the intermediate object array
+	 */
+	private List<?> getListFromValueArray(Field field) {
+		Preconditions.checkArgument(
+				field.getType() instanceof CollectionFieldType);
+		int id = field.getId() - 1; // note that id starts at 1.
+		Object result = valueArray != null && valueArray.length > id ? valueArray[id] : null;
+		return result == null ? Collections.emptyList() : (List<?>) result;
+	}
+	
 	
 	/**
 	 * Initiate the value array for all valid values in the record buffer.
 	 * 
 	 * <p>
-	 * It happens with any updates for the current record. 
+	 * It happens with any updates for the current record. Note that the existing
+	 * record buffer is not written here, so a record sharing its bytes with others 
+	 * (see {@link RecordBuffer#isShared()}) is copied on write. 
 	 * </p>
 	 */
 	private void initValueArray() {
@@ -253,7 +697,6 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		} else {
 			if (this.valueArray == null) {
 				this.valueArray = new Object[this.meta.getTableSize()];
-				this.numOfBytes = this.meta.getMaxHeaderLength();
 			}
 		}
 	}
@@ -275,6 +718,7 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		int posOfAttrs = refSectionLength + 6 + initOffset;
 	
 		valueArray = new Object[Math.max(length, fieldList.size())]; // in case we have to update the existing record
+		primitiveArray = new long[valueArray.length];
 
 		int offset = posOfAttrs + (length + 7) / 8; // skip # of attrs, flags;
 		for (int i = 0; i < length; i++) {
@@ -285,7 +729,7 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 
 				FieldType fieldType = curField.getField().getType();
 				int id = curField.getField().getId() - 1; // note that the ID starts at 1 instead of 0
-				FieldValueOperatorInterface valueOpr = FieldValueOperatorFactory.getOperator(fieldType);
+				FieldValueOperatorInterface valueOpr = meta.getAccessPlan().getOperator(id);
 				if (fieldType instanceof PrimitiveFieldType) {
 					switch (((PrimitiveFieldType) fieldType).getPrimitiveType()) {
 					case STRING:
@@ -306,7 +750,9 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 						break;
 					default:// all other types with the fixed length
 						int size = valueOpr.getNumOfBytes(null);
-						valueArray[id] = valueOpr.getValue(bytebuffer, offset, size);
+						valueArray[id] = PRIMITIVE_VALUE;
+						primitiveArray[id] = getFixedValue(bytebuffer, offset, 
+								((PrimitiveFieldType) fieldType).getPrimitiveType());
 						offset += size;
 						break;
 					}
@@ -327,206 +773,363 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 				
 			} 
 		}	
-		this.numOfBytes = offset - initOffset;
 	}
 
 	/**
-	 * Create a byte buffer containing the input record and the input objects
-	 * would be removed at the same time. 
+	 * Serialize the record into the output at its current position, which then 
+	 * moves forward by the number of bytes written. 
+	 * 
+	 * <p>
+	 * The pending updates are written straight into the output, so that a 
+	 * caller can reuse one buffer for many records without creating a record
+	 * buffer for each. The record is not changed. 
+	 * </p>
+	 * 
+	 * @param out the output buffer in BIG_ENDIAN
+	 * @return the number of bytes written
+	 * @throws BufferOverflowException if the output has no enough space left
+	 */
+	public int writeTo(ByteBuffer out) {
+		Preconditions.checkArgument(out.order() == ByteOrder.BIG_ENDIAN, 
+				"The output must be in BIG_ENDIAN");
+		int length;
+		try {
+			length = writeTo(out, out.position());
+		} catch (IndexOutOfBoundsException e) {
+			throw new BufferOverflowException();
+		}
+		out.position(out.position() + length);
+		return length;
+	}
+	
+	/**
+	 * Serialize the record into the output at the absolute index, e.g., a nested
+	 * record written right in the buffer of its parent. Neither the record nor 
+	 * the position of the output is changed. 
+	 * 
+	 * @param out the output buffer in BIG_ENDIAN
+	 * @param index the absolute position where the record starts
+	 * @return the number of bytes written, or 0 if the record is empty
+	 * @throws IndexOutOfBoundsException if the output has no enough space
+	 */
+	public int writeTo(ByteBuffer out, int index) {
+		if (valueArray != null && hasNewValues) {
+			return writeValueArray(out, index);
+		} else if (buffer != null) {
+			int length = buffer.getRecordBufferSize();
+			if (index + length > out.limit()) {
+				throw new IndexOutOfBoundsException();
+			}
+			BufferUtils.copy(buffer.getByteBuffer(), 0, out, index, length);
+			return length;
+		} else {
+			return 0;
+		}
+	}
+	
+	/**
+	 * Create a byte buffer containing the values in the object array. 
 	 * 
-	 * @param input an array of attributes from a record.
-	 * @return a byte buffer containing the input record.
+	 * <p>
+	 * The bytes are written into one array of the exact size, including the 
+	 * nested records and lists, see {@link #getNumOfBytesFromValueArray()}.
+	 * </p>
 	 */
 	private void constructRecordBufferFromValueArray() {
+		BufferAllocator allocator = getAllocator();
+		int size = getNumOfBytesFromValueArray();
+		ByteBuffer out = allocator.allocate(size);
+		int length = writeValueArray(out, 0);
+		Preconditions.checkState(length == size, 
+				"%s bytes are written for the record sized %s", length, size);
 		
+		// update the the instance of {@link RecordBuffer}
+		this.buffer = createRecordBuffer(allocator, out, length);
+	}
+	
+	/**
+	 * Create the record buffer owning the storage written. The storage is kept
+	 * as it is, i.e., the bytes behind the record (if any) are not copied away.
+	 */
+	static RecordBuffer createRecordBuffer(BufferAllocator allocator, ByteBuffer out, int length) {
+		return new RecordBuffer(out, length, allocator);
+	}
+	
+	/**
+	 * It is computed in the same way as the values are written, see 
+	 * {@link #writeValueArray(ByteBuffer, int)}. 
+	 * 
+	 * @return the exact number of bytes to serialize the object array
+	 */
+	private int getNumOfBytesFromValueArray() {
+		int length = this.meta.getHeaderLayout().getLength();
 		List<T> fieldList = this.meta.getFieldList();
-		
-		//0. prepare for the output
-		byte[] out = new byte[0];
-		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-		try {
-			//1. store the attributes in fixed length
-			short numOfAttr = (short) fieldList.size();
-			short version = fieldList.get(0).getVersion();
-
-			//2. store bit flags next to indicate empty columns;
-			byte[] flags = new byte[(numOfAttr + 7) / 8];
-
-			//3. fill the first 6 bytes
-			int curPosition = 0;
-			outStream.write(ByteBuffer.allocate(2).putShort(version).array());
-			curPosition += 2;
-			outStream.write(ByteBuffer.allocate(2).putShort(numOfAttr).array());
-			curPosition += 2;
-			outStream.write(ByteBuffer.allocate(2).putShort(this.meta.getReferenceSectionLength()).array());
-			curPosition += 2;
-
-			//4. prepare for the sorted key reference
-			int posOfsortedKey = -1;
-			if (this.meta.hasSortedKey()) {
-				posOfsortedKey = curPosition;
-				outStream.write(new byte[]{(byte)0,(byte)0,(byte)0,(byte)0});
-				curPosition += 4;
-			}
-
-			//5. prepare for the references to the list type fields
-			int posOfCollectionTypeReferenceFields = -1;
-			ByteBuffer colFieldOffsetListByteBuf = null;
-			if (this.meta.hasCollectionFieldInReferenceSection()) {
-				byte numOfCollections = this.meta.getNumOfCollectionFieldInReferenceSection();
-				colFieldOffsetListByteBuf = ByteBuffer.allocate(4 * numOfCollections);
-				outStream.write(numOfCollections);
-				curPosition += 1;
-				posOfCollectionTypeReferenceFields = curPosition;
-				for (int i = 0; i < numOfCollections; i++) {
-					outStream.write(new byte[]{(byte)0,(byte)0,(byte)0,(byte)0});
-					curPosition += 4;
-					colFieldOffsetListByteBuf.putInt(-1);
+		FieldAccessPlan plan = this.meta.getAccessPlan();
+		for (int i = 0, n = Math.min(fieldList.size(), valueArray.length); i < n; ++i) {
+			Field curField = fieldList.get(i).getField();
+			if (valueArray[i] == PRIMITIVE_VALUE) {
+				PrimitiveType type = ((PrimitiveFieldType) curField.getType()).getPrimitiveType();
+				if (!isDefaultValue(curField, type, primitiveArray[i])) {
+					length += plan.getWidth(i);
 				}
 			} else {
-				outStream.write(0);
-				curPosition += 1;
+				length += Math.max(getValueLength(curField, plan.getOperator(i), valueArray[i]), 0);
 			}
-
-			//6. prepare for the references to the fields with reference
-			int posOfFieldsWithReference = -1;
-			ByteBuffer refFieldOffsetListByteBuf = null;
-			if (this.meta.hasNonCollectionFieldInReferenceSection()) {
-				byte numOfReferenceFields = this.meta.getNumOfNonCollectionFieldInReferenceSection();
-				refFieldOffsetListByteBuf = ByteBuffer.allocate(6 * numOfReferenceFields);
-				outStream.write(numOfReferenceFields);
-				curPosition += 1;
-				posOfFieldsWithReference = curPosition;
-				for (int i = 0; i < numOfReferenceFields; ++i) {
-					outStream.write(new byte[]{(byte)0,(byte)0});
-					curPosition += 2;
-					outStream.write(new byte[]{(byte)0,(byte)0,(byte)0,(byte)0});
-					curPosition += 4;
-				}
-			} else {
-				outStream.write(0);
-				curPosition += 1;
-			}
-
-			//7. prepare the bit-maps
-			int posOfFlags = curPosition; 
-			outStream.write(flags);
-			curPosition += flags.length;
-
-			//8. start put the values into the byte array
-			int sortKeyOffset = -1;
-			for (int i = 0; i < numOfAttr; ++i) {
-
-				boolean hasValidValue = false;
-
-				// find a valid value when it is still smaller than ... 
-				if (i < valueArray.length) {
-
-					T curCol = fieldList.get(i);
-					Object val = valueArray[i];
-					Field curField = curCol.getField();
-					FieldType curFieldType = curField.getType();
-					FieldValueOperatorInterface valOpr = 
-							FieldValueOperatorFactory.getOperator(curFieldType);
-
-					if (val != null && valOpr.isValid(val) && 
-							!curField.equalToDefaultValue(val)) {
-
-						byte[] byteArray = valOpr.getByteArray(val);
-						if (byteArray.length > 0) {
-
-							hasValidValue = true;
-
-							// if it is a sort key
-							if (curField.isDesSortKey()) {
-								sortKeyOffset = curPosition;
-							}
-
-							// if it is collection type field
-							if (curFieldType instanceof CollectionFieldType) {
-								int seqNo = this.meta.getSequenceOfCollectionField(
-										curField.getId());
-								colFieldOffsetListByteBuf.putInt(seqNo * 4, curPosition);
-							}
-
-							// if it is a field with reference 
-							if (curField.isFrequentlyUsed()) {
-								refFieldOffsetListByteBuf.putShort((short) curField.getId());
-								refFieldOffsetListByteBuf.putInt(curPosition);
-							}
-
-							// as a common field
-							if (valOpr.hasFixedLength()) {
-								outStream.write(byteArray);
-								curPosition += byteArray.length;
-							} else {
-								if (curFieldType instanceof PrimitiveFieldType && 
-										((PrimitiveFieldType) curFieldType).getPrimitiveType().equals(PrimitiveType.STRING)) {
-									if (byteArray.length > Short.MAX_VALUE) {
-										outStream.write(new byte[]{(byte)0,(byte)0});
-										curPosition += 2;
-										LOG.error("A super-long value occurs to " + curCol);
-									} else {
-										short len = (short) byteArray.length;
-										outStream.write(ByteBuffer.allocate(2).putShort(len).array());
-										curPosition += 2;
-										outStream.write(byteArray);
-										curPosition += byteArray.length;
-									}	
-								} else {
-									outStream.write(ByteBuffer.allocate(4).putInt(byteArray.length).array());
-									curPosition += 4;
-									outStream.write(byteArray);
-									curPosition += byteArray.length;
-								}
-							}	
-							// clean up the value in the input list
-							valueArray[i] = null;
-						}
-					} 	
-				}
-
-				if (!hasValidValue) {
-					// store flag: 1 for empty value
-					byte bit = (byte) (1 << (7 - (i % 8)));
-					byte flag = flags[i / 8];
-					flags[i / 8] = (byte) (flag | bit);
-				}
-			}
-			
-			//9. prepare the byte array for the result
-			out = outStream.toByteArray();
-			outStream.close();
-			outStream = null;
-			
-			//10. fill the blanks
-			//10.1 flags
-			System.arraycopy(flags, 0, out, posOfFlags, flags.length);
+		}
+		return length;
+	}
+	
+	/**
+	 * Write the values in the object array into the output buffer directly.
+	 * 
+	 * <p>
+	 * The offsets in the reference section are patched in place once the 
+	 * corresponding values are written, and so are the null flags. 
+	 * </p>
+	 * 
+	 * @param out the output buffer
+	 * @param start the absolute position in the output where the record starts
+	 * @return the number of bytes of the record
+	 * @throws IndexOutOfBoundsException if the output has no enough space
+	 */
+	private int writeValueArray(ByteBuffer out, int start) {
+		
+		List<T> fieldList = this.meta.getFieldList();
+		short numOfAttr = (short) fieldList.size();
+		
+		//1. copy the header without any value
+		RecordHeaderLayout headerLayout = this.meta.getHeaderLayout();
+		int curPosition = start + headerLayout.writeHeader(out, start);
+		
+		//2. start put the values into the buffer
+		FieldAccessPlan plan = this.meta.getAccessPlan();
+		for (int i = 0; i < numOfAttr; ++i) {
 			
-			//10.2 sort-key
-			if (sortKeyOffset > 0) {
-				System.arraycopy(ByteBuffer.allocate(4).putInt(sortKeyOffset).array(), 0, out, posOfsortedKey, 4);
+			int valueLength = -1;
+			Field curField = fieldList.get(i).getField();
+			if (i < valueArray.length && valueArray[i] == PRIMITIVE_VALUE) {
+				PrimitiveType type = ((PrimitiveFieldType) curField.getType()).getPrimitiveType();
+				valueLength = isDefaultValue(curField, type, primitiveArray[i]) ? -1 :
+					putFixedValue(out, curPosition, type, primitiveArray[i]);
+			} else if (i < valueArray.length) {
+				valueLength = writeValue(out, curPosition, curField, plan.getOperator(i), valueArray[i]);
 			}
 			
-			//10.3 collection type field
-			if (posOfCollectionTypeReferenceFields > 0) {
-				byte[] offsetByteArray = colFieldOffsetListByteBuf.array();
-				System.arraycopy(offsetByteArray, 0, out, posOfCollectionTypeReferenceFields, offsetByteArray.length);
+			if (valueLength < 0) {
+				// store flag: 1 for empty value
+				headerLayout.setNullFlag(out, start, i);
+				continue;
 			}
 			
-			//10.4 field with 'hasRef' annotation
-			if (posOfFieldsWithReference > 0) {
-				byte[] offsetByteArray = refFieldOffsetListByteBuf.array();
-				System.arraycopy(offsetByteArray, 0, out, posOfFieldsWithReference, offsetByteArray.length);
+			//3. patch the reference section
+			headerLayout.putReference(out, start, i, curPosition - start);
+			curPosition += valueLength;
+		}
+		
+		return curPosition - start;
+	}
+	
+	/**
+	 * Write one value at the position of the output buffer
+	 * 
+	 * @return the number of bytes written, or -1 if the value should be absent
+	 */
+	static int writeValue(ByteBuffer out, int index, Field field, 
+			FieldValueOperatorInterface valOpr, Object val) {
+		if (val == null) {
+			return -1;
+		}
+		
+		if (!valOpr.isValid(val) || field.equalToDefaultValue(val)) {
+			return -1;
+		}
+		
+		FieldType fieldType = field.getType();
+		if (valOpr.hasFixedLength()) {
+			PrimitiveType type = ((PrimitiveFieldType) fieldType).getPrimitiveType();
+			return putFixedValue(out, index, type, toBits(type, val));
+		}
+		
+		// a nested record or list is written in place, following its length
+		if (valOpr instanceof ValueWriterInterface) {
+			int length = ((ValueWriterInterface) valOpr).write(val, out, index + 4);
+			if (length == 0) {
+				return -1;
 			}
-			
-		} catch (IOException e) {
-			LOG.error("Cannot open a stream to convert the input array to a byte array!");
-		} 
-		// update the the instance of {@link RecordBuffer}
-		this.numOfBytes = out.length;
-		this.buffer = new RecordBuffer();
-		this.buffer.wrap(out, 0, out.length);
+			out.putInt(index, length);
+			return 4 + length;
+		}
+		
+		// a string is encoded straight into the output
+		if (fieldType instanceof PrimitiveFieldType && 
+				((PrimitiveFieldType) fieldType).getPrimitiveType() == PrimitiveType.STRING) {
+			String str = (String) val;
+			if (str.isEmpty()) {
+				return -1;
+			}
+			int length = StringValueOperator.writeString(str, out, index);
+			if (length < 0) {
+				out.putShort(index, (short) 0);
+				LOG.error("A super-long value occurs to " + field.getName());
+				return 2;
+			}
+			return length;
+		}
+		
+		byte[] byteArray = valOpr.getByteArray(val);
+		if (byteArray.length == 0) {
+			return -1;
+		}
+		out.putInt(index, byteArray.length);
+		return 4 + BufferUtils.put(out, index + 4, byteArray);
+	}
+	
+	/**
+	 * Find out the number of bytes taken by one value, see 
+	 * {@link #writeValue(ByteBuffer, int, Field, FieldValueOperatorInterface, Object)}
+	 * 
+	 * @return the number of bytes to write, or -1 if the value should be absent
+	 */
+	static int getValueLength(Field field, FieldValueOperatorInterface valOpr, Object val) {
+		if (val == null) {
+			return -1;
+		}
+		
+		if (!valOpr.isValid(val) || field.equalToDefaultValue(val)) {
+			return -1;
+		}
+		
+		FieldType fieldType = field.getType();
+		if (valOpr.hasFixedLength()) {
+			return valOpr.getNumOfBytes(null);
+		}
+		
+		if (valOpr instanceof ValueWriterInterface) {
+			int length = valOpr.getNumOfBytes(val);
+			return length == 0 ? -1 : 4 + length;
+		}
+		
+		// a super-long string is written as an empty one
+		if (fieldType instanceof PrimitiveFieldType && 
+				((PrimitiveFieldType) fieldType).getPrimitiveType() == PrimitiveType.STRING) {
+			if (((String) val).isEmpty()) {
+				return -1;
+			}
+			int length = valOpr.getNumOfBytes(val);
+			return length > Short.MAX_VALUE ? 2 : 2 + length;
+		}
+		
+		int length = valOpr.getNumOfBytes(val);
+		return length == 0 ? -1 : 4 + length;
+	}
+	
+	/**
+	 * Convert a value of the fixed length into bits, i.e., 1/0 for a boolean, 
+	 * the raw value for an integer, and {@link Float#floatToIntBits(float)} or 
+	 * {@link Double#doubleToLongBits(double)} for a float or double.
+	 */
+	static long toBits(PrimitiveType type, Object val) {
+		switch (type) {
+		case BOOL:
+			return ((Boolean) val) ? 1 : 0;
+		case BYTE:
+			return (Byte) val;
+		case INT16:
+			return (Short) val;
+		case INT32:
+			return (Integer) val;
+		case INT64:
+			return (Long) val;
+		case FLOAT:
+			return Float.floatToIntBits((Float) val);
+		case DOUBLE:
+			return Double.doubleToLongBits((Double) val);
+		default:
+			throw new IllegalArgumentException(type + " is not of the fixed length");
+		}
+	}
+	
+	/**
+	 * Convert the bits back to a value, see {@link #toBits(PrimitiveType, Object)}
+	 */
+	private static Object fromBits(PrimitiveType type, long bits) {
+		switch (type) {
+		case BOOL:
+			return bits != 0;
+		case BYTE:
+			return (byte) bits;
+		case INT16:
+			return (short) bits;
+		case INT32:
+			return (int) bits;
+		case INT64:
+			return bits;
+		case FLOAT:
+			return Float.intBitsToFloat((int) bits);
+		case DOUBLE:
+			return Double.longBitsToDouble(bits);
+		default:
+			throw new IllegalArgumentException(type + " is not of the fixed length");
+		}
+	}
+	
+	/**
+	 * @return true if the bits are the ones of the default value of the field
+	 */
+	static boolean isDefaultValue(Field field, PrimitiveType type, long bits) {
+		Object defaultValue = field.getDefaultValue();
+		return defaultValue != null && toBits(type, defaultValue) == bits;
+	}
+	
+	/**
+	 * Read the bits of a value of the fixed length from the buffer
+	 */
+	static long getFixedValue(ByteBuffer buf, int index, PrimitiveType type) {
+		switch (type) {
+		case BOOL:
+			return buf.get(index) != 0 ? 1 : 0;
+		case BYTE:
+			return buf.get(index);
+		case INT16:
+			return buf.getShort(index);
+		case INT32:
+			return buf.getInt(index);
+		case INT64:
+			return buf.getLong(index);
+		case FLOAT:
+			return Float.floatToIntBits(buf.getFloat(index));
+		case DOUBLE:
+			return Double.doubleToLongBits(buf.getDouble(index));
+		default:
+			throw new IllegalArgumentException(type + " is not of the fixed length");
+		}
+	}
+	
+	/**
+	 * Write the bits of a value of the fixed length at the position of the output buffer
+	 * 
+	 * @return the number of bytes written
+	 */
+	static int putFixedValue(ByteBuffer out, int index, PrimitiveType type, long bits) {
+		switch (type) {
+		case BOOL:
+		case BYTE:
+			out.put(index, (byte) bits);
+			return 1;
+		case INT16:
+			out.putShort(index, (short) bits);
+			return 2;
+		case INT32:
+		case FLOAT:
+			out.putInt(index, (int) bits);
+			return 4;
+		case INT64:
+		case DOUBLE:
+			out.putLong(index, bits);
+			return 8;
+		default:
+			throw new IllegalArgumentException(type + " is not of the fixed length");
+		}
 	}
 	
 	//////////////////////////////////////////////////////////////////////////
@@ -535,6 +1138,10 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		if (readOnlyRecord != null) {
 			return readOnlyRecord.getBool(field);
 		}
+		int id = field.getId() - 1; // note that id starts at 1.
+		if (hasPrimitiveValue(id)) {
+			return primitiveArray[id] != 0;
+		}
 		return (Boolean) getValue(field);
 	}
 
@@ -546,6 +1153,10 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		if (readOnlyRecord != null) {
 			return readOnlyRecord.getByte(field);
 		}
+		int id = field.getId() - 1; // note that id starts at 1.
+		if (hasPrimitiveValue(id)) {
+			return (byte) primitiveArray[id];
+		}
 		return (Byte) getValue(field);
 	}
 
@@ -557,6 +1168,10 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		if (readOnlyRecord != null) {
 			return readOnlyRecord.getShort(field);
 		}
+		int id = field.getId() - 1; // note that id starts at 1.
+		if (hasPrimitiveValue(id)) {
+			return (short) primitiveArray[id];
+		}
 		return (Short) getValue(field);
 	}
 
@@ -568,6 +1183,10 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		if (readOnlyRecord != null) {
 			return readOnlyRecord.getLong(field);
 		}
+		int id = field.getId() - 1; // note that id starts at 1.
+		if (hasPrimitiveValue(id)) {
+			return primitiveArray[id];
+		}
 		return (Long) getValue(field);
 	}
 
@@ -579,6 +1198,10 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		if (readOnlyRecord != null) {
 			return readOnlyRecord.getInt(field);
 		}
+		int id = field.getId() - 1; // note that id starts at 1.
+		if (hasPrimitiveValue(id)) {
+			return (int) primitiveArray[id];
+		}
 		return (Integer) getValue(field);
 	}
 
@@ -590,6 +1213,10 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		if (readOnlyRecord != null) {
 			return readOnlyRecord.getFloat(field);
 		}
+		int id = field.getId() - 1; // note that id starts at 1.
+		if (hasPrimitiveValue(id)) {
+			return Float.intBitsToFloat((int) primitiveArray[id]);
+		}
 		return (Float) getValue(field);
 	}
 
@@ -601,6 +1228,10 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		if (readOnlyRecord != null) {
 			return readOnlyRecord.getDouble(field);
 		}
+		int id = field.getId() - 1; // note that id starts at 1.
+		if (hasPrimitiveValue(id)) {
+			return Double.longBitsToDouble(primitiveArray[id]);
+		}
 		return (Double) getValue(field);
 	}
 
@@ -620,6 +1251,53 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 		return getBinary(col.getField());
 	}
 	
+	public ByteBuffer getBinaryBuffer(Field field) {
+		if (readOnlyRecord != null) {
+			return readOnlyRecord.getBinaryBuffer(field);
+		}
+		byte[] cur = getBinary(field);
+		return cur == null ? null : ByteBuffer.wrap(cur).asReadOnlyBuffer();
+	}
+	
+	public ByteBuffer getBinaryBuffer(T col) {
+		return getBinaryBuffer(col.getField());
+	}
+	
+	public int getBinaryLength(Field field) {
+		if (readOnlyRecord != null) {
+			return readOnlyRecord.getBinaryLength(field);
+		}
+		byte[] cur = getBinary(field);
+		return cur == null ? 0 : cur.length;
+	}
+	
+	public int getBinaryLength(T col) {
+		return getBinaryLength(col.getField());
+	}
+	
+	public int writeBinary(Field field, OutputStream out) throws IOException {
+		if (readOnlyRecord != null) {
+			return readOnlyRecord.writeBinary(field, out);
+		}
+		return ReadOnlyRecord.writeBinary(getBinary(field), out);
+	}
+	
+	public int writeBinary(T col, OutputStream out) throws IOException {
+		return writeBinary(col.getField(), out);
+	}
+	
+	public int writeBinary(Field field, ByteBuffer out) {
+		if (readOnlyRecord != null) {
+			return readOnlyRecord.writeBinary(field, out);
+		}
+		byte[] cur = getBinary(field);
+		return cur == null ? 0 : ReadOnlyRecord.writeBinary(ByteBuffer.wrap(cur), 0, cur.length, out);
+	}
+	
+	public int writeBinary(T col, ByteBuffer out) {
+		return writeBinary(col.getField(), out);
+	}
+	
 	public String getString(Field field) {
 		if (readOnlyRecord != null) {
 			return readOnlyRecord.getString(field);
@@ -630,4 +1308,133 @@ public class WritableRecord<T extends Enum<T> & RecordMetadataInterface> extends
 	public String getString(T col) {
 		return getString(col.getField());
 	}
+	
+	public int compareString(Field field, String value) {
+		if (readOnlyRecord != null) {
+			return readOnlyRecord.compareString(field, value);
+		}
+		return Utf8Utils.compare(getString(field), value);
+	}
+	
+	public int compareString(T col, String value) {
+		return compareString(col.getField(), value);
+	}
+	
+	public boolean isStringEqual(Field field, String value) {
+		if (readOnlyRecord != null) {
+			return readOnlyRecord.isStringEqual(field, value);
+		}
+		return value.equals(getString(field));
+	}
+	
+	public boolean isStringEqual(T col, String value) {
+		return isStringEqual(col.getField(), value);
+	}
+	
+	public boolean isStringPrefixedBy(Field field, String prefix) {
+		if (readOnlyRecord != null) {
+			return readOnlyRecord.isStringPrefixedBy(field, prefix);
+		}
+		String cur = getString(field);
+		return cur != null && cur.startsWith(prefix);
+	}
+	
+	public boolean isStringPrefixedBy(T col, String prefix) {
+		return isStringPrefixedBy(col.getField(), prefix);
+	}
+	
+	public int getStringHashCode(Field field) {
+		if (readOnlyRecord != null) {
+			return readOnlyRecord.getStringHashCode(field);
+		}
+		String cur = getString(field);
+		return cur == null ? 0 : cur.hashCode();
+	}
+	
+	public int getStringHashCode(T col) {
+		return getStringHashCode(col.getField());
+	}
+	
+	/**
+	 * Get the read-only record over the record buffer, where any pending update 
+	 * is serialized first. It backs the views of lists. 
+	 */
+	private ReadOnlyRecord<T> getReadOnlyRecord() {
+		getRecordBuffer();
+		if (readOnlyRecord == null) {
+			readOnlyRecord = new ReadOnlyRecord<T>(meta.getTableEnumClass(), 
+					buffer != null ? buffer : new RecordBuffer());
+		}
+		return readOnlyRecord;
+	}
+	
+	@Override
+	public BoolList getBoolList(Field field) {
+		return getReadOnlyRecord().getBoolList(field);
+	}
+	
+	@Override
+	public BoolList getBoolList(T col) {
+		return getBoolList(col.getField());
+	}
+	
+	@Override
+	public ByteList getByteList(Field field) {
+		return getReadOnlyRecord().getByteList(field);
+	}
+	
+	@Override
+	public ByteList getByteList(T col) {
+		return getByteList(col.getField());
+	}
+	
+	@Override
+	public ShortList getShortList(Field field) {
+		return getReadOnlyRecord().getShortList(field);
+	}
+	
+	@Override
+	public ShortList getShortList(T col) {
+		return getShortList(col.getField());
+	}
+	
+	@Override
+	public IntList getIntList(Field field) {
+		return getReadOnlyRecord().getIntList(field);
+	}
+	
+	@Override
+	public IntList getIntList(T col) {
+		return getIntList(col.getField());
+	}
+	
+	@Override
+	public LongList getLongList(Field field) {
+		return getReadOnlyRecord().getLongList(field);
+	}
+	
+	@Override
+	public LongList getLongList(T col) {
+		return getLongList(col.getField());
+	}
+	
+	@Override
+	public FloatList getFloatList(Field field) {
+		return getReadOnlyRecord().getFloatList(field);
+	}
+	
+	@Override
+	public FloatList getFloatList(T col) {
+		return getFloatList(col.getField());
+	}
+	
+	@Override
+	public DoubleList getDoubleList(Field field) {
+		return getReadOnlyRecord().getDoubleList(field);
+	}
+	
+	@Override
+	public DoubleList getDoubleList(T col) {
+		return getDoubleList(col.getField());
+	}
 }
@@ -170,6 +170,7 @@ public class RecordMetaWrapperGenerator implements ElementVisitor,
 				"{fieldSetter}",
 				"{fieldDefaultValue}",
 				"{fieldListSize}",
+				"{fieldListView}",
 				"{fieldComparable}",
 				"{defaultDerivedClass}",
 				"}"
@@ -178,7 +179,7 @@ public class RecordMetaWrapperGenerator implements ElementVisitor,
 		final String[] importString = {
 				"import " + this.modelNameSpace + ".*;",
 				"import " + this.interfaceNameSpace + ".*;",
-				"import datamine.storage.api.BaseInterface;",
+				"import datamine.storage.api.*;",
 				"import datamine.storage.recordbuffers.*;",
 				"",
 				"import java.nio.ByteBuffer;",
@@ -209,6 +210,7 @@ public class RecordMetaWrapperGenerator implements ElementVisitor,
 	public void visit(Field field) {
 		currentTemplate.fillFields("fieldDefaultValue", new FieldGetterDefaultTemplateGenerator().apply(field));
 		currentTemplate.fillFields("fieldListSize", new ListFieldSizeTemplateGenerator(currentTable).apply(field));
+		currentTemplate.fillFields("fieldListView", new ListFieldViewTemplateGenerator(currentTable).apply(field));
 		if (!field.isDerived()) {
 			currentTemplate.fillFields("fieldSetter", new FieldSetterTemplateGenerator(currentTable).apply(field));
 			currentTemplate.fillFields("fieldGetter", new FieldGetterTemplateGenerator(currentTable).apply(field));
@@ -429,6 +431,48 @@ public class RecordMetaWrapperGenerator implements ElementVisitor,
 
 	}
 	
+	/**
+	 * Create the code template for the view getter of each list of fixed-length
+	 * primitives. 
+	 */
+	static class ListFieldViewTemplateGenerator implements UnaryOperatorInterface<Field, CodeTemplate>{
+
+		private Table table;
+		
+		public ListFieldViewTemplateGenerator(Table table) {
+			this.table = table;
+		}
+		
+		@Override
+		public CodeTemplate apply(Field input) {
+
+			final String[] code = {
+					"	@Override",
+					"	public {viewType} {interfaceGetterName}() {",
+					"		return this.value.get{viewType}({metadataClassName}.{enumName});",
+					"	}",
+					""
+			};
+			
+			Preconditions.checkNotNull(input);
+			
+			String viewType = InterfaceGenerator.getListViewTypeName(input);
+			if (viewType == null) {
+				return new CodeTemplate();
+			}
+			
+			CodeTemplate fieldTemplate = new CodeTemplate(code);
+			fieldTemplate.fillFields("viewType", viewType);
+			fieldTemplate.fillFields("metadataClassName", 
+					MetadataFileGenerator.getClassName(table));
+			fieldTemplate.fillFields("enumName",
+					MetadataFileGenerator.getEnumValue(input.getName()));
+			fieldTemplate.fillFields("interfaceGetterName", 
+					InterfaceGenerator.getListViewGetterName(input));	
+			return fieldTemplate;
+		}
+	}
+	
 	/**
 	 * Create the code template for the setter function of each field. 
 	 *  
@@ -437,6 +481,30 @@ public class RecordMetaWrapperGenerator implements ElementVisitor,
 	 */
 	static class FieldSetterTemplateGenerator implements UnaryOperatorInterface<Field, CodeTemplate>{
 
+		/**
+		 * @return the name of the setter in Record for the primitive type
+		 */
+		static String getSetterName(PrimitiveType type) {
+			switch (type) {
+			case BOOL:
+				return "setBool";
+			case BYTE:
+				return "setByte";
+			case INT16:
+				return "setShort";
+			case INT32:
+				return "setInt";
+			case INT64:
+				return "setLong";
+			case FLOAT:
+				return "setFloat";
+			case DOUBLE:
+				return "setDouble";
+			default:
+				return "setValue";
+			}
+		}
+
 		private Field field = null;
 		private CodeTemplate fieldSetterTemplate = null;
 		
@@ -450,8 +518,9 @@ public class RecordMetaWrapperGenerator implements ElementVisitor,
 			
 			fieldSetterTemplate.fillFields("defaultValueChecking", "1 == 1");
 			
-			// setValue clause
-			String setValueStr = new StringBuffer().append("this.value.setValue(")
+			// setValue clause, where a value of the fixed length is not boxed
+			String setValueStr = new StringBuffer().append("this.value.")
+					.append(getSetterName(type.getPrimitiveType())).append("(")
 					.append(metadataClassName).append(".")
 					.append(MetadataFileGenerator.getEnumValue(field.getName()))
 					.append(", input);").toString();
@@ -738,6 +807,26 @@ public class RecordMetaWrapperGenerator implements ElementVisitor,
 
 				fieldGetterTemplate.fillFields("elementType", javaTypeStr);
 				
+				String viewType = InterfaceGenerator.getListViewTypeName(field);
+				if (viewType != null) {
+					// read the elements through the view to avoid decoding a list of objects
+					final String[] viewCode = {
+							"    	{viewType} view = this.value.get{viewType}({metadataClass}.{enumName});",
+							"		List<{elementType}> dList = Lists.newArrayListWithCapacity(view.size());",
+							"		for (int i = 0; i < view.size(); i++) {",
+							"			dList.add(view.get(i));",
+							"		}",
+							"       return dList;",
+					};
+					CodeTemplate ct = new CodeTemplate(viewCode);
+					fieldGetterTemplate.fillFields("loopForList", ct);
+					ct.fillFields("viewType", viewType);
+					ct.fillFields("metadataClass", metadataClassName);
+					ct.fillFields("enumName", MetadataFileGenerator.getEnumValue(field.getName()));
+					ct.fillFields("elementType", javaTypeStr);
+					break;
+				}
+				
 				final String[] loopCode = {
 						"    	List<{elementType}> dList = Lists.newArrayList();",
 						"		List<Object> sList = (List<Object>) this.value.getValue({metadataClass}.{enumName});",
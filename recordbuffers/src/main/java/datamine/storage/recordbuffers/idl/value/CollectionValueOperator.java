@@ -15,14 +15,14 @@
  */
 package datamine.storage.recordbuffers.idl.value;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
 import datamine.storage.idl.FieldValueOperatorInterface;
@@ -32,24 +32,87 @@ import datamine.storage.idl.type.FieldType;
 import datamine.storage.idl.type.GroupFieldType;
 import datamine.storage.idl.type.PrimitiveFieldType;
 import datamine.storage.idl.type.PrimitiveType;
+import datamine.storage.recordbuffers.BufferUtils;
+import datamine.storage.recordbuffers.Utf8Utils;
+import datamine.storage.recordbuffers.idl.value.primitive.StringValueOperator;
 
 /**
  * The operation is defined for the collection type
  * 
+ * <p>
+ * A list is stored as the number of elements followed by the elements. Besides
+ * decoding the whole list, it supports locating and decoding a single element 
+ * directly in the buffer. 
+ * </p>
+ * 
+ * <p>
+ * For a list with the constraint of LARGE_LIST, an index of element offsets is 
+ * appended to the elements so that any element can be located in constant time: 
+ * <i> [size][elements][index entries in reverse order][end of elements][marker]
+ * <i> every entry is the offset of an element relative to the start of the list
+ * 
+ * The index is skipped for the elements with the fixed length, whose offsets can
+ * be computed directly. The index ends with {@link #INDEX_MARKER}, which is read
+ * together with the end of elements, so that a list without the index, e.g., one 
+ * written before the constraint is added, is walked through instead. The size 
+ * stays the plain number of elements, and the index is within the length of the
+ * list, so the readers unaware of the index skip it. 
+ * </p>
+ * 
+ * <p>
+ * A list with the index may keep spare bytes between the elements and the 
+ * index, so that elements can be appended in place, see 
+ * {@link #appendElement(ByteBuffer, int, int, Object)}. The spare bytes are 
+ * only found from the index, so a list without it is never appended in place. 
+ * </p>
+ * 
  * @author yqi
  */
-class CollectionValueOperator implements FieldValueOperatorInterface {
+public class CollectionValueOperator implements FieldValueOperatorInterface, ValueWriterInterface {
 
 	private static final Logger LOG = LoggerFactory.getLogger(
 			CollectionValueOperator.class);
 	
+	/**
+	 * The last word of a list stored with the index of element offsets
+	 */
+	private static final int INDEX_MARKER = 0x4C49584D;
+	
 	private final FieldType elementType;
 	private final CollectionType collectionType;
+	private final FieldValueOperatorInterface elementOpr;
+	
+	/**
+	 * The type of primitive elements, or null for elements of the group type
+	 */
+	private final PrimitiveType elementPrimitiveType;
 	
+	/**
+	 * The number of bytes of each element when it has the fixed length, or -1 
+	 */
+	private final int elementLength;
+	
+	/**
+	 * True if an index of element offsets is stored with the list
+	 */
+	private final boolean hasOffsetIndex;
 
 	public CollectionValueOperator(CollectionFieldType type) {
+		this(type, false);
+	}
+	
+	/**
+	 * @param type the collection type
+	 * @param isLargeList true if the list is defined with the constraint of LARGE_LIST
+	 */
+	public CollectionValueOperator(CollectionFieldType type, boolean isLargeList) {
 		this.elementType = type.getElementType();
 		this.collectionType = type.getCollectionType();
+		this.elementOpr = FieldValueOperatorFactory.getOperator(elementType);
+		this.elementPrimitiveType = elementType instanceof PrimitiveFieldType 
+				? ((PrimitiveFieldType) elementType).getPrimitiveType() : null;
+		this.elementLength = elementOpr.hasFixedLength() ? elementOpr.getNumOfBytes(null) : -1;
+		this.hasOffsetIndex = isLargeList && elementLength < 0;
 	}
 
 	public FieldType getElementType() {
@@ -60,6 +123,13 @@ class CollectionValueOperator implements FieldValueOperatorInterface {
 		return collectionType;
 	}
 
+	/**
+	 * @return true if an index of element offsets is stored with the list
+	 */
+	public boolean hasOffsetIndex() {
+		return hasOffsetIndex;
+	}
+
 	@Override
 	public boolean isValid(Object value) {
 		if (this.collectionType == CollectionType.LIST) {
@@ -77,11 +147,7 @@ class CollectionValueOperator implements FieldValueOperatorInterface {
 	@Override
 	public byte[] getByteArray(Object value) {
 		if (value != null) { 
-			try {
-				return getByteArrayForList((List<Object>) value);
-			} catch (IOException e) {
-				LOG.error(value + " cannot be converted into byte array");
-			}
+			return getByteArrayForList((List<Object>) value);
 		}
 		return new byte[0];
 	}
@@ -94,105 +160,397 @@ class CollectionValueOperator implements FieldValueOperatorInterface {
 
 	private List<Object> getValueForList(ByteBuffer buffer, int index, int length) {
 	
-		List<Object> ret = Lists.newArrayList();
 		//1. get the size of list
-		int listSize = buffer.getInt(index);
-		index += 4;
+		int listSize = getListSize(buffer, index);
+		List<Object> ret = Lists.newArrayListWithCapacity(listSize);
 		//2. start reading values
-		FieldValueOperatorInterface valOpr = FieldValueOperatorFactory.getOperator(elementType);
-		if (elementType instanceof PrimitiveFieldType) {
-			PrimitiveType type = ((PrimitiveFieldType) elementType).getPrimitiveType();
-			switch (type) {
-			case STRING:
-				for (int i = 0; i < listSize; i++) {
-					short strLength = buffer.getShort(index);
-					index += 2;
-					if (strLength > 0) {
-						ret.add(valOpr.getValue(buffer, index, strLength));
-						index += strLength;	
-					} else {
-						ret.add(""); // TODO (Yan) default is ""?
-					}
-				}
-				break;
-			case BINARY:
-				for (int i = 0; i < listSize; i++) {
-					int binLength = buffer.getInt(index);
-					index += 4;
-					ret.add(valOpr.getValue(buffer, index, binLength));
-					index += binLength;
-				}
-			default:
-				int oLength = valOpr.getNumOfBytes(null);
-				for (int i = 0; i < listSize; i++) {
-					ret.add(valOpr.getValue(buffer, index, oLength));
-					index += oLength;
-				}
-			}
-		} else if (elementType instanceof GroupFieldType) {
-			for (int i = 0; i < listSize; i++) {
-				int rLength = buffer.getInt(index);
-				index += 4;
-				ret.add(valOpr.getValue(buffer, index, rLength));
-				index += rLength;
-			}
+		int offset = index + 4;
+		for (int i = 0; i < listSize; i++) {
+			ret.add(getElement(buffer, offset));
+			offset = getNextElementOffset(buffer, offset);
 		}
 		return ret;
 	}
 	
-	private byte[] getByteArrayForList(List<Object> valList) throws IOException {
+	/**
+	 * Get the number of elements in the list
+	 * 
+	 * @param buffer the input byte buffer containing the list
+	 * @param index the index where the list gets started to store
+	 * @return the number of elements in the list
+	 */
+	public int getListSize(ByteBuffer buffer, int index) {
+		return buffer.getInt(index);
+	}
+	
+	/**
+	 * Find out where an element of the list is stored
+	 * 
+	 * <p>
+	 * It takes constant time for the elements with the fixed length or with an 
+	 * index of offsets; otherwise all elements ahead are skipped one by one.
+	 * </p>
+	 * 
+	 * @param buffer the input byte buffer containing the list
+	 * @param index the index where the list gets started to store
+	 * @param length the number of bytes of the list taking
+	 * @param i the position of the element in the list
+	 * @return the offset of the element in the buffer
+	 */
+	public int getElementOffset(ByteBuffer buffer, int index, int length, int i) {
+		int listSize = getListSize(buffer, index);
+		if (i < 0 || i >= listSize) {
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + listSize);
+		}
+		
+		if (elementLength >= 0) {
+			return index + 4 + i * elementLength;
+		}
+		
+		if (isIndexed(buffer, index, length)) {
+			return index + buffer.getInt(index + length - 12 - 4 * i);
+		}
+		
+		int offset = index + 4;
+		for (int k = 0; k < i; k++) {
+			offset = getNextElementOffset(buffer, offset);
+		}
+		return offset;
+	}
+	
+	/**
+	 * @return true if the list is stored with an index of element offsets, i.e.,
+	 * it ends with the marker following a valid end of elements
+	 */
+	private boolean isIndexed(ByteBuffer buffer, int index, int length) {
+		if (elementLength >= 0 || length < 12 || buffer.getInt(index + length - 4) != INDEX_MARKER) {
+			return false;
+		}
+		int listSize = buffer.getInt(index);
+		if (listSize < 0 || listSize > (length - 12) / 4) {
+			return false;
+		}
+		int elementsEnd = buffer.getInt(index + length - 8);
+		// the first element always follows the size of list
+		return elementsEnd >= 4 && elementsEnd <= length - 8 - 4 * listSize &&
+				(listSize == 0 ? elementsEnd == 4 : buffer.getInt(index + length - 12) == 4);
+	}
+	
+	/**
+	 * Find out the spare bytes of the list, i.e., the ones between the last 
+	 * element and the index of element offsets if any, reserved for appending 
+	 * elements in place. 
+	 * 
+	 * @param buffer the input byte buffer containing the list
+	 * @param index the index where the list gets started to store
+	 * @param length the number of bytes of the list taking
+	 * @return the number of spare bytes, or -1 if no element can be appended 
+	 * in place, i.e., a list without the index of element offsets
+	 */
+	public int getNumOfSpareBytes(ByteBuffer buffer, int index, int length) {
+		if (!isIndexed(buffer, index, length)) {
+			return -1;
+		}
+		int end = index + length - 8 - 4 * getListSize(buffer, index);
+		return end - getElementsEnd(buffer, index, length);
+	}
+	
+	/**
+	 * @param element the element to append
+	 * @return the number of spare bytes taken by appending the element to a 
+	 * list with the index of element offsets, including its entry in the index
+	 */
+	public int getNumOfBytesToAppend(Object element) {
+		// the size, the end of elements and the marker are not counted, while
+		// the size is in place of the entry for a list written without the index
+		return getNumOfBytes(Collections.singletonList(element)) - (hasOffsetIndex ? 12 : 0);
+	}
+	
+	/**
+	 * Append an element to the list in place, which is written right after the
+	 * last element. The index of element offsets grows downward into the spare 
+	 * bytes as well, since the entries are in the reverse order. It takes 
+	 * constant time. 
+	 * 
+	 * <p>
+	 * The list must have the index of element offsets and enough spare bytes, see 
+	 * {@link #getNumOfSpareBytes(ByteBuffer, int, int)} and {@link #getNumOfBytesToAppend(Object)}. 
+	 * </p>
+	 * 
+	 * @param buffer the byte buffer containing the list
+	 * @param index the index where the list gets started to store
+	 * @param length the number of bytes of the list taking
+	 * @param element the element to append
+	 * @return the number of bytes of the element
+	 */
+	public int appendElement(ByteBuffer buffer, int index, int length, Object element) {
+		int listSize = getListSize(buffer, index);
+		int elementsEnd = getElementsEnd(buffer, index, length);
+		int numOfBytes = writeElement(element, buffer, elementsEnd);
+		buffer.putInt(index + length - 12 - 4 * listSize, elementsEnd - index);
+		buffer.putInt(index + length - 8, elementsEnd + numOfBytes - index);
+		buffer.putInt(index, listSize + 1);
+		return numOfBytes;
+	}
+	
+	/**
+	 * Skip the element stored at the input offset
+	 * 
+	 * @param buffer the input byte buffer containing the list
+	 * @param offset the offset of the current element
+	 * @return the offset of the next element
+	 */
+	public int getNextElementOffset(ByteBuffer buffer, int offset) {
+		if (elementLength >= 0) {
+			return offset + elementLength;
+		} else if (elementPrimitiveType == PrimitiveType.STRING) {
+			return offset + 2 + Math.max(buffer.getShort(offset), 0);
+		} else {
+			return offset + 4 + buffer.getInt(offset);
+		}
+	}
+	
+	/**
+	 * Decode the element stored at the input offset
+	 * 
+	 * @param buffer the input byte buffer containing the list
+	 * @param offset the offset of the element
+	 * @return the value of the element
+	 */
+	public Object getElement(ByteBuffer buffer, int offset) {
+		if (elementLength >= 0) {
+			return elementOpr.getValue(buffer, offset, elementLength);
+		} else if (elementPrimitiveType == PrimitiveType.STRING) {
+			short strLength = buffer.getShort(offset);
+			if (strLength > 0) {
+				return elementOpr.getValue(buffer, offset + 2, strLength);
+			} else {
+				return ""; // TODO (Yan) default is ""?
+			}
+		} else {
+			return elementOpr.getValue(buffer, offset + 4, buffer.getInt(offset));
+		}
+	}
+	
+	/**
+	 * Serialize the list into one array of the exact size, see 
+	 * {@link #getNumOfBytes(Object)}. 
+	 */
+	private byte[] getByteArrayForList(List<Object> valList) {
 
 		if (valList == null) {
 			// put the size of list (i.e., 0) in an array as the result
 			return new byte[] {0, 0, 0, 0};
 		}
 		
-		// 1. initiate the variables
-		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-
-		// 2. fill the table
-		FieldValueOperatorInterface valOpr = FieldValueOperatorFactory.getOperator(elementType);
-		outStream.write(ByteBuffer.allocate(4).putInt(valList.size()).array());
-		if (elementType instanceof PrimitiveFieldType) {
-			PrimitiveType type = ((PrimitiveFieldType) elementType).getPrimitiveType();
-			switch (type) {
-			case STRING:
-				for (Object cur : valList) {
-					byte[] bytes = valOpr.getByteArray(cur);
-					if (bytes.length > Short.MAX_VALUE) {
-						outStream.write(new byte[]{(byte)0,(byte)0});
-						LOG.error("The string is too long (>" +
-								Short.MAX_VALUE + "):" + cur);
-					} else {
-						outStream.write(ByteBuffer.allocate(2).putShort((short) bytes.length).array());
-						outStream.write(bytes);
-					}
-				}
-				break;
-			case BINARY:
-				for (Object cur : valList) {
-					byte[] bytes = valOpr.getByteArray(cur);
-					outStream.write(ByteBuffer.allocate(4).putInt(bytes.length).array());
-					outStream.write(bytes);
-				}
-				break;
-			default:
-				for (Object cur : valList) {
-					outStream.write(valOpr.getByteArray(cur));
-				}
+		int size = getNumOfBytes(valList);
+		ByteBuffer out = ByteBuffer.allocate(size);
+		int length = write(valList, out, 0);
+		Preconditions.checkState(length == size, 
+				"%s bytes are written for the list sized %s", length, size);
+		return out.array();
+	}
+	
+	/**
+	 * The elements are written one after another, and the nested records among 
+	 * them are serialized right into the output. The index of element offsets
+	 * is then appended by walking through the elements written. 
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public int write(Object value, ByteBuffer out, int index) {
+		if (value == null) {
+			return 0;
+		}
+		
+		List<Object> valList = (List<Object>) value;
+		int num = valList.size();
+		out.putInt(index, num);
+		int pos = index + 4;
+		if (elementLength >= 0) {
+			return 4 + writeFixedLengthElements(valList, out, pos);
+		}
+		for (int i = 0; i < num; ++i) {
+			pos += writeElement(valList.get(i), out, pos);
+		}
+		
+		return writeOffsetIndex(out, index, num, pos);
+	}
+	
+	/**
+	 * Complete a list whose elements are already in the output, e.g., copied
+	 * from other lists as bytes: the number of elements is put ahead of them,
+	 * and the index of element offsets is appended if necessary. 
+	 * 
+	 * @param out the output buffer
+	 * @param index the absolute position where the list starts, i.e., the 
+	 * elements start at (index + 4)
+	 * @param num the number of elements
+	 * @param elementsEnd the absolute position right after the last element
+	 * @return the number of bytes of the list
+	 * @throws IndexOutOfBoundsException if the output has no enough space
+	 */
+	public int completeList(ByteBuffer out, int index, int num, int elementsEnd) {
+		out.putInt(index, num);
+		return writeOffsetIndex(out, index, num, elementsEnd);
+	}
+	
+	/**
+	 * Append the index of element offsets in the reverse order, the end of
+	 * elements and the marker, by walking through the elements written
+	 * 
+	 * @return the number of bytes of the list
+	 */
+	private int writeOffsetIndex(ByteBuffer out, int index, int num, int pos) {
+		if (hasOffsetIndex) {
+			int elementsEnd = pos - index;
+			int offset = index + 4;
+			for (int i = num - 1; i >= 0; --i) {
+				out.putInt(pos + 4 * i, offset - index);
+				offset = getNextElementOffset(out, offset);
 			}
-		} else if (elementType instanceof GroupFieldType) {
-			for (Object cur : valList) {
-				byte[] bytes = valOpr.getByteArray(cur);
-				int len = valOpr.getNumOfBytes(cur);
-				outStream.write(ByteBuffer.allocate(4).putInt(len).array());
-				outStream.write(bytes, 0, len);
+			pos += 4 * num;
+			out.putInt(pos, elementsEnd);
+			out.putInt(pos + 4, INDEX_MARKER);
+			pos += 8;
+		}
+		return pos - index;
+	}
+	
+	/**
+	 * Find out where the elements of the list end, i.e., before the index of 
+	 * element offsets if any
+	 * 
+	 * @param buffer the input byte buffer containing the list
+	 * @param index the index where the list gets started to store
+	 * @param length the number of bytes of the list taking
+	 * @return the absolute position right after the last element
+	 */
+	public int getElementsEnd(ByteBuffer buffer, int index, int length) {
+		int listSize = getListSize(buffer, index);
+		if (elementLength >= 0) {
+			return index + 4 + listSize * elementLength;
+		}
+		if (isIndexed(buffer, index, length)) {
+			return index + buffer.getInt(index + length - 8);
+		}
+		
+		int offset = index + 4;
+		for (int k = 0; k < listSize; k++) {
+			offset = getNextElementOffset(buffer, offset);
+		}
+		return offset;
+	}
+	
+	/**
+	 * Write the elements with the fixed length in a loop for each type
+	 * 
+	 * @return the number of bytes of the elements written
+	 */
+	private int writeFixedLengthElements(List<Object> valList, ByteBuffer out, int pos) {
+		int num = valList.size();
+		int length = num * elementLength;
+		if (pos + length > out.limit()) {
+			throw new IndexOutOfBoundsException();
+		}
+		switch (elementPrimitiveType) {
+		case BOOL:
+			for (int i = 0; i < num; ++i) {
+				out.put(pos + i, (byte) (((Boolean) valList.get(i)) ? 1 : 0));
+			}
+			break;
+		case BYTE:
+			for (int i = 0; i < num; ++i) {
+				out.put(pos + i, (Byte) valList.get(i));
 			}
+			break;
+		case INT16:
+			for (int i = 0; i < num; ++i) {
+				out.putShort(pos + 2 * i, (Short) valList.get(i));
+			}
+			break;
+		case INT32:
+			for (int i = 0; i < num; ++i) {
+				out.putInt(pos + 4 * i, (Integer) valList.get(i));
+			}
+			break;
+		case INT64:
+			for (int i = 0; i < num; ++i) {
+				out.putLong(pos + 8 * i, (Long) valList.get(i));
+			}
+			break;
+		case FLOAT:
+			for (int i = 0; i < num; ++i) {
+				out.putFloat(pos + 4 * i, (Float) valList.get(i));
+			}
+			break;
+		case DOUBLE:
+			for (int i = 0; i < num; ++i) {
+				out.putDouble(pos + 8 * i, (Double) valList.get(i));
+			}
+			break;
+		default:
+			for (int i = 0; i < num; ++i) {
+				writeElement(valList.get(i), out, pos + i * elementLength);
+			}
+		}
+		return length;
+	}
+	
+	/**
+	 * @return the number of bytes of the element written
+	 */
+	private int writeElement(Object cur, ByteBuffer out, int pos) {
+		if (elementOpr instanceof ValueWriterInterface) {
+			int length = ((ValueWriterInterface) elementOpr).write(cur, out, pos + 4);
+			out.putInt(pos, length);
+			return 4 + length;
 		}
 		
-		return outStream.toByteArray();
+		switch (elementPrimitiveType) {
+		case STRING:
+			int strLength = cur == null ? -1 : StringValueOperator.writeString((String) cur, out, pos);
+			if (strLength < 0) {
+				out.putShort(pos, (short) 0);
+				LOG.error("The string is too long (>" +
+						Short.MAX_VALUE + "):" + cur);
+				return 2;
+			}
+			return strLength;
+		case BINARY:
+			byte[] bytes = elementOpr.getByteArray(cur);
+			out.putInt(pos, bytes.length);
+			return 4 + BufferUtils.put(out, pos + 4, bytes);
+		case BOOL:
+			out.put(pos, (byte) (((Boolean) cur) ? 1 : 0));
+			return 1;
+		case BYTE:
+			out.put(pos, (Byte) cur);
+			return 1;
+		case INT16:
+			out.putShort(pos, (Short) cur);
+			return 2;
+		case INT32:
+			out.putInt(pos, (Integer) cur);
+			return 4;
+		case INT64:
+			out.putLong(pos, (Long) cur);
+			return 8;
+		case FLOAT:
+			out.putFloat(pos, (Float) cur);
+			return 4;
+		case DOUBLE:
+			out.putDouble(pos, (Double) cur);
+			return 8;
+		default:
+			return BufferUtils.put(out, pos, elementOpr.getByteArray(cur));
+		}
 	}
 
+	/**
+	 * It is the exact number of bytes written by {@link #write(Object, ByteBuffer, int)}
+	 * for a list, including the nested records. 
+	 */
 	@Override
 	public int getNumOfBytes(Object val) {
 		@SuppressWarnings("unchecked")
@@ -205,13 +563,14 @@ class CollectionValueOperator implements FieldValueOperatorInterface {
 		
 		// 1. get the buffer size to allocate
 		int num = valList.size();
-		FieldValueOperatorInterface valOpr = FieldValueOperatorFactory.getOperator(elementType);
+		FieldValueOperatorInterface valOpr = elementOpr;
 		if (elementType instanceof PrimitiveFieldType) {
 			PrimitiveType type = ((PrimitiveFieldType) elementType).getPrimitiveType();
 			switch (type) {
 			case STRING:
 				for (Object cur : valList) {
-					int sLen = ((String) cur).getBytes().length;
+					// a null or super-long string is written as an empty one
+					int sLen = cur == null ? 0 : Utf8Utils.getEncodedLength((String) cur);
 					if (sLen > Short.MAX_VALUE) {
 						length += 2;
 					} else {
@@ -221,7 +580,7 @@ class CollectionValueOperator implements FieldValueOperatorInterface {
 				break;
 			case BINARY:
 				for (Object cur : valList) {
-					length += 4 + ((byte[]) cur).length;
+					length += 4 + valOpr.getNumOfBytes(cur);
 				}
 				break;
 			default:
@@ -237,6 +596,10 @@ class CollectionValueOperator implements FieldValueOperatorInterface {
 			throw new IllegalArgumentException("Not support for the type of " + elementType);
 		}
 		
+		if (hasOffsetIndex) {
+			length += 4 * num + 8;
+		}
+		
 		return length;
 	}
 
@@ -15,10 +15,10 @@
  */
 package datamine.storage.recordbuffers.idl.value;
 
-import java.util.Map;
-
-import com.google.common.collect.Maps;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import datamine.storage.idl.Field;
 import datamine.storage.idl.FieldValueOperatorInterface;
 import datamine.storage.idl.type.CollectionFieldType;
 import datamine.storage.idl.type.FieldType;
@@ -26,6 +26,15 @@ import datamine.storage.idl.type.GroupFieldType;
 import datamine.storage.idl.type.PrimitiveFieldType;
 
 /**
+ * The factory of value operators, shared by all types equal to each other. 
+ * 
+ * <p>
+ * It can be called by threads concurrently. It is meant for resolving the 
+ * operators once, e.g., when the access plan of a table is compiled (see 
+ * {@link datamine.storage.recordbuffers.FieldAccessPlan}), rather than for 
+ * every access to a value. 
+ * </p>
+ * 
  * @author yqi
  * @date Mar 31, 2015
  */
@@ -33,12 +42,46 @@ public class FieldValueOperatorFactory {
 	
 	private FieldValueOperatorFactory() {  }
 	
-	private static Map<FieldType, FieldValueOperatorInterface> valueOprMap = Maps.newHashMap(); 
+	private static final ConcurrentMap<FieldType, FieldValueOperatorInterface> valueOprMap = 
+			new ConcurrentHashMap<FieldType, FieldValueOperatorInterface>(); 
+	private static final ConcurrentMap<FieldType, FieldValueOperatorInterface> largeListOprMap = 
+			new ConcurrentHashMap<FieldType, FieldValueOperatorInterface>(); 
+	
+	/**
+	 * Get the value operator for a field, which differs from the one for its 
+	 * type only when the field has the constraint of LARGE_LIST.  
+	 * 
+	 * @param field the field of interest
+	 * @return the value operator for the field
+	 */
+	public static final FieldValueOperatorInterface getOperator(Field field) {
+		FieldType type = field.getType();
+		if (field.hasLargeList() && type instanceof CollectionFieldType) {
+			FieldValueOperatorInterface opr = largeListOprMap.get(type);
+			if (opr == null) {
+				opr = publish(largeListOprMap, type, 
+						new CollectionValueOperator((CollectionFieldType) type, true));
+			}
+			return opr;
+		}
+		return getOperator(type);
+	}
 	
+	/**
+	 * Get the value operator for a type. 
+	 * 
+	 * <p>
+	 * When threads race to create the operator of a type, each may build one, 
+	 * but only the one published first is kept and returned to all. 
+	 * </p>
+	 * 
+	 * @param type the field type
+	 * @return the value operator for the type
+	 * @throws IllegalArgumentException if the type is not supported
+	 */
 	public static final FieldValueOperatorInterface getOperator(FieldType type) {
-		if (valueOprMap.containsKey(type)) {
-			return valueOprMap.get(type);
-		} else {
+		FieldValueOperatorInterface opr = valueOprMap.get(type);
+		if (opr == null) {
 			FieldValueOperatorInterface newOpr = null;
 			if (type instanceof PrimitiveFieldType) {
 				newOpr = new PrimitiveValueOperator((PrimitiveFieldType) type);
@@ -49,8 +92,15 @@ public class FieldValueOperatorFactory {
 			} else {
 				throw new IllegalArgumentException("Not a valid type - " + type);
 			}	
-			valueOprMap.put(type, newOpr);
-			return newOpr;
+			opr = publish(valueOprMap, type, newOpr);
 		}
+		return opr;
+	}
+	
+	private static FieldValueOperatorInterface publish(
+			ConcurrentMap<FieldType, FieldValueOperatorInterface> oprMap, 
+			FieldType type, FieldValueOperatorInterface newOpr) {
+		FieldValueOperatorInterface opr = oprMap.putIfAbsent(type, newOpr);
+		return opr == null ? newOpr : opr;
 	}
 }
@@ -19,6 +19,7 @@ import java.nio.ByteBuffer;
 
 import datamine.storage.idl.FieldValueOperatorInterface;
 import datamine.storage.idl.type.GroupFieldType;
+import datamine.storage.recordbuffers.BufferUtils;
 import datamine.storage.recordbuffers.Record;
 import datamine.storage.recordbuffers.RecordBuffer;
 import datamine.storage.recordbuffers.WritableRecord;
@@ -27,7 +28,7 @@ import datamine.storage.recordbuffers.WritableRecord;
  * @author yqi
  * @date Mar 26, 2015
  */
-class GroupValueOperator implements FieldValueOperatorInterface {
+class GroupValueOperator implements FieldValueOperatorInterface, ValueWriterInterface {
 
 	private final GroupFieldType type;
 	public GroupValueOperator(GroupFieldType type) {
@@ -57,14 +58,40 @@ class GroupValueOperator implements FieldValueOperatorInterface {
 	}
 
 	/**
-	 * A new record buffer is created to contain all values from the input byte array,
-	 * therefore the cost of memory allocation and value copying should be considered. 
+	 * A nested record with updates is serialized right into the output, while
+	 * the bytes of the others are copied as they are. 
+	 */
+	@SuppressWarnings("rawtypes")
+	@Override
+	public int write(Object value, ByteBuffer out, int index) {
+		if (value == null) {
+			return 0;
+		} else if (value instanceof WritableRecord) {
+			return ((WritableRecord) value).writeTo(out, index);
+		}
+		
+		RecordBuffer rb = ((Record) value).getRecordBuffer();
+		if (rb == null) {
+			return 0;
+		}
+		int length = rb.getRecordBufferSize();
+		if (index + length > out.limit()) {
+			throw new IndexOutOfBoundsException();
+		}
+		BufferUtils.copy(rb.getByteBuffer(), 0, out, index, length);
+		return length;
+	}
+
+	/**
+	 * The nested record is a read-only view over the input buffer, i.e., no byte 
+	 * is copied. It is valid as long as the bytes of the parent record do not 
+	 * change, and any update to it goes to a new copy (i.e., copy-on-write). 
 	 */
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
 	public Object getValue(ByteBuffer buffer, int index, int length) {
 		// note that the length must be positive
-		RecordBuffer rb = new RecordBuffer(buffer.array(), index, length);
+		RecordBuffer rb = RecordBuffer.createView(buffer, index, length);
 		if (type.getTableClass() == null) {
 			throw new IllegalArgumentException(type.getGroupName() + ": A valid group type should have its table class");
 		}
@@ -76,15 +103,20 @@ class GroupValueOperator implements FieldValueOperatorInterface {
 		return false;
 	}
 
+	/**
+	 * It is the exact number of bytes written by {@link #write(Object, ByteBuffer, int)}.
+	 */
+	@SuppressWarnings("rawtypes")
 	@Override
 	public int getNumOfBytes(Object val) {
 		if (val == null) {
 			return 0;
-		} else {
-			@SuppressWarnings("rawtypes")
-			Record record = (Record) val;
-			return record.getNumOfBytes();
+		} else if (val instanceof WritableRecord) {
+			return ((WritableRecord) val).getNumOfBytes();
 		}
+		
+		RecordBuffer rb = ((Record) val).getRecordBuffer();
+		return rb == null ? 0 : rb.getRecordBufferSize();
 	}
 
 	@Override
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers.idl.value;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The operation writing a value straight into the output buffer, e.g., a 
+ * nested record or list written in the buffer of its parent record, so that 
+ * no intermediate byte array is created at any level of nesting. 
+ * 
+ * <p>
+ * It applies to the values stored after an INT of the length, which the
+ * caller puts ahead once the value is written. 
+ * </p>
+ * 
+ * @author yqi
+ */
+public interface ValueWriterInterface {
+
+	/**
+	 * Write the value into the output at the absolute index
+	 * 
+	 * @param value the value
+	 * @param out the output buffer in BIG_ENDIAN
+	 * @param index the absolute position where the value starts
+	 * @return the number of bytes written, or 0 if the value is empty
+	 * @throws IndexOutOfBoundsException if the output has no enough space
+	 */
+	public int write(Object value, ByteBuffer out, int index);
+}
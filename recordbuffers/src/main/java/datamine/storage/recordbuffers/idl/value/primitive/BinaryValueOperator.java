@@ -17,6 +17,8 @@ package datamine.storage.recordbuffers.idl.value.primitive;
 
 import java.nio.ByteBuffer;
 
+import datamine.storage.recordbuffers.BufferUtils;
+
 final public class BinaryValueOperator extends AbstractPrimitiveValueOperator {
 
 	public BinaryValueOperator() {
@@ -50,9 +52,7 @@ final public class BinaryValueOperator extends AbstractPrimitiveValueOperator {
 	
 	public byte[] getBinary(ByteBuffer buf, int index, int length) {
 		if (index >= 0 && length >= 0) {
-			byte[] bVal = new byte[length];
-			System.arraycopy(buf.array(), index, bVal, 0, length);
-			return bVal;
+			return BufferUtils.getBytes(buf, index, length);
 		} else {
 			throw new IllegalArgumentException("The negative index/length : " 
 					+ index + "/" + length);
@@ -17,6 +17,11 @@ package datamine.storage.recordbuffers.idl.value.primitive;
 
 import java.nio.ByteBuffer;
 
+import datamine.storage.recordbuffers.Utf8Utils;
+
+/**
+ * The operator of strings, which are always stored in UTF-8, see {@link Utf8Utils}.
+ */
 final public class StringValueOperator extends AbstractPrimitiveValueOperator {
 
 	public StringValueOperator() {
@@ -39,8 +44,31 @@ final public class StringValueOperator extends AbstractPrimitiveValueOperator {
 		if (value == null) { // is it necessary?
 			return new byte[0];
 		} else {
-			return ((String) value).getBytes();
+			return Utf8Utils.encode((String) value);
+		}
+	}
+
+	/**
+	 * Write the string after a SHORT of its length, encoding it straight into 
+	 * the output. The length is counted ahead only when the string may exceed 
+	 * the limit, so a string is usually encoded in a single pass. 
+	 * 
+	 * @param value the string
+	 * @param out the output buffer
+	 * @param index the absolute position of the length
+	 * @return the number of bytes written including the length, or -1 if the
+	 * string takes more than {@link Short#MAX_VALUE} bytes and is not written
+	 * @throws IndexOutOfBoundsException if the output has no enough space
+	 */
+	public static int writeString(String value, ByteBuffer out, int index) {
+		// every UTF-16 char takes up to three bytes
+		if (value.length() > Short.MAX_VALUE / 3 && 
+				Utf8Utils.getEncodedLength(value) > Short.MAX_VALUE) {
+			return -1;
 		}
+		int length = Utf8Utils.encode(value, out, index + 2);
+		out.putShort(index, (short) length);
+		return 2 + length;
 	}
 
 	@Override
@@ -50,7 +78,7 @@ final public class StringValueOperator extends AbstractPrimitiveValueOperator {
 	
 	public String getString(ByteBuffer buffer, int index, int length) {
 		if (index >= 0 && length >= 0) {
-			return new String(buffer.array(), index, length);			
+			return Utf8Utils.decode(buffer, index, length);
 		} else {
 			throw new IllegalArgumentException("The negative index/length : " 
 					+ index + "/" + length);
@@ -64,7 +92,7 @@ final public class StringValueOperator extends AbstractPrimitiveValueOperator {
 	
 	@Override
 	public int getNumOfBytes(Object val) {
-		return getByteArray(val).length;
+		return val == null ? 0 : Utf8Utils.getEncodedLength((String) val);
 	}
 	
 	@Override
@@ -15,17 +15,30 @@
  */
 package datamine.storage.recordbuffers;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import com.google.common.primitives.UnsignedBytes;
 
+import datamine.storage.api.IntList;
+import datamine.storage.idl.Field;
+import datamine.storage.idl.type.CollectionFieldType;
+import datamine.storage.idl.type.FieldTypeFactory;
 import datamine.storage.idl.type.GroupFieldType;
+import datamine.storage.idl.type.PrimitiveType;
 import datamine.storage.recordbuffers.example.data.MainTableTestData;
 import datamine.storage.recordbuffers.example.derived.FirstLevelNestedTableDerived;
 import datamine.storage.recordbuffers.example.derived.MainTableDerived;
@@ -35,13 +48,16 @@ import datamine.storage.recordbuffers.example.interfaces.MainTableDerivedValueIn
 import datamine.storage.recordbuffers.example.interfaces.MainTableInterface;
 import datamine.storage.recordbuffers.example.interfaces.SecondLevelNestedTableInterface;
 import datamine.storage.recordbuffers.example.interfaces.StructTableInterface;
+import datamine.storage.recordbuffers.example.model.FirstLevelNestedTableMetadata;
 import datamine.storage.recordbuffers.example.model.MainTableMetadata;
+import datamine.storage.recordbuffers.example.model.SecondLevelNestedTableMetadata;
 import datamine.storage.recordbuffers.example.printers.MainTableInterfaceContentPrinter;
 import datamine.storage.recordbuffers.example.wrapper.FirstLevelNestedTableRecord;
 import datamine.storage.recordbuffers.example.wrapper.MainTableRecord;
 import datamine.storage.recordbuffers.example.wrapper.SecondLevelNestedTableRecord;
 import datamine.storage.recordbuffers.example.wrapper.StructTableRecord;
 import datamine.storage.recordbuffers.example.wrapper.builder.RecordBuffersBuilder;
+import datamine.storage.recordbuffers.idl.value.CollectionValueOperator;
 import datamine.storage.recordbuffers.idl.value.FieldValueOperatorFactory;
 
 public class ReadWriteTest {
@@ -113,6 +129,880 @@ public class ReadWriteTest {
 		Assert.assertEquals(record.getValue(MainTableMetadata.LONG_REQUIRED_COLUMN), 123L);	
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void resetReadOnlyRecord() {
+		// put all records into one array, one after another
+		int total = 0;
+		for (MainTableInterface cur : mainTableList) {
+			total += ((Record<MainTableMetadata>) cur.getBaseObject()).getRecordBuffer().getRecordBufferSize();
+		}
+		byte[] bytes = new byte[total + 1];
+		int[] offsets = new int[recordNum];
+		int offset = 1;
+		for (int i = 0; i < recordNum; ++i) {
+			RecordBuffer rb = ((Record<MainTableMetadata>) mainTableList.get(i).getBaseObject()).getRecordBuffer();
+			System.arraycopy(rb.getByteBuffer().array(), 0, bytes, offset, rb.getRecordBufferSize());
+			offsets[i] = offset;
+			offset += rb.getRecordBufferSize();
+		}
+
+		// one record is re-pointed at every window of the array
+		ReadOnlyRecord<MainTableMetadata> flyweight = new ReadOnlyRecord<MainTableMetadata>(MainTableMetadata.class);
+		for (int i = 0; i < recordNum; ++i) {
+			MainTableInterface expected = mainTableList.get(i);
+			int length = (i + 1 < recordNum ? offsets[i + 1] : bytes.length) - offsets[i];
+			flyweight.reset(bytes, offsets[i], length);
+			Assert.assertEquals(flyweight.getString(MainTableMetadata.STRING_COLUMN), expected.getStringColumn());
+			Assert.assertEquals(flyweight.getInt(MainTableMetadata.INT_SORTED_COLUMN), expected.getIntSortedColumn());
+			Assert.assertEquals(flyweight.getByte(MainTableMetadata.BYTE_COLUMN), expected.getByteColumn());
+			Assert.assertEquals(flyweight.getBinary(MainTableMetadata.BINARY_COLUMN), expected.getBinaryColumn());
+			Assert.assertEquals(flyweight.getListSize(MainTableMetadata.NESTED_TABLE_COLUMN), 
+					expected.getNestedTableColumnSize());
+			Assert.assertEquals(flyweight.getValue(MainTableMetadata.INT_LIST_COLUMN), expected.getIntListColumn());
+		}
+
+		// or at another instance of record buffer
+		for (int i = recordNum - 1; i >= 0; --i) {
+			MainTableInterface expected = mainTableList.get(i);
+			flyweight.reset(((Record<MainTableMetadata>) expected.getBaseObject()).getRecordBuffer());
+			Assert.assertEquals(flyweight.getDouble(MainTableMetadata.DOUBLE_COLUMN), expected.getDoubleColumn());
+			Assert.assertEquals(flyweight.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN), expected.getLongRequiredColumn());
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void nestedRecordView() {
+		RecordBuffer parent = mainTableRecord.getRecordBuffer();
+		byte[] parentBytes = BufferUtils.getBytes(parent.getByteBuffer(), 0, parent.getRecordBufferSize());
+		
+		List<Object> nestedList = (List<Object>) mainTableRecord.getValue(MainTableMetadata.NESTED_TABLE_COLUMN);
+		Record nested = (Record) nestedList.get(0);
+		RecordBuffer view = nested.getRecordBuffer();
+		Assert.assertTrue(view.isShared());
+		Assert.assertSame(view.getByteBuffer().array(), parent.getByteBuffer().array());
+		
+		// the update goes to a copy rather than the bytes of the parent
+		int oldValue = nested.getInt(FirstLevelNestedTableMetadata.INT_REQUIRED_COLUMN);
+		nested.setValue(FirstLevelNestedTableMetadata.INT_REQUIRED_COLUMN, oldValue + 1);
+		Assert.assertEquals(nested.getInt(FirstLevelNestedTableMetadata.INT_REQUIRED_COLUMN), oldValue + 1);
+		Assert.assertFalse(nested.getRecordBuffer().isShared());
+		Assert.assertEquals(BufferUtils.getBytes(parent.getByteBuffer(), 0, parent.getRecordBufferSize()), parentBytes);
+		Assert.assertEquals(((Record) ((List<Object>) mainTableRecord.getValue(MainTableMetadata.NESTED_TABLE_COLUMN))
+				.get(0)).getInt(FirstLevelNestedTableMetadata.INT_REQUIRED_COLUMN), oldValue);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void listElementAndCursor() {
+		for (Record record : recordList) {
+			for (MainTableMetadata col : new MainTableMetadata[] {
+					MainTableMetadata.NESTED_TABLE_COLUMN, MainTableMetadata.INT_LIST_COLUMN}) {
+				List<Object> list = (List<Object>) record.getValue(col);
+				ListCursor cursor = record.getListCursor(col);
+				Assert.assertEquals(cursor.size(), list.size());
+				for (int i = 0; i < list.size(); ++i) {
+					Object expected = list.get(i);
+					Object element = record.getListElement(col, i);
+					Object next = cursor.next();
+					if (expected instanceof Record) {
+						Assert.assertEquals(((Record) element).array(), ((Record) expected).array());
+						Assert.assertEquals(((Record) next).array(), ((Record) expected).array());
+					} else {
+						Assert.assertEquals(element, expected);
+						Assert.assertEquals(next, expected);
+					}
+				}
+				Assert.assertFalse(cursor.hasNext());
+			}
+		}
+		
+		// the list not serialized yet
+		WritableRecord<MainTableMetadata> record = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		record.setValue(MainTableMetadata.INT_LIST_COLUMN, Lists.newArrayList(3, 5, 7));
+		Assert.assertEquals(record.getListElement(MainTableMetadata.INT_LIST_COLUMN, 2), 7);
+		Assert.assertEquals(record.getListCursor(MainTableMetadata.INT_LIST_COLUMN).next(), 3);
+		Assert.assertFalse(record.getListCursor(MainTableMetadata.NESTED_TABLE_COLUMN).hasNext());
+	}
+	
+	@Test
+	public void largeListOffsetIndex() {
+		Field field = MainTableMetadata.NESTED_TABLE_COLUMN.getField();
+		CollectionValueOperator indexed = (CollectionValueOperator) FieldValueOperatorFactory.getOperator(field);
+		CollectionValueOperator walking = new CollectionValueOperator((CollectionFieldType) field.getType());
+		Assert.assertTrue(indexed.hasOffsetIndex());
+		
+		RecordBuffer rb = mainTableRecord.getRecordBuffer();
+		ByteBuffer buf = rb.getByteBuffer();
+		int offset = mainTableRecord.meta.getCollectionOffset(field, rb);
+		int length = buf.getInt(offset);
+		int size = indexed.getListSize(buf, offset + 4);
+		Assert.assertEquals(size, recordNum);
+		for (int i = 0; i < size; ++i) {
+			Assert.assertEquals(indexed.getElementOffset(buf, offset + 4, length, i), 
+					walking.getElementOffset(buf, offset + 4, length, i));
+		}
+		
+		// a reader unaware of the index reads the plain size, and skips the index by the length
+		Assert.assertEquals(buf.getInt(offset + 4), recordNum);
+		Assert.assertEquals(((List<?>) walking.getValue(buf, offset + 4, length)).size(), recordNum);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void largeListWithoutOffsetIndex() {
+		// the lists written before the constraint of LARGE_LIST is added
+		Field field = MainTableMetadata.NESTED_TABLE_COLUMN.getField();
+		CollectionValueOperator indexed = (CollectionValueOperator) FieldValueOperatorFactory.getOperator(field);
+		CollectionValueOperator plain = new CollectionValueOperator((CollectionFieldType) field.getType(), false);
+		List<Object> records = (List<Object>) mainTableRecord.getValue(MainTableMetadata.NESTED_TABLE_COLUMN);
+		byte[] bytes = plain.getByteArray(records);
+		ByteBuffer buf = ByteBuffer.wrap(bytes);
+		Assert.assertEquals(indexed.getListSize(buf, 0), records.size());
+		Assert.assertEquals(indexed.getElementsEnd(buf, 0, bytes.length), bytes.length);
+		Assert.assertEquals(indexed.getNumOfSpareBytes(buf, 0, bytes.length), -1);
+		for (int i = 0; i < records.size(); ++i) {
+			Record<?> element = (Record<?>) indexed.getElement(buf, indexed.getElementOffset(buf, 0, bytes.length, i));
+			Assert.assertEquals(element.array(), ((Record<?>) records.get(i)).array());
+		}
+		
+		// the last bytes look like an index of one entry (4) and the end of elements (8)
+		CollectionFieldType type = (CollectionFieldType) FieldTypeFactory.getListType(
+				FieldTypeFactory.getPrimitiveType(PrimitiveType.BINARY));
+		CollectionValueOperator binaries = new CollectionValueOperator(type, true);
+		List<Object> values = Arrays.<Object>asList(new byte[] {1, 2, 3}, new byte[] {0, 0, 0, 4, 0, 0, 0, 8});
+		for (CollectionValueOperator writer : Arrays.asList(new CollectionValueOperator(type, false), binaries)) {
+			bytes = writer.getByteArray(values);
+			buf = ByteBuffer.wrap(bytes);
+			Assert.assertEquals(binaries.getListSize(buf, 0), values.size());
+			// a reader unaware of the index reads the plain size and walks the elements
+			Assert.assertEquals(buf.getInt(0), values.size());
+			for (int i = 0, pos = 4; i < values.size(); ++i) {
+				int length = buf.getInt(pos);
+				Assert.assertEquals(BufferUtils.getBytes(buf, pos + 4, length), (byte[]) values.get(i));
+				pos += 4 + length;
+			}
+			List<Object> decoded = (List<Object>) binaries.getValue(buf, 0, bytes.length);
+			for (int i = 0; i < values.size(); ++i) {
+				Assert.assertEquals((byte[]) binaries.getElement(buf, 
+						binaries.getElementOffset(buf, 0, bytes.length, i)), (byte[]) values.get(i));
+				Assert.assertEquals((byte[]) decoded.get(i), (byte[]) values.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void exactListSize() {
+		char[] chars = new char[Short.MAX_VALUE];
+		Arrays.fill(chars, 'a');
+		CollectionValueOperator strings = new CollectionValueOperator(
+				(CollectionFieldType) FieldTypeFactory.getListType(FieldTypeFactory.getPrimitiveType(PrimitiveType.STRING)), true);
+		// null and super-long strings are written as empty ones
+		List<Object> stringList = Arrays.<Object>asList("abc", null, new String(chars), "\u00e9");
+		Assert.assertEquals(strings.getByteArray(stringList).length, strings.getNumOfBytes(stringList));
+		
+		CollectionValueOperator binaries = new CollectionValueOperator(
+				(CollectionFieldType) FieldTypeFactory.getListType(FieldTypeFactory.getPrimitiveType(PrimitiveType.BINARY)));
+		List<Object> binaryList = Arrays.<Object>asList(new byte[] {1, 2}, null, new byte[0]);
+		Assert.assertEquals(binaries.getByteArray(binaryList).length, binaries.getNumOfBytes(binaryList));
+		
+		// the nested records growing after being set
+		Field field = MainTableMetadata.NESTED_TABLE_COLUMN.getField();
+		CollectionValueOperator records = (CollectionValueOperator) FieldValueOperatorFactory.getOperator(field);
+		WritableRecord<FirstLevelNestedTableMetadata> nested = 
+				new WritableRecord<FirstLevelNestedTableMetadata>(FirstLevelNestedTableMetadata.class);
+		List<Object> recordList = Arrays.<Object>asList(nested, null, nested);
+		nested.setInt(FirstLevelNestedTableMetadata.INT_REQUIRED_COLUMN, 7);
+		Assert.assertEquals(records.getByteArray(recordList).length, records.getNumOfBytes(recordList));
+	}
+
+	@Test
+	public void primitiveListView() {
+		for (MainTableInterface cur : mainTableList) {
+			List<Integer> expected = cur.getIntListColumn();
+			IntList view = cur.getIntListColumnView();
+			Assert.assertEquals(view.size(), expected.size());
+			for (int i = 0; i < view.size(); ++i) {
+				Assert.assertEquals(view.get(i), expected.get(i).intValue());
+			}
+			
+			int[] copy = new int[view.size() + 1];
+			view.copyTo(0, copy, 1, view.size());
+			Assert.assertEquals(Arrays.copyOfRange(copy, 1, copy.length), view.toArray());
+			
+			for (FirstLevelNestedTableInterface nested : cur.getNestedTableColumn()) {
+				for (SecondLevelNestedTableInterface second : nested.getNestedTableColumn()) {
+					boolean[] flags = second.getBooleanListColumnView().toArray();
+					Assert.assertEquals(flags.length, second.getBooleanListColumn().size());
+					for (int i = 0; i < flags.length; ++i) {
+						Assert.assertEquals(flags[i], second.getBooleanListColumn().get(i).booleanValue());
+					}
+				}
+			}
+		}
+		
+		// the list not serialized yet, and the one not set
+		WritableRecord<MainTableMetadata> record = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		Assert.assertEquals(record.getIntList(MainTableMetadata.INT_LIST_COLUMN).size(), 0);
+		record.setValue(MainTableMetadata.INT_LIST_COLUMN, Lists.newArrayList(3, 5, 7));
+		Assert.assertEquals(record.getIntList(MainTableMetadata.INT_LIST_COLUMN).toArray(), new int[] {3, 5, 7});
+	}
+
+	@Test
+	public void lazyOffsetResolution() {
+		WritableRecord<MainTableMetadata> record = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		record.setValue(MainTableMetadata.LONG_REQUIRED_COLUMN, 1L);
+		record.setValue(MainTableMetadata.DOUBLE_COLUMN, 2.5);
+		record.setValue(MainTableMetadata.STRING_COLUMN, "abc");
+		record.setValue(MainTableMetadata.BINARY_COLUMN, new byte[] {9, 9, 9, 9, 9, 9, 9, 9});
+		record.setValue(MainTableMetadata.STRUCT_COLUMN, mainTableRecord.getValue(MainTableMetadata.STRUCT_COLUMN));
+		byte[] bytes = record.array().clone();
+		
+		// break the length of the binary value, so that no field behind can be located 
+		int pos = 0;
+		while (!(bytes[pos] == 9 && bytes[pos + 7] == 9)) {
+			++pos;
+		}
+		ByteBuffer.wrap(bytes).putInt(pos - 4, Integer.MAX_VALUE - 16);
+		
+		// the fields in front are still readable
+		ReadOnlyRecord<MainTableMetadata> readOnly = new ReadOnlyRecord<MainTableMetadata>(
+				MainTableMetadata.class, new RecordBuffer(bytes, 0, bytes.length));
+		Assert.assertEquals(readOnly.getString(MainTableMetadata.STRING_COLUMN), "abc");
+		Assert.assertEquals(readOnly.getDouble(MainTableMetadata.DOUBLE_COLUMN), 2.5);
+		Assert.assertEquals(readOnly.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN), 1L);
+		try {
+			readOnly.getValue(MainTableMetadata.STRUCT_COLUMN);
+			Assert.fail("The struct column cannot be located");
+		} catch (IndexOutOfBoundsException e) {
+			// expected 
+		}
+	}
+
+	@Test
+	public void sharedRecordSnapshot() throws Exception {
+		final RecordSnapshot<MainTableMetadata> snapshot = new RecordSnapshot<MainTableMetadata>(
+				MainTableMetadata.class, mainTableRecord.getRecordBuffer());
+		final long longValue = mainTableRecord.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN);
+		final String stringValue = mainTableRecord.getString(MainTableMetadata.STRING_COLUMN);
+		final byte[] binaryValue = mainTableRecord.getBinary(MainTableMetadata.BINARY_COLUMN);
+		final int listSize = mainTableRecord.getListSize(MainTableMetadata.NESTED_TABLE_COLUMN);
+		final byte[] structBytes = ((Record<?>) mainTableRecord.getValue(MainTableMetadata.STRUCT_COLUMN)).array();
+		Assert.assertEquals(snapshot.getNumOfBytes(), mainTableRecord.getRecordBuffer().getRecordBufferSize());
+		
+		// all threads read the same instance without any lock
+		final AtomicInteger numOfMismatches = new AtomicInteger();
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; ++t) {
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 1000; ++i) {
+						ListCursor cursor = snapshot.getListCursor(MainTableMetadata.NESTED_TABLE_COLUMN);
+						int numOfElements = 0;
+						while (cursor.hasNext()) {
+							cursor.next();
+							++numOfElements;
+						}
+						if (snapshot.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN) != longValue ||
+								!stringValue.equals(snapshot.getString(MainTableMetadata.STRING_COLUMN)) ||
+								!Arrays.equals(snapshot.getBinary(MainTableMetadata.BINARY_COLUMN), binaryValue) ||
+								snapshot.getListSize(MainTableMetadata.NESTED_TABLE_COLUMN) != listSize ||
+								numOfElements != listSize ||
+								!Arrays.equals(((Record<?>) snapshot.getValue(MainTableMetadata.STRUCT_COLUMN)).array(), structBytes)) {
+							numOfMismatches.incrementAndGet();
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(numOfMismatches.get(), 0);
+		
+		try {
+			snapshot.reset(mainTableRecord.getRecordBuffer());
+			Assert.fail("The snapshot cannot be re-pointed");
+		} catch (IllegalAccessError e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void mixedVersionRecords() {
+		// a record of an older version with the first 9 fields only, i.e., no 
+		// collection-type field, where the long, int and string fields are present
+		ByteBuffer old = ByteBuffer.allocate(37);
+		old.putShort(0, (short) 0);			// version
+		old.putShort(2, (short) 9);			// # of attributes
+		old.putShort(4, (short) 12);		// reference section
+		old.putInt(6, 28);					// sort key
+		old.put(10, (byte) 0);				// # of collections
+		old.put(11, (byte) 1);				// # of fields with reference
+		old.putShort(12, (short) 1);
+		old.putInt(14, 20);
+		old.put(18, (byte) 0x3E);			// null flags
+		old.put(19, (byte) 0x80);
+		old.putLong(20, 7L);
+		old.putInt(28, 5);
+		old.putShort(32, (short) 3);
+		old.put(34, (byte) 'o').put(35, (byte) 'l').put(36, (byte) 'd');
+		
+		ReadOnlyRecord<MainTableMetadata> record = new ReadOnlyRecord<MainTableMetadata>(
+				MainTableMetadata.class, new RecordBuffer(old.array(), 0, old.capacity()));
+		Assert.assertEquals(record.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN), 7L);
+		Assert.assertEquals(record.getInt(MainTableMetadata.INT_SORTED_COLUMN), 5);
+		Assert.assertEquals(record.getString(MainTableMetadata.STRING_COLUMN), "old");
+		Assert.assertEquals(record.getDouble(MainTableMetadata.DOUBLE_COLUMN), 0.001);
+		// the fields not in the older version
+		Assert.assertEquals(record.getListSize(MainTableMetadata.NESTED_TABLE_COLUMN), 0);
+		Assert.assertEquals(record.getIntList(MainTableMetadata.INT_LIST_COLUMN).size(), 0);
+		Assert.assertNull(record.getValue(MainTableMetadata.STRUCT_COLUMN));
+		Assert.assertEquals(record.getNumOfBytes(), old.capacity());
+		
+		// the layout is kept for all records of the version
+		RecordBufferMeta<MainTableMetadata> meta = RecordBufferMeta.getRecordOperator(MainTableMetadata.class);
+		Assert.assertSame(meta.getVersionLayout(old), meta.getVersionLayout(ByteBuffer.wrap(old.array().clone())));
+		Assert.assertEquals(meta.getVersionLayout(old).getNumOfAttributes(), 9);
+		
+		// re-point the record at one of the current version 
+		record.reset(mainTableRecord.getRecordBuffer());
+		Assert.assertEquals(record.getListSize(MainTableMetadata.NESTED_TABLE_COLUMN), recordNum);
+		Assert.assertEquals(record.getString(MainTableMetadata.STRING_COLUMN), 
+				mainTableRecord.getString(MainTableMetadata.STRING_COLUMN));
+	}
+
+	@Test
+	public void fixedPrefixOffsets() {
+		WritableRecord<MainTableMetadata> record = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		record.setValue(MainTableMetadata.LONG_REQUIRED_COLUMN, 1L);
+		record.setValue(MainTableMetadata.SHORT_COLUMN, (short) 3);
+		record.setValue(MainTableMetadata.DOUBLE_COLUMN, 2.5);
+		record.setValue(MainTableMetadata.STRING_COLUMN, "abc");
+		
+		// read the fields in the reverse order, so that no one is located by walking
+		ReadOnlyRecord<MainTableMetadata> readOnly = new ReadOnlyRecord<MainTableMetadata>(
+				MainTableMetadata.class, record.getRecordBuffer());
+		Assert.assertEquals(readOnly.getDouble(MainTableMetadata.DOUBLE_COLUMN), 2.5);
+		Assert.assertEquals(readOnly.getFloat(MainTableMetadata.FLOAT_COLUMN), 0.0f);
+		Assert.assertEquals(readOnly.getShort(MainTableMetadata.SHORT_COLUMN), 3);
+		Assert.assertEquals(readOnly.getBool(MainTableMetadata.BOOLEAN_COLUMN), false);
+		Assert.assertEquals(readOnly.getByte(MainTableMetadata.BYTE_COLUMN), -1);
+		Assert.assertNull(readOnly.getValue(MainTableMetadata.INT_SORTED_COLUMN));
+		Assert.assertEquals(readOnly.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN), 1L);
+		Assert.assertEquals(readOnly.getString(MainTableMetadata.STRING_COLUMN), "abc");
+	}
+
+	@Test
+	public void stringOnBytes() {
+		String[] values = {"US", "USA", "caf\u00e9", "\u4e2d\u6587", "a\ud83d\ude00b", "\uffff"};
+		for (String value : values) {
+			WritableRecord<MainTableMetadata> record = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+			record.setValue(MainTableMetadata.STRING_COLUMN, value);
+			byte[] bytes = record.array();
+			ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+			direct.put(bytes);
+			RecordBuffer rb = new RecordBuffer();
+			rb.wrap(direct, 0, bytes.length);
+			ReadOnlyRecord<MainTableMetadata> readOnly = new ReadOnlyRecord<MainTableMetadata>(
+					MainTableMetadata.class, rb);
+			
+			Assert.assertEquals(readOnly.getString(MainTableMetadata.STRING_COLUMN), value);
+			Assert.assertEquals(readOnly.getStringHashCode(MainTableMetadata.STRING_COLUMN), value.hashCode());
+			for (String query : values) {
+				byte[] valueBytes = value.getBytes(Charsets.UTF_8);
+				byte[] queryBytes = query.getBytes(Charsets.UTF_8);
+				int expected = UnsignedBytes.lexicographicalComparator().compare(valueBytes, queryBytes);
+				Assert.assertEquals(Integer.signum(readOnly.compareString(MainTableMetadata.STRING_COLUMN, query)), 
+						Integer.signum(expected), value + " vs. " + query);
+				Assert.assertEquals(readOnly.isStringEqual(MainTableMetadata.STRING_COLUMN, query), value.equals(query));
+				Assert.assertEquals(readOnly.isStringPrefixedBy(MainTableMetadata.STRING_COLUMN, query), value.startsWith(query));
+				Assert.assertEquals(Integer.signum(record.compareString(MainTableMetadata.STRING_COLUMN, query)), 
+						Integer.signum(expected));
+			}
+		}
+		
+		// the default value is used when absent
+		WritableRecord<MainTableMetadata> record = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		Assert.assertTrue(record.isStringEqual(MainTableMetadata.STRING_COLUMN, "Unknown"));
+		Assert.assertTrue(record.isStringPrefixedBy(MainTableMetadata.STRING_COLUMN, "Unk"));
+	}
+
+	@Test
+	public void encodeStringInPlace() {
+		String[] values = {"", "USA", "caf\u00e9", "\u4e2d\u6587", "a\ud83d\ude00b", "x\ud800y", "\udc00"};
+		for (String value : values) {
+			byte[] expected = value.getBytes(Charsets.UTF_8);
+			for (ByteBuffer out : new ByteBuffer[] {ByteBuffer.allocate(32), ByteBuffer.allocateDirect(32)}) {
+				Assert.assertEquals(Utf8Utils.encode(value, out, 3), expected.length, value);
+				Assert.assertEquals(BufferUtils.getBytes(out, 3, expected.length), expected, value);
+				Assert.assertEquals(Utf8Utils.getEncodedLength(value), expected.length);
+			}
+		}
+		
+		// never beyond the limit, even with the array accessible
+		ByteBuffer out = ByteBuffer.allocate(32);
+		out.limit(4);
+		try {
+			Utf8Utils.encode("caf\u00e9", out, 0);
+			Assert.fail("The output is too small");
+		} catch (IndexOutOfBoundsException e) {
+			Assert.assertEquals(out.array()[4], 0);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void columnarBatchBuilder() {
+		int n = recordList.size();
+		long[] longs = new long[n];
+		int[] ints = new int[n];
+		byte[] bytes = new byte[n];
+		boolean[] bools = new boolean[n];
+		short[] shorts = new short[n];
+		float[] floats = new float[n];
+		List<Object> doubles = Lists.newArrayList();
+		List<Object> strings = Lists.newArrayList();
+		List<Object> nestedTables = Lists.newArrayList();
+		List<Object> structs = Lists.newArrayList();
+		List<Object> intLists = Lists.newArrayList();
+		for (int i = 0; i < n; ++i) {
+			Record<MainTableMetadata> record = recordList.get(i);
+			longs[i] = record.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN);
+			ints[i] = record.getInt(MainTableMetadata.INT_SORTED_COLUMN);
+			bytes[i] = record.getByte(MainTableMetadata.BYTE_COLUMN);
+			bools[i] = record.getBool(MainTableMetadata.BOOLEAN_COLUMN);
+			shorts[i] = record.getShort(MainTableMetadata.SHORT_COLUMN);
+			floats[i] = record.getFloat(MainTableMetadata.FLOAT_COLUMN);
+			doubles.add(i == 0 ? null : record.getValue(MainTableMetadata.DOUBLE_COLUMN));
+			strings.add(i == 1 ? "" : record.getValue(MainTableMetadata.STRING_COLUMN));
+			nestedTables.add(record.getValue(MainTableMetadata.NESTED_TABLE_COLUMN));
+			structs.add(i == 2 ? null : record.getValue(MainTableMetadata.STRUCT_COLUMN));
+			intLists.add(record.getValue(MainTableMetadata.INT_LIST_COLUMN));
+		}
+		bytes[0] = -1; // the default value
+
+		RecordBatchBuilder<MainTableMetadata> builder =
+				new RecordBatchBuilder<MainTableMetadata>(MainTableMetadata.class, n);
+		builder.setLongs(MainTableMetadata.LONG_REQUIRED_COLUMN, longs);
+		builder.setInts(MainTableMetadata.INT_SORTED_COLUMN, ints);
+		builder.setBytes(MainTableMetadata.BYTE_COLUMN, bytes);
+		builder.setBools(MainTableMetadata.BOOLEAN_COLUMN, bools);
+		builder.setShorts(MainTableMetadata.SHORT_COLUMN, shorts);
+		builder.setFloats(MainTableMetadata.FLOAT_COLUMN, floats);
+		builder.setValues(MainTableMetadata.DOUBLE_COLUMN, doubles);
+		builder.setValues(MainTableMetadata.STRING_COLUMN, strings);
+		builder.setValues(MainTableMetadata.NESTED_TABLE_COLUMN, nestedTables);
+		builder.setValues(MainTableMetadata.STRUCT_COLUMN, structs);
+		builder.setValues(MainTableMetadata.INT_LIST_COLUMN, intLists);
+		// the binary column is not set, i.e., absent in all records
+
+		int[] offsets = new int[n + 1];
+		ByteBuffer batch = builder.build(offsets);
+		List<RecordBuffer> buffers = builder.build();
+		Assert.assertEquals(buffers.size(), n);
+		Assert.assertEquals(offsets[0], 0);
+		Assert.assertEquals(batch.capacity(), offsets[n]); // allocated with the exact size
+		for (int i = 0; i < n; ++i) {
+			WritableRecord<MainTableMetadata> expected = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+			expected.setLong(MainTableMetadata.LONG_REQUIRED_COLUMN, longs[i]);
+			expected.setInt(MainTableMetadata.INT_SORTED_COLUMN, ints[i]);
+			expected.setByte(MainTableMetadata.BYTE_COLUMN, bytes[i]);
+			expected.setBool(MainTableMetadata.BOOLEAN_COLUMN, bools[i]);
+			expected.setShort(MainTableMetadata.SHORT_COLUMN, shorts[i]);
+			expected.setFloat(MainTableMetadata.FLOAT_COLUMN, floats[i]);
+			expected.setValue(MainTableMetadata.DOUBLE_COLUMN, doubles.get(i));
+			expected.setValue(MainTableMetadata.STRING_COLUMN, strings.get(i));
+			expected.setValue(MainTableMetadata.NESTED_TABLE_COLUMN, nestedTables.get(i));
+			expected.setValue(MainTableMetadata.STRUCT_COLUMN, structs.get(i));
+			expected.setValue(MainTableMetadata.INT_LIST_COLUMN, intLists.get(i));
+			byte[] expectedBytes = expected.array();
+
+			Assert.assertEquals(BufferUtils.getBytes(batch, offsets[i], offsets[i + 1] - offsets[i]), expectedBytes);
+			RecordBuffer buffer = buffers.get(i);
+			Assert.assertTrue(buffer.isShared());
+			Assert.assertEquals(BufferUtils.getBytes(buffer.getByteBuffer(), 0, buffer.getRecordBufferSize()),
+					expectedBytes);
+		}
+
+		ReadOnlyRecord<MainTableMetadata> first = new ReadOnlyRecord<MainTableMetadata>(
+				MainTableMetadata.class, buffers.get(0));
+		Assert.assertEquals(first.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN), longs[0]);
+		Assert.assertEquals(first.getValue(MainTableMetadata.DOUBLE_COLUMN), 0.001);
+		Assert.assertEquals(((List<Object>) first.getValue(MainTableMetadata.NESTED_TABLE_COLUMN)).size(),
+				((List<Object>) nestedTables.get(0)).size());
+
+		try {
+			builder.setInts(MainTableMetadata.LONG_REQUIRED_COLUMN, ints);
+			Assert.fail("The type does not match");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void mergeRecords() {
+		Record<MainTableMetadata> stored = recordList.get(0);
+		Record<MainTableMetadata> other = recordList.get(1);
+
+		// the update comes with some fields only
+		WritableRecord<MainTableMetadata> update = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		update.setLong(MainTableMetadata.LONG_REQUIRED_COLUMN, 12345L);
+		update.setShort(MainTableMetadata.SHORT_COLUMN, (short) 7);
+		update.setFloat(MainTableMetadata.FLOAT_COLUMN, -1.5f);
+		update.setValue(MainTableMetadata.NESTED_TABLE_COLUMN, other.getValue(MainTableMetadata.NESTED_TABLE_COLUMN));
+		List<Integer> newInts = Lists.newArrayList((List<Integer>) stored.getValue(MainTableMetadata.INT_LIST_COLUMN));
+		newInts.add(-1);
+		Collections.reverse(newInts);
+		update.setValue(MainTableMetadata.INT_LIST_COLUMN, newInts);
+		update.setValue(MainTableMetadata.STRING_COLUMN, "update");
+
+		RecordMergeOperator<MainTableMetadata> merger = new RecordMergeOperator<MainTableMetadata>(MainTableMetadata.class);
+		merger.setPolicy(MainTableMetadata.SHORT_COLUMN, MergePolicy.SUM);
+		merger.setPolicy(MainTableMetadata.FLOAT_COLUMN, MergePolicy.MIN);
+		merger.setPolicy(MainTableMetadata.NESTED_TABLE_COLUMN, MergePolicy.LIST_APPEND);
+		merger.setPolicy(MainTableMetadata.INT_LIST_COLUMN, MergePolicy.LIST_UNION);
+		merger.setPolicy(MainTableMetadata.STRING_COLUMN, MergePolicy.KEEP);
+		RecordBuffer merged = merger.apply(stored.getRecordBuffer(), update.getRecordBuffer());
+
+		// the same bytes as the ones of the merged values
+		WritableRecord<MainTableMetadata> expected = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		for (MainTableMetadata col : MainTableMetadata.values()) {
+			if (col.getField().getId() > 0) {
+				expected.setValue(col, stored.getValue(col));
+			}
+		}
+		expected.setLong(MainTableMetadata.LONG_REQUIRED_COLUMN, 12345L);
+		expected.setShort(MainTableMetadata.SHORT_COLUMN,
+				(short) (stored.getShort(MainTableMetadata.SHORT_COLUMN) + 7));
+		expected.setFloat(MainTableMetadata.FLOAT_COLUMN,
+				Math.min(stored.getFloat(MainTableMetadata.FLOAT_COLUMN), -1.5f));
+		List<Object> nested = Lists.newArrayList((List<Object>) stored.getValue(MainTableMetadata.NESTED_TABLE_COLUMN));
+		nested.addAll((List<Object>) other.getValue(MainTableMetadata.NESTED_TABLE_COLUMN));
+		expected.setValue(MainTableMetadata.NESTED_TABLE_COLUMN, nested);
+		List<Integer> ints = Lists.newArrayList(new LinkedHashSet<Integer>(
+				(List<Integer>) stored.getValue(MainTableMetadata.INT_LIST_COLUMN)));
+		ints.add(-1);
+		expected.setValue(MainTableMetadata.INT_LIST_COLUMN, ints);
+		Assert.assertEquals(merged.getByteBuffer(), expected.getRecordBuffer().getByteBuffer());
+
+		ReadOnlyRecord<MainTableMetadata> readOnly = new ReadOnlyRecord<MainTableMetadata>(MainTableMetadata.class, merged);
+		Assert.assertEquals(readOnly.getListSize(MainTableMetadata.NESTED_TABLE_COLUMN), nested.size());
+		Assert.assertEquals(readOnly.getValue(MainTableMetadata.INT_LIST_COLUMN), ints);
+		Assert.assertEquals(readOnly.getValue(MainTableMetadata.STRING_COLUMN),
+				stored.getValue(MainTableMetadata.STRING_COLUMN));
+
+		// the policy must apply to the type
+		try {
+			merger.setPolicy(MainTableMetadata.STRING_COLUMN, MergePolicy.SUM);
+			Assert.fail("Not a numeric field");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void appendElementToList() {
+		Record<MainTableMetadata> source = recordList.get(0);
+		List<Object> nested = Lists.newArrayList((List<Object>) source.getValue(MainTableMetadata.NESTED_TABLE_COLUMN));
+		List<Object> ints = Lists.newArrayList((List<Object>) source.getValue(MainTableMetadata.INT_LIST_COLUMN));
+		Object element = recordList.get(1).getValue(MainTableMetadata.NESTED_TABLE_COLUMN);
+		Object struct = source.getValue(MainTableMetadata.STRUCT_COLUMN);
+
+		WritableRecord<MainTableMetadata> record = new WritableRecord<MainTableMetadata>(
+				MainTableMetadata.class, source.getRecordBuffer());
+		// the first append grows the list with spare bytes for the next ones
+		record.appendElement(MainTableMetadata.NESTED_TABLE_COLUMN, ((List<Object>) element).get(0), 1024);
+		nested.add(((List<Object>) element).get(0));
+		RecordBuffer grown = record.getRecordBuffer();
+		Assert.assertNotSame(grown, source.getRecordBuffer());
+		for (int i = 1; i < 3; ++i) {
+			record.appendElement(MainTableMetadata.NESTED_TABLE_COLUMN, ((List<Object>) element).get(i));
+			nested.add(((List<Object>) element).get(i));
+			Assert.assertSame(record.getRecordBuffer(), grown);
+		}
+		record.appendElement(MainTableMetadata.INT_LIST_COLUMN, 42);
+		ints.add(42);
+
+		ReadOnlyRecord<MainTableMetadata> readOnly = new ReadOnlyRecord<MainTableMetadata>(
+				MainTableMetadata.class, record.getRecordBuffer());
+		Assert.assertEquals(readOnly.getListSize(MainTableMetadata.NESTED_TABLE_COLUMN), nested.size());
+		Assert.assertEquals(readOnly.getValue(MainTableMetadata.INT_LIST_COLUMN), ints);
+		Assert.assertEquals(((Record<?>) readOnly.getValue(MainTableMetadata.STRUCT_COLUMN)).array(),
+				((Record<?>) struct).array());
+		for (int i = 0; i < nested.size(); ++i) {
+			Assert.assertEquals(((Record<?>) readOnly.getListElement(MainTableMetadata.NESTED_TABLE_COLUMN, i)).array(),
+					((Record<?>) nested.get(i)).array());
+		}
+		// a reader unaware of the index reads the plain size, and the elements appended
+		Field field = MainTableMetadata.NESTED_TABLE_COLUMN.getField();
+		CollectionValueOperator walking = new CollectionValueOperator((CollectionFieldType) field.getType());
+		ByteBuffer appended = readOnly.getRecordBuffer().getByteBuffer();
+		int listOffset = readOnly.meta.getCollectionOffset(field, readOnly.getRecordBuffer());
+		Assert.assertEquals(appended.getInt(listOffset + 4), nested.size());
+		List<?> walked = (List<?>) walking.getValue(appended, listOffset + 4, appended.getInt(listOffset));
+		Assert.assertEquals(((Record<?>) walked.get(nested.size() - 1)).array(),
+				((Record<?>) nested.get(nested.size() - 1)).array());
+
+		// a list without the index, e.g., written before the constraint is added, 
+		// is rewritten as a whole, after which it has the index
+		byte[] bytes = source.array();
+		ByteBuffer buf = ByteBuffer.wrap(bytes);
+		int offset = source.meta.getCollectionOffset(MainTableMetadata.NESTED_TABLE_COLUMN.getField(), 
+				source.getRecordBuffer());
+		buf.putInt(offset + buf.getInt(offset), 0); // the marker of the index
+		WritableRecord<MainTableMetadata> unmarked = new WritableRecord<MainTableMetadata>(
+				MainTableMetadata.class, new RecordBuffer(bytes, 0, bytes.length));
+		unmarked.appendElement(MainTableMetadata.NESTED_TABLE_COLUMN, ((List<Object>) element).get(0), 1024);
+		List<Object> expected = Lists.newArrayList((List<Object>) source.getValue(MainTableMetadata.NESTED_TABLE_COLUMN));
+		expected.add(((List<Object>) element).get(0));
+		Assert.assertEquals(unmarked.getListSize(MainTableMetadata.NESTED_TABLE_COLUMN), expected.size());
+		RecordBuffer rewritten = unmarked.getRecordBuffer();
+		Assert.assertEquals(rewritten.getByteBuffer().getInt(
+				source.meta.getCollectionOffset(field, rewritten) + 4), expected.size());
+		for (int i = 0; i < expected.size(); ++i) {
+			Assert.assertEquals(((Record<?>) unmarked.getListElement(MainTableMetadata.NESTED_TABLE_COLUMN, i)).array(),
+					((Record<?>) expected.get(i)).array());
+		}
+
+		// a list absent or not serialized yet is decoded and set again
+		WritableRecord<MainTableMetadata> fresh = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		fresh.appendElement(MainTableMetadata.INT_LIST_COLUMN, 1);
+		fresh.appendElement(MainTableMetadata.INT_LIST_COLUMN, 2);
+		Assert.assertEquals(fresh.getValue(MainTableMetadata.INT_LIST_COLUMN), Arrays.asList(1, 2));
+	}
+
+	@Test
+	public void binaryWithoutCopy() throws IOException {
+		byte[] value = {1, 2, 3, 4, 5};
+		WritableRecord<MainTableMetadata> record = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		record.setValue(MainTableMetadata.BINARY_COLUMN, value);
+		Assert.assertEquals(record.getBinaryLength(MainTableMetadata.BINARY_COLUMN), value.length);
+		
+		ReadOnlyRecord<MainTableMetadata> readOnly = new ReadOnlyRecord<MainTableMetadata>(
+				MainTableMetadata.class, record.getRecordBuffer());
+		Assert.assertEquals(readOnly.getBinaryLength(MainTableMetadata.BINARY_COLUMN), value.length);
+		
+		ByteBuffer view = readOnly.getBinaryBuffer(MainTableMetadata.BINARY_COLUMN);
+		Assert.assertTrue(view.isReadOnly());
+		Assert.assertEquals(view, ByteBuffer.wrap(value));
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Assert.assertEquals(readOnly.writeBinary(MainTableMetadata.BINARY_COLUMN, out), value.length);
+		Assert.assertEquals(out.toByteArray(), value);
+		
+		ByteBuffer dst = ByteBuffer.allocateDirect(value.length + 1);
+		dst.put((byte) 0);
+		Assert.assertEquals(readOnly.writeBinary(MainTableMetadata.BINARY_COLUMN, dst), value.length);
+		Assert.assertEquals(dst.position(), value.length + 1);
+		dst.position(1);
+		Assert.assertEquals(dst, ByteBuffer.wrap(value));
+		
+		// no value
+		record = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		Assert.assertNull(record.getBinaryBuffer(MainTableMetadata.BINARY_COLUMN));
+		Assert.assertEquals(record.getBinaryLength(MainTableMetadata.BINARY_COLUMN), 0);
+		Assert.assertEquals(record.writeBinary(MainTableMetadata.BINARY_COLUMN, new ByteArrayOutputStream()), 0);
+	}
+
+	@Test
+	public void updateFixedValueInPlace() {
+		byte[] bytes = mainTableRecord.array().clone();
+		RecordBuffer rb = new RecordBuffer();
+		rb.wrap(bytes, 0, bytes.length);
+		WritableRecord<MainTableMetadata> record = new WritableRecord<MainTableMetadata>(MainTableMetadata.class, rb);
+		long value = mainTableRecord.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN) + 1;
+		record.setValue(MainTableMetadata.LONG_REQUIRED_COLUMN, value);
+		record.setValue(MainTableMetadata.DOUBLE_COLUMN, 123.5);
+		
+		// the bytes are patched without another record buffer
+		Assert.assertSame(record.getRecordBuffer(), rb);
+		ReadOnlyRecord<MainTableMetadata> readOnly = new ReadOnlyRecord<MainTableMetadata>(
+				MainTableMetadata.class, new RecordBuffer(bytes, 0, bytes.length));
+		Assert.assertEquals(readOnly.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN), value);
+		Assert.assertEquals(readOnly.getDouble(MainTableMetadata.DOUBLE_COLUMN), 123.5);
+		Assert.assertEquals(readOnly.getString(MainTableMetadata.STRING_COLUMN), 
+				mainTableRecord.getString(MainTableMetadata.STRING_COLUMN));
+		
+		// a default value flips the null flag, so the record is serialized again
+		record.setValue(MainTableMetadata.DOUBLE_COLUMN, 
+				MainTableMetadata.DOUBLE_COLUMN.getField().getDefaultValue());
+		Assert.assertNotSame(record.getRecordBuffer(), rb);
+		Assert.assertEquals(record.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN), value);
+		Assert.assertEquals(record.getRecordBuffer().getRecordBufferSize(), bytes.length - 8);
+		
+		// the shared bytes are copied on write
+		RecordBuffer view = RecordBuffer.createView(ByteBuffer.wrap(bytes), 0, bytes.length);
+		record = new WritableRecord<MainTableMetadata>(MainTableMetadata.class, view);
+		record.setValue(MainTableMetadata.LONG_REQUIRED_COLUMN, value + 1);
+		Assert.assertEquals(record.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN), value + 1);
+		readOnly.reset(bytes, 0, bytes.length);
+		Assert.assertEquals(readOnly.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN), value);
+	}
+
+	@Test
+	public void updateVariableValueBySplicing() {
+		List<?> nestedList = (List<?>) mainTableRecord.getValue(MainTableMetadata.NESTED_TABLE_COLUMN);
+		WritableRecord<FirstLevelNestedTableMetadata> nested = 
+				new WritableRecord<FirstLevelNestedTableMetadata>(FirstLevelNestedTableMetadata.class);
+		nested.setInt(FirstLevelNestedTableMetadata.INT_REQUIRED_COLUMN, 7);
+		char[] chars = new char[Short.MAX_VALUE];
+		Arrays.fill(chars, 'a');
+		Object[][] updates = {
+			{MainTableMetadata.STRING_COLUMN, "a much longer string than before"},
+			{MainTableMetadata.STRING_COLUMN, "s"},
+			{MainTableMetadata.STRING_COLUMN, new String(chars)}, // written as an empty one
+			{MainTableMetadata.BINARY_COLUMN, new byte[] {7, 7, 7}},
+			{MainTableMetadata.INT_LIST_COLUMN, Arrays.asList(1, 2, 3, 4, 5, 6, 7)},
+			{MainTableMetadata.NESTED_TABLE_COLUMN, nestedList.subList(0, 1)},
+			{MainTableMetadata.NESTED_TABLE_COLUMN, Arrays.asList(nested, nested)}, // with pending updates
+		};
+		byte[] bytes = mainTableRecord.array();
+		for (Object[] update : updates) {
+			MainTableMetadata col = (MainTableMetadata) update[0];
+			Assert.assertTrue(mainTableRecord.getValue(col) != col.getField().getDefaultValue());
+			
+			WritableRecord<MainTableMetadata> spliced = new WritableRecord<MainTableMetadata>(
+					MainTableMetadata.class, new RecordBuffer(bytes, 0, bytes.length));
+			spliced.setValue(col, update[1]);
+			
+			// the same bytes as the record written from scratch
+			WritableRecord<MainTableMetadata> expected = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+			for (MainTableMetadata cur : MainTableMetadata.values()) {
+				if (cur.getField().getId() > 0) {
+					expected.setValue(cur, cur == col ? update[1] : mainTableRecord.getValue(cur));
+				}
+			}
+			Assert.assertEquals(spliced.array(), expected.array(), col.name());
+			Assert.assertEquals(spliced.getNumOfBytes(), expected.getNumOfBytes());
+			Assert.assertEquals(spliced.getListSize(MainTableMetadata.INT_LIST_COLUMN), 
+					expected.getListSize(MainTableMetadata.INT_LIST_COLUMN));
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void singlePassNestedSerialization() {
+		// main -> first level -> second level, all with pending updates
+		MainTableInterface aup = createRecord();
+		Record<MainTableMetadata> record = (Record<MainTableMetadata>) aup.getBaseObject();
+		SecondLevelNestedTableInterface second = aup.getNestedTableColumn().get(0).getNestedTableColumn().get(0);
+		
+		// a nested record growing after being set takes more bytes than estimated
+		List<Boolean> bools = Lists.newArrayList();
+		for (int i = 0; i < 1000; ++i) {
+			bools.add(i % 3 == 0);
+		}
+		second.setBooleanListColumn(bools);
+		byte[] bytes = record.array();
+		
+		// the same bytes as the ones with every nested record serialized on its own
+		for (MainTableMetadata col : new MainTableMetadata[] {
+				MainTableMetadata.NESTED_TABLE_COLUMN, MainTableMetadata.STRUCT_COLUMN}) {
+			Object value = record.getValue(col);
+			for (Object nested : value instanceof List ? (List<Object>) value : Arrays.asList(value)) {
+				((Record) nested).array();
+			}
+		}
+		WritableRecord<MainTableMetadata> expected = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		for (MainTableMetadata col : MainTableMetadata.values()) {
+			if (col.getField().getId() > 0) {
+				expected.setValue(col, record.getValue(col));
+			}
+		}
+		Assert.assertEquals(bytes, expected.array());
+		
+		ReadOnlyRecord<MainTableMetadata> readOnly = new ReadOnlyRecord<MainTableMetadata>(
+				MainTableMetadata.class, new RecordBuffer(bytes, 0, bytes.length));
+		Record first = (Record) ((List<?>) readOnly.getValue(MainTableMetadata.NESTED_TABLE_COLUMN)).get(0);
+		Assert.assertEquals(first.getInt(FirstLevelNestedTableMetadata.INT_REQUIRED_COLUMN), 202);
+		Record nested = (Record) ((List<?>) first.getValue(FirstLevelNestedTableMetadata.NESTED_TABLE_COLUMN)).get(0);
+		Assert.assertEquals(nested.getByte(SecondLevelNestedTableMetadata.BYTE_REQUIRED_COLUMN), (byte) 100);
+		Assert.assertEquals(nested.getValue(SecondLevelNestedTableMetadata.BOOLEAN_LIST_COLUMN), bools);
+	}
+
+	@Test
+	public void exactRecordSize() {
+		WritableRecord<MainTableMetadata> record = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		record.setLong(MainTableMetadata.LONG_REQUIRED_COLUMN, 5L);
+		record.setValue(MainTableMetadata.BYTE_COLUMN, (byte) -1); // the default value
+		record.setValue(MainTableMetadata.STRING_COLUMN, "Unknown"); // the default value
+		record.setValue(MainTableMetadata.BINARY_COLUMN, new byte[0]);
+		record.setValue(MainTableMetadata.INT_LIST_COLUMN, Arrays.asList(1, 2, 3));
+		
+		// a nested record with pending updates, which grows after being set
+		WritableRecord<FirstLevelNestedTableMetadata> nested = 
+				new WritableRecord<FirstLevelNestedTableMetadata>(FirstLevelNestedTableMetadata.class);
+		nested.setInt(FirstLevelNestedTableMetadata.INT_REQUIRED_COLUMN, 7);
+		record.setValue(MainTableMetadata.NESTED_TABLE_COLUMN, Arrays.asList(nested, nested));
+		nested.setValue(FirstLevelNestedTableMetadata.NESTED_TABLE_COLUMN, Arrays.asList(
+				new WritableRecord<SecondLevelNestedTableMetadata>(SecondLevelNestedTableMetadata.class)));
+		
+		int numOfBytes = record.getNumOfBytes();
+		RecordBuffer rb = record.getRecordBuffer();
+		Assert.assertEquals(rb.getRecordBufferSize(), numOfBytes);
+		Assert.assertEquals(record.getNumOfBytes(), numOfBytes);
+		// the array is allocated with the exact size, i.e., used without copying
+		Assert.assertSame(record.array(), rb.getByteBuffer().array());
+		Assert.assertEquals(record.getValue(MainTableMetadata.STRING_COLUMN), "Unknown");
+	}
+
+	@Test
+	public void primitiveSetters() {
+		WritableRecord<MainTableMetadata> unboxed = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		unboxed.setLong(MainTableMetadata.LONG_REQUIRED_COLUMN, 5L);
+		unboxed.setInt(MainTableMetadata.INT_SORTED_COLUMN, 6);
+		unboxed.setByte(MainTableMetadata.BYTE_COLUMN, (byte) 7);
+		unboxed.setBool(MainTableMetadata.BOOLEAN_COLUMN, true);
+		unboxed.setShort(MainTableMetadata.SHORT_COLUMN, (short) 8);
+		unboxed.setFloat(MainTableMetadata.FLOAT_COLUMN, 9.5f);
+		unboxed.setDouble(MainTableMetadata.DOUBLE_COLUMN, 0.001); // the default value
+		unboxed.setValue(MainTableMetadata.STRING_COLUMN, "abc");
+		
+		Assert.assertEquals(unboxed.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN), 5L);
+		Assert.assertEquals(unboxed.getValue(MainTableMetadata.INT_SORTED_COLUMN), 6);
+		Assert.assertEquals(unboxed.getByte(MainTableMetadata.BYTE_COLUMN), 7);
+		Assert.assertTrue(unboxed.getBool(MainTableMetadata.BOOLEAN_COLUMN));
+		Assert.assertEquals(unboxed.getShort(MainTableMetadata.SHORT_COLUMN), 8);
+		Assert.assertEquals(unboxed.getFloat(MainTableMetadata.FLOAT_COLUMN), 9.5f);
+		Assert.assertEquals(unboxed.getValue(MainTableMetadata.DOUBLE_COLUMN), 0.001);
+		
+		// the same bytes as the boxed values
+		WritableRecord<MainTableMetadata> boxed = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		boxed.setValue(MainTableMetadata.LONG_REQUIRED_COLUMN, 5L);
+		boxed.setValue(MainTableMetadata.INT_SORTED_COLUMN, 6);
+		boxed.setValue(MainTableMetadata.BYTE_COLUMN, (byte) 7);
+		boxed.setValue(MainTableMetadata.BOOLEAN_COLUMN, true);
+		boxed.setValue(MainTableMetadata.SHORT_COLUMN, (short) 8);
+		boxed.setValue(MainTableMetadata.FLOAT_COLUMN, 9.5f);
+		boxed.setValue(MainTableMetadata.STRING_COLUMN, "abc");
+		Assert.assertEquals(unboxed.array(), boxed.array());
+		
+		// decode the record for an update, where the values of the fixed length are kept
+		WritableRecord<MainTableMetadata> updated = new WritableRecord<MainTableMetadata>(
+				MainTableMetadata.class, new RecordBuffer(unboxed.array(), 0, unboxed.getNumOfBytes()));
+		updated.setDouble(MainTableMetadata.DOUBLE_COLUMN, 1.5);
+		Assert.assertEquals(updated.getDouble(MainTableMetadata.DOUBLE_COLUMN), 1.5);
+		Assert.assertEquals(updated.getInt(MainTableMetadata.INT_SORTED_COLUMN), 6);
+		ReadOnlyRecord<MainTableMetadata> readOnly = new ReadOnlyRecord<MainTableMetadata>(
+				MainTableMetadata.class, updated.getRecordBuffer());
+		Assert.assertEquals(readOnly.getDouble(MainTableMetadata.DOUBLE_COLUMN), 1.5);
+		Assert.assertEquals(readOnly.getFloat(MainTableMetadata.FLOAT_COLUMN), 9.5f);
+		Assert.assertEquals(readOnly.getString(MainTableMetadata.STRING_COLUMN), "abc");
+		
+		try {
+			unboxed.setInt(MainTableMetadata.LONG_REQUIRED_COLUMN, 1);
+			Assert.fail("The column is not of INT32");
+		} catch (IllegalArgumentException e) {
+			// expected 
+		}
+	}
+
 	@Test
 	public void assertAll() {
 		mainTableTestData.assertObjects(mainTableList);
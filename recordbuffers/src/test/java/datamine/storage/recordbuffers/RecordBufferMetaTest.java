@@ -15,10 +15,23 @@
  */
 package datamine.storage.recordbuffers;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import datamine.storage.idl.FieldValueOperatorInterface;
+import datamine.storage.idl.type.CollectionFieldType;
+import datamine.storage.idl.type.CollectionType;
+import datamine.storage.idl.type.FieldType;
+import datamine.storage.idl.type.GroupFieldType;
+import datamine.storage.recordbuffers.example.model.FirstLevelNestedTableMetadata;
 import datamine.storage.recordbuffers.example.model.MainTableMetadata;
+import datamine.storage.recordbuffers.idl.value.FieldValueOperatorFactory;
 
 public class RecordBufferMetaTest {
 	@Test
@@ -29,4 +42,131 @@ public class RecordBufferMetaTest {
 		Assert.assertEquals(MainTableMetadata.LONG_REQUIRED_COLUMN, rbm.getField("long_required_column"));
 		Assert.assertEquals(null, rbm.getField("fake_user_id"));
 	}
+	
+	@Test
+	public void getRecordOperatorConcurrently() throws Exception {
+		final RecordBufferMeta<MainTableMetadata> expected =
+				RecordBufferMeta.getRecordOperator(MainTableMetadata.class);
+		final AtomicInteger numOfMismatches = new AtomicInteger();
+		Thread[] threads = new Thread[16];
+		for (int t = 0; t < threads.length; ++t) {
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 10000; ++i) {
+						if (RecordBufferMeta.getRecordOperator(MainTableMetadata.class) != expected) {
+							numOfMismatches.incrementAndGet();
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(numOfMismatches.get(), 0);
+	}
+
+	@Test
+	public void getValueOperatorsConcurrently() throws Exception {
+		final int numOfThreads = 16;
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		for (int round = 0; round < 20; ++round) {
+			// a type never seen by the factory, so that all threads race to create its operator
+			final FieldType type = new CollectionFieldType(
+					new GroupFieldType("race_" + round + "_" + System.nanoTime(), FirstLevelNestedTableMetadata.class), 
+					CollectionType.LIST);
+			final CountDownLatch start = new CountDownLatch(1);
+			final AtomicReferenceArray<FieldValueOperatorInterface> operators = 
+					new AtomicReferenceArray<FieldValueOperatorInterface>(numOfThreads);
+			Thread[] threads = new Thread[numOfThreads];
+			for (int t = 0; t < threads.length; ++t) {
+				final int cur = t;
+				threads[t] = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							start.await();
+							operators.set(cur, FieldValueOperatorFactory.getOperator(type));
+						} catch (Throwable e) {
+							failure.compareAndSet(null, e);
+						}
+					}
+				});
+				threads[t].start();
+			}
+			start.countDown();
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			if (failure.get() != null) {
+				throw new AssertionError(failure.get());
+			}
+			for (int t = 0; t < numOfThreads; ++t) {
+				Assert.assertNotNull(operators.get(t));
+				Assert.assertSame(operators.get(t), operators.get(0));
+			}
+		}
+		
+		// the operators in the plan are the ones shared by all
+		FieldAccessPlan plan = RecordBufferMeta.getRecordOperator(MainTableMetadata.class).getAccessPlan();
+		for (MainTableMetadata col : MainTableMetadata.values()) {
+			int id = col.getField().getId();
+			if (id <= 0) {
+				continue; // derived fields are not stored
+			}
+			Assert.assertSame(plan.getOperator(id - 1), FieldValueOperatorFactory.getOperator(col.getField()));
+		}
+	}
+
+	@Test
+	public void getFieldWithReferenceOffset() {
+		RecordBufferMeta<MainTableMetadata> rbm = 
+				RecordBufferMeta.getRecordOperator(MainTableMetadata.class);
+		Assert.assertEquals(rbm.getSlotOfReferenceField(MainTableMetadata.LONG_REQUIRED_COLUMN.getField().getId()), 0);
+		Assert.assertEquals(rbm.getSlotOfReferenceField(MainTableMetadata.STRING_COLUMN.getField().getId()), -1);
+		Assert.assertEquals(rbm.getSequenceOfCollectionField(MainTableMetadata.STRING_COLUMN.getField().getId()), -1);
+		Assert.assertEquals(rbm.getSequenceOfCollectionField(MainTableMetadata.INT_LIST_COLUMN.getField().getId()), 1);
+		
+		WritableRecord<MainTableMetadata> record = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		record.setValue(MainTableMetadata.STRING_COLUMN, "abc");
+		record.setValue(MainTableMetadata.LONG_REQUIRED_COLUMN, 123L);
+		RecordBuffer rb = record.getRecordBuffer();
+		int offset = rbm.getFieldWithReferenceOffset(MainTableMetadata.LONG_REQUIRED_COLUMN, rb);
+		Assert.assertEquals(rb.getByteBuffer().getLong(offset), 123L);
+		
+		// a record of another version is scanned for the field
+		byte[] bytes = record.array();
+		ByteBuffer.wrap(bytes).putShort(0, (short) (rb.getByteBuffer().getShort(0) + 1));
+		Assert.assertEquals(rbm.getFieldWithReferenceOffset(MainTableMetadata.LONG_REQUIRED_COLUMN, 
+				new RecordBuffer(bytes, 0, bytes.length)), offset);
+	}
+
+	@Test
+	public void getAccessPlan() {
+		FieldAccessPlan plan = RecordBufferMeta.getRecordOperator(MainTableMetadata.class).getAccessPlan();
+		Assert.assertEquals(plan.size(), 12);
+		
+		int id = MainTableMetadata.LONG_REQUIRED_COLUMN.getField().getId() - 1;
+		Assert.assertEquals(plan.getKind(id), FieldAccessPlan.KIND_FIXED);
+		Assert.assertEquals(plan.getWidth(id), 8);
+		Assert.assertEquals(plan.getReferenceKind(id), FieldAccessPlan.REF_FREQUENTLY_USED);
+		
+		id = MainTableMetadata.INT_SORTED_COLUMN.getField().getId() - 1;
+		Assert.assertEquals(plan.getReferenceKind(id), FieldAccessPlan.REF_SORT_KEY);
+		
+		id = MainTableMetadata.STRING_COLUMN.getField().getId() - 1;
+		Assert.assertEquals(plan.getKind(id), FieldAccessPlan.KIND_STRING);
+		Assert.assertEquals(plan.getReferenceKind(id), FieldAccessPlan.REF_NONE);
+		
+		id = MainTableMetadata.INT_LIST_COLUMN.getField().getId() - 1;
+		Assert.assertEquals(plan.getKind(id), FieldAccessPlan.KIND_COLLECTION);
+		Assert.assertEquals(plan.getReferenceKind(id), FieldAccessPlan.REF_COLLECTION);
+		Assert.assertEquals(plan.getReferenceSlot(id), 1);
+		
+		// all fields in front of the string one have the fixed length
+		Assert.assertEquals(plan.getFixedPrefixLength(), 
+				MainTableMetadata.STRING_COLUMN.getField().getId() - 1);
+	}
 }
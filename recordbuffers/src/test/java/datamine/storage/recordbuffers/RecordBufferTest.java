@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+import datamine.storage.recordbuffers.example.data.MainTableTestData;
+import datamine.storage.recordbuffers.example.interfaces.MainTableInterface;
+import datamine.storage.recordbuffers.example.model.MainTableMetadata;
+import datamine.storage.recordbuffers.example.wrapper.MainTableRecord;
+import datamine.storage.recordbuffers.example.wrapper.builder.RecordBuffersBuilder;
+
+public class RecordBufferTest {
+
+	private MainTableTestData mainTableTestData;
+	private List<MainTableInterface> mainTableList;
+	private int recordNum = 3;
+
+	@BeforeMethod
+	private void prepareRecord() {
+		mainTableTestData = new MainTableTestData(MainTableTestData.createInputData(recordNum));
+		mainTableList = mainTableTestData.createObjects(new RecordBuffersBuilder());
+	}
+
+	@SuppressWarnings("unchecked")
+	private RecordBuffer getRecordBuffer(MainTableInterface table) {
+		return ((Record<MainTableMetadata>) table.getBaseObject()).getRecordBuffer();
+	}
+
+	/**
+	 * Copy all records into the output buffer one after another
+	 * @return the offsets of records in the output buffer
+	 */
+	private int[] putRecords(ByteBuffer out) {
+		int[] offsets = new int[recordNum + 1];
+		for (int i = 0; i < recordNum; ++i) {
+			RecordBuffer rb = getRecordBuffer(mainTableList.get(i));
+			offsets[i] = out.position();
+			BufferUtils.copy(rb.getByteBuffer(), 0, out, out.position(), rb.getRecordBufferSize());
+			out.position(out.position() + rb.getRecordBufferSize());
+		}
+		offsets[recordNum] = out.position();
+		return offsets;
+	}
+
+	private int getTotalSize() {
+		int total = 0;
+		for (MainTableInterface cur : mainTableList) {
+			total += getRecordBuffer(cur).getRecordBufferSize();
+		}
+		return total;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void assertRecords(ByteBuffer in, int[] offsets) {
+		List<MainTableInterface> tables = Lists.newArrayList();
+		for (int i = 0; i < recordNum; ++i) {
+			RecordBuffer rb = new RecordBuffer();
+			rb.wrap(in, offsets[i], offsets[i + 1] - offsets[i]);
+			Assert.assertEquals(rb.getByteBuffer().isDirect(), in.isDirect());
+			tables.add(new MainTableRecord(new ReadOnlyRecord(MainTableMetadata.class, rb)));
+		}
+		mainTableTestData.assertObjects(tables);
+	}
+
+	@Test
+	public void directBuffer() {
+		ByteBuffer direct = ByteBuffer.allocateDirect(getTotalSize() + 3);
+		direct.position(3);
+		assertRecords(direct, putRecords(direct));
+	}
+
+	@Test
+	public void mappedBuffer() throws IOException {
+		File file = File.createTempFile("record_buffer", ".bin");
+		file.deleteOnExit();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, getTotalSize());
+			int[] offsets = putRecords(mapped);
+			mapped.force();
+
+			MappedByteBuffer readOnly = channel.map(FileChannel.MapMode.READ_ONLY, 0, getTotalSize());
+			assertRecords(readOnly, offsets);
+		} finally {
+			raf.close();
+		}
+	}
+
+	@Test
+	public void writeAndRead() throws IOException {
+		ByteBuffer direct = ByteBuffer.allocateDirect(getTotalSize());
+		int[] offsets = putRecords(direct);
+		RecordBuffer rb = new RecordBuffer();
+		rb.wrap(direct, offsets[1], offsets[2] - offsets[1]);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		rb.write(new DataOutputStream(bytes));
+		RecordBuffer copy = new RecordBuffer();
+		copy.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		Assert.assertEquals(copy.getRecordBufferSize(), rb.getRecordBufferSize());
+		Assert.assertEquals(new RecordBuffer(rb).getByteBuffer(), rb.getByteBuffer());
+		Assert.assertEquals(copy.getByteBuffer(), getRecordBuffer(mainTableList.get(1)).getByteBuffer());
+	}
+
+	@Test
+	public void writeTo() {
+		ByteBuffer direct = ByteBuffer.allocateDirect(getTotalSize() + 3);
+		direct.position(3);
+		int[] offsets = new int[recordNum + 1];
+		for (int i = 0; i < recordNum; ++i) {
+			@SuppressWarnings("unchecked")
+			Record<MainTableMetadata> record = (Record<MainTableMetadata>) mainTableList.get(i).getBaseObject();
+			WritableRecord<MainTableMetadata> copy = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+			for (MainTableMetadata col : MainTableMetadata.values()) {
+				if (col.getField().getId() > 0) {
+					copy.setValue(col, record.getValue(col));
+				}
+			}
+			offsets[i] = direct.position();
+			Assert.assertEquals(copy.writeTo(direct), getRecordBuffer(mainTableList.get(i)).getRecordBufferSize());
+			Assert.assertEquals(copy.array(), record.array());
+		}
+		offsets[recordNum] = direct.position();
+		assertRecords(direct, offsets);
+
+		// no enough space 
+		try {
+			new WritableRecord<MainTableMetadata>(MainTableMetadata.class, 
+					getRecordBuffer(mainTableList.get(0))).writeTo(ByteBuffer.allocate(4));
+			Assert.fail("The output is too small");
+		} catch (BufferOverflowException e) {
+			// expected
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private WritableRecord<MainTableMetadata> copyRecord(MainTableInterface table, BufferAllocator allocator) {
+		Record<MainTableMetadata> record = (Record<MainTableMetadata>) table.getBaseObject();
+		WritableRecord<MainTableMetadata> copy = new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		copy.setAllocator(allocator);
+		for (MainTableMetadata col : MainTableMetadata.values()) {
+			if (col.getField().getId() > 0) {
+				copy.setValue(col, record.getValue(col));
+			}
+		}
+		return copy;
+	}
+
+	@Test
+	public void pooledAllocator() throws IOException {
+		PooledBufferAllocator allocator = new PooledBufferAllocator();
+		for (int round = 0; round < 2; ++round) {
+			for (MainTableInterface table : mainTableList) {
+				RecordBuffer rb = copyRecord(table, allocator).getRecordBuffer();
+				Assert.assertTrue(rb.isAllocated());
+				Assert.assertEquals(rb.getByteBuffer(), getRecordBuffer(table).getByteBuffer());
+				rb.release();
+				Assert.assertNull(rb.getByteBuffer());
+			}
+		}
+		// the first record of each round allocates, and the others reuse
+		Assert.assertEquals(allocator.getNumOfAllocations(), 2 * recordNum);
+		Assert.assertTrue(allocator.getNumOfHits() >= 2 * recordNum - 2);
+		Assert.assertTrue(allocator.getHitRate() > 0.5);
+		Assert.assertTrue(allocator.getNumOfRetainedBytes() > 0);
+
+		// a copy and the bytes read
+		RecordBuffer rb = getRecordBuffer(mainTableList.get(1));
+		RecordBuffer copy = new RecordBuffer(rb, allocator);
+		Assert.assertEquals(copy.getByteBuffer(), rb.getByteBuffer());
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		rb.write(new DataOutputStream(bytes));
+		RecordBuffer read = new RecordBuffer(allocator);
+		read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		Assert.assertEquals(read.getByteBuffer(), rb.getByteBuffer());
+		copy.release();
+		read.release();
+
+		// the wrapped bytes are never released
+		long retained = allocator.getNumOfRetainedBytes();
+		RecordBuffer wrapped = new RecordBuffer(allocator);
+		wrapped.wrap(ByteBuffer.allocate(64), 0, 64);
+		Assert.assertFalse(wrapped.isAllocated());
+		wrapped.release();
+		Assert.assertEquals(allocator.getNumOfRetainedBytes(), retained);
+	}
+
+	@Test
+	public void arenaAllocator() {
+		ArenaBufferAllocator allocator = new ArenaBufferAllocator(1 << 16);
+		for (int round = 0; round < 2; ++round) {
+			List<RecordBuffer> batch = Lists.newArrayList();
+			for (MainTableInterface table : mainTableList) {
+				batch.add(copyRecord(table, allocator).getRecordBuffer());
+			}
+			for (int i = 0; i < recordNum; ++i) {
+				Assert.assertEquals(batch.get(i).getByteBuffer(), 
+						getRecordBuffer(mainTableList.get(i)).getByteBuffer());
+			}
+			allocator.releaseAll();
+			Assert.assertEquals(allocator.getNumOfRetainedBytes(), (long) allocator.getNumOfChunks() << 16);
+		}
+		// only the first record creates a chunk, which is reused by the second batch
+		Assert.assertEquals(allocator.getNumOfChunks(), 1);
+		Assert.assertEquals(allocator.getNumOfAllocations(), 2 * recordNum);
+		Assert.assertEquals(allocator.getNumOfHits(), 2 * recordNum - 1);
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+
+import datamine.storage.recordbuffers.RecordBatchBuilder;
+import datamine.storage.recordbuffers.WritableRecord;
+import datamine.storage.recordbuffers.example.model.MainTableMetadata;
+
+/**
+ * A micro-benchmark comparing two ways to build a batch of main_table records
+ * from the values of columns, i.e., primitive arrays and a list of strings:
+ * a {@link WritableRecord} per record, and one {@link RecordBatchBuilder} for
+ * the whole batch.
+ *
+ * <p>
+ * Usage: RecordBatchBuilderBenchmark [number of records] [number of rounds]
+ * </p>
+ *
+ * @author yqi
+ */
+public class RecordBatchBuilderBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int ITERATIONS = 10;
+
+	private final int numOfRecords;
+	private final int rounds;
+	private final long[] longs;
+	private final int[] ints;
+	private final short[] shorts;
+	private final double[] doubles;
+	private final List<String> strings = Lists.newArrayList();
+	private long sink = 0;
+
+	public RecordBatchBuilderBenchmark(int numOfRecords, int rounds) {
+		this.numOfRecords = numOfRecords;
+		this.rounds = rounds;
+		this.longs = new long[numOfRecords];
+		this.ints = new int[numOfRecords];
+		this.shorts = new short[numOfRecords];
+		this.doubles = new double[numOfRecords];
+		Random random = new Random(7);
+		for (int i = 0; i < numOfRecords; ++i) {
+			longs[i] = random.nextLong();
+			ints[i] = random.nextInt();
+			shorts[i] = (short) random.nextInt(4); // with the default value 0
+			doubles[i] = random.nextDouble();
+			strings.add(i % 5 == 0 ? null : "value-" + random.nextInt(1000));
+		}
+	}
+
+	private void buildByRecords() {
+		for (int i = 0; i < numOfRecords; ++i) {
+			WritableRecord<MainTableMetadata> record =
+					new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+			record.setLong(MainTableMetadata.LONG_REQUIRED_COLUMN, longs[i]);
+			record.setInt(MainTableMetadata.INT_SORTED_COLUMN, ints[i]);
+			record.setShort(MainTableMetadata.SHORT_COLUMN, shorts[i]);
+			record.setDouble(MainTableMetadata.DOUBLE_COLUMN, doubles[i]);
+			record.setValue(MainTableMetadata.STRING_COLUMN, strings.get(i));
+			sink += record.getRecordBuffer().getRecordBufferSize();
+		}
+	}
+
+	private void buildByBatch() {
+		RecordBatchBuilder<MainTableMetadata> builder =
+				new RecordBatchBuilder<MainTableMetadata>(MainTableMetadata.class, numOfRecords);
+		builder.setLongs(MainTableMetadata.LONG_REQUIRED_COLUMN, longs);
+		builder.setInts(MainTableMetadata.INT_SORTED_COLUMN, ints);
+		builder.setShorts(MainTableMetadata.SHORT_COLUMN, shorts);
+		builder.setDoubles(MainTableMetadata.DOUBLE_COLUMN, doubles);
+		builder.setValues(MainTableMetadata.STRING_COLUMN, strings);
+		int[] offsets = new int[numOfRecords + 1];
+		ByteBuffer batch = builder.build(offsets);
+		sink += offsets[numOfRecords] + batch.capacity();
+	}
+
+	private double measure(boolean isBatch) {
+		long start = System.nanoTime();
+		for (int r = 0; r < rounds; ++r) {
+			if (isBatch) {
+				buildByBatch();
+			} else {
+				buildByRecords();
+			}
+		}
+		return (System.nanoTime() - start) / (double) rounds / numOfRecords;
+	}
+
+	private double measureBest(boolean isBatch) {
+		for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+			measure(isBatch);
+		}
+		double best = Double.MAX_VALUE;
+		for (int i = 0; i < ITERATIONS; ++i) {
+			best = Math.min(best, measure(isBatch));
+		}
+		return best;
+	}
+
+	public void run() {
+		System.out.println(String.format("%-28s %12s", "builder", "ns/record"));
+		System.out.println(String.format("%-28s %12.2f", "WritableRecord", measureBest(false)));
+		System.out.println(String.format("%-28s %12.2f", "RecordBatchBuilder", measureBest(true)));
+		System.out.println("(checksum " + sink + ")");
+	}
+
+	public static void main(String[] args) {
+		int numOfRecords = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		new RecordBatchBuilderBenchmark(numOfRecords, rounds).run();
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers.benchmark;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import datamine.storage.recordbuffers.RecordBufferMeta;
+import datamine.storage.recordbuffers.example.model.FirstLevelNestedTableMetadata;
+import datamine.storage.recordbuffers.example.model.MainTableMetadata;
+import datamine.storage.recordbuffers.example.model.SecondLevelNestedTableMetadata;
+import datamine.storage.recordbuffers.example.model.StructTableMetadata;
+
+/**
+ * A stress benchmark of the registry of {@link RecordBufferMeta} under many
+ * threads: all threads start looking up the same tables at once, so that
+ * they race to create the first instances, and then keep looking them up.
+ * Every thread must see the same instance of a table.
+ *
+ * <p>
+ * Usage: RecordBufferMetaRegistryBenchmark [number of threads] [number of lookups per thread]
+ * </p>
+ *
+ * @author yqi
+ */
+public class RecordBufferMetaRegistryBenchmark {
+
+	@SuppressWarnings("rawtypes")
+	private static final Class[] TABLES = {
+		MainTableMetadata.class, FirstLevelNestedTableMetadata.class,
+		SecondLevelNestedTableMetadata.class, StructTableMetadata.class };
+
+	private final int numOfThreads;
+	private final int numOfLookups;
+	private final AtomicReferenceArray<Object> instances = new AtomicReferenceArray<Object>(TABLES.length);
+	private final AtomicLong numOfMismatches = new AtomicLong();
+	private final AtomicLong sink = new AtomicLong();
+
+	public RecordBufferMetaRegistryBenchmark(int numOfThreads, int numOfLookups) {
+		this.numOfThreads = numOfThreads;
+		this.numOfLookups = numOfLookups;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void lookup(int round) {
+		long hash = 0;
+		for (int i = 0; i < numOfLookups; ++i) {
+			int k = (i + round) % TABLES.length;
+			Object meta = RecordBufferMeta.getRecordOperator(TABLES[k]);
+			if (!instances.compareAndSet(k, null, meta) && instances.get(k) != meta) {
+				numOfMismatches.incrementAndGet();
+			}
+			hash += System.identityHashCode(meta);
+		}
+		sink.addAndGet(hash);
+	}
+
+	public void run() throws InterruptedException {
+		final CyclicBarrier barrier = new CyclicBarrier(numOfThreads);
+		Thread[] threads = new Thread[numOfThreads];
+		final long[] elapsed = new long[numOfThreads];
+		for (int t = 0; t < numOfThreads; ++t) {
+			final int round = t;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						barrier.await();
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+					long start = System.nanoTime();
+					lookup(round);
+					elapsed[round] = System.nanoTime() - start;
+				}
+			});
+			threads[t].start();
+		}
+		long wallStart = System.nanoTime();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long wall = System.nanoTime() - wallStart;
+
+		long total = 0;
+		for (long cur : elapsed) {
+			total += cur;
+		}
+		long numOfCalls = (long) numOfThreads * numOfLookups;
+		System.out.println(String.format("%-28s %12d", "threads", numOfThreads));
+		System.out.println(String.format("%-28s %12.2f", "ns/lookup (per thread)", total / (double) numOfCalls));
+		System.out.println(String.format("%-28s %12.2f", "million lookups/s", numOfCalls * 1000.0 / wall));
+		System.out.println(String.format("%-28s %12d", "mismatched instances", numOfMismatches.get()));
+		System.out.println("(checksum " + sink.get() + ")");
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int numOfThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		int numOfLookups = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		new RecordBufferMetaRegistryBenchmark(numOfThreads, numOfLookups).run();
+	}
+}
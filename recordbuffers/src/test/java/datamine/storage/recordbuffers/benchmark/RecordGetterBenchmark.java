@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers.benchmark;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import datamine.storage.recordbuffers.ReadOnlyRecord;
+import datamine.storage.recordbuffers.Record;
+import datamine.storage.recordbuffers.RecordBuffer;
+import datamine.storage.recordbuffers.WritableRecord;
+import datamine.storage.recordbuffers.example.model.MainTableMetadata;
+
+/**
+ * A micro-benchmark measuring the time (ns/op) of every primitive getter of
+ * {@link ReadOnlyRecord}, in two scenarios:
+ * <i> cached: the same record is read repeatedly, i.e., all offsets are known
+ * <i> first: a flyweight record is reset onto the next record before each read
+ * 
+ * <p>
+ * Usage: RecordGetterBenchmark [number of records] [number of rounds]
+ * </p>
+ * 
+ * @author yqi
+ */
+public class RecordGetterBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int ITERATIONS = 10;
+	
+	/**
+	 * A getter to measure, which returns a number to keep the JIT from 
+	 * dropping the read.
+	 */
+	static abstract class Getter {
+		final String name;
+		Getter(String name) {
+			this.name = name;
+		}
+		abstract long get(Record<MainTableMetadata> record);
+	}
+	
+	private static final Getter[] GETTERS = {
+		new Getter("getLong (hasRef)") {
+			long get(Record<MainTableMetadata> r) {
+				return r.getLong(MainTableMetadata.LONG_REQUIRED_COLUMN);
+			}
+		},
+		new Getter("getInt (sort key)") {
+			long get(Record<MainTableMetadata> r) {
+				return r.getInt(MainTableMetadata.INT_SORTED_COLUMN);
+			}
+		},
+		new Getter("getByte") {
+			long get(Record<MainTableMetadata> r) {
+				return r.getByte(MainTableMetadata.BYTE_COLUMN);
+			}
+		},
+		new Getter("getBool") {
+			long get(Record<MainTableMetadata> r) {
+				return r.getBool(MainTableMetadata.BOOLEAN_COLUMN) ? 1 : 0;
+			}
+		},
+		new Getter("getShort") {
+			long get(Record<MainTableMetadata> r) {
+				return r.getShort(MainTableMetadata.SHORT_COLUMN);
+			}
+		},
+		new Getter("getFloat") {
+			long get(Record<MainTableMetadata> r) {
+				return (long) r.getFloat(MainTableMetadata.FLOAT_COLUMN);
+			}
+		},
+		new Getter("getDouble") {
+			long get(Record<MainTableMetadata> r) {
+				return (long) r.getDouble(MainTableMetadata.DOUBLE_COLUMN);
+			}
+		},
+		new Getter("getString") {
+			long get(Record<MainTableMetadata> r) {
+				return r.getString(MainTableMetadata.STRING_COLUMN).length();
+			}
+		},
+		new Getter("getBinary") {
+			long get(Record<MainTableMetadata> r) {
+				return r.getBinary(MainTableMetadata.BINARY_COLUMN).length;
+			}
+		},
+		new Getter("getValue (int)") {
+			long get(Record<MainTableMetadata> r) {
+				return (Integer) r.getValue(MainTableMetadata.INT_SORTED_COLUMN);
+			}
+		},
+		new Getter("getValue (double)") {
+			long get(Record<MainTableMetadata> r) {
+				return ((Double) r.getValue(MainTableMetadata.DOUBLE_COLUMN)).longValue();
+			}
+		},
+	};
+	
+	private final List<RecordBuffer> buffers = Lists.newArrayList();
+	private final List<Record<MainTableMetadata>> records = Lists.newArrayList();
+	private final int rounds;
+	private long sink = 0;
+	
+	public RecordGetterBenchmark(int numOfRecords, int rounds) {
+		this.rounds = rounds;
+		for (int i = 0; i < numOfRecords; ++i) {
+			WritableRecord<MainTableMetadata> record = 
+					new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+			record.setValue(MainTableMetadata.LONG_REQUIRED_COLUMN, (long) i);
+			record.setValue(MainTableMetadata.INT_SORTED_COLUMN, i);
+			record.setValue(MainTableMetadata.BYTE_COLUMN, (byte) i);
+			record.setValue(MainTableMetadata.BOOLEAN_COLUMN, true);
+			record.setValue(MainTableMetadata.SHORT_COLUMN, (short) (i + 1));
+			record.setValue(MainTableMetadata.FLOAT_COLUMN, i + 0.5f);
+			record.setValue(MainTableMetadata.DOUBLE_COLUMN, i + 0.25);
+			record.setValue(MainTableMetadata.STRING_COLUMN, "string value #" + i);
+			record.setValue(MainTableMetadata.BINARY_COLUMN, new byte[] {1, 2, 3, (byte) i});
+			record.setValue(MainTableMetadata.INT_LIST_COLUMN, Lists.newArrayList(i, i + 1, i + 2));
+			RecordBuffer rb = record.getRecordBuffer();
+			buffers.add(rb);
+			records.add(new ReadOnlyRecord<MainTableMetadata>(MainTableMetadata.class, rb));
+		}
+	}
+	
+	private double measureCached(Getter getter) {
+		long start = System.nanoTime();
+		for (int r = 0; r < rounds; ++r) {
+			for (int i = 0, n = records.size(); i < n; ++i) {
+				sink += getter.get(records.get(i));
+			}
+		}
+		return (System.nanoTime() - start) / (double) rounds / records.size();
+	}
+	
+	private double measureFirst(Getter getter, ReadOnlyRecord<MainTableMetadata> flyweight) {
+		long start = System.nanoTime();
+		for (int r = 0; r < rounds; ++r) {
+			for (int i = 0, n = buffers.size(); i < n; ++i) {
+				flyweight.reset(buffers.get(i));
+				sink += getter.get(flyweight);
+			}
+		}
+		return (System.nanoTime() - start) / (double) rounds / buffers.size();
+	}
+	
+	public void run() {
+		ReadOnlyRecord<MainTableMetadata> flyweight = 
+				new ReadOnlyRecord<MainTableMetadata>(MainTableMetadata.class);
+		System.out.println(String.format("%-20s %12s %12s", "getter", "cached ns/op", "first ns/op"));
+		for (Getter getter : GETTERS) {
+			for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+				measureCached(getter);
+				measureFirst(getter, flyweight);
+			}
+			double cached = Double.MAX_VALUE;
+			double first = Double.MAX_VALUE;
+			for (int i = 0; i < ITERATIONS; ++i) {
+				cached = Math.min(cached, measureCached(getter));
+				first = Math.min(first, measureFirst(getter, flyweight));
+			}
+			System.out.println(String.format("%-20s %12.2f %12.2f", getter.name, cached, first));
+		}
+		System.out.println("(checksum " + sink + ")");
+	}
+	
+	public static void main(String[] args) {
+		int numOfRecords = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		new RecordGetterBenchmark(numOfRecords, rounds).run();
+	}
+}
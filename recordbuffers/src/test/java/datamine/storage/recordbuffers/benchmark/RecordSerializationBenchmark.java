@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2016 Turn Inc. (yan.qi@turn.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package datamine.storage.recordbuffers.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import datamine.storage.api.RecordMetadataInterface;
+import datamine.storage.idl.Field;
+import datamine.storage.idl.type.CollectionFieldType;
+import datamine.storage.idl.type.FieldType;
+import datamine.storage.idl.type.GroupFieldType;
+import datamine.storage.recordbuffers.Record;
+import datamine.storage.recordbuffers.WritableRecord;
+import datamine.storage.recordbuffers.example.data.MainTableTestData;
+import datamine.storage.recordbuffers.example.interfaces.MainTableInterface;
+import datamine.storage.recordbuffers.example.model.MainTableMetadata;
+import datamine.storage.recordbuffers.example.wrapper.builder.RecordBuffersBuilder;
+
+/**
+ * A micro-benchmark measuring the serialization of main_table records with
+ * {@link WritableRecord}: all values of a record are set on a new instance,
+ * which is then either turned into a record buffer, or written into one 
+ * buffer reused for all records. The nested records are either the ones 
+ * already serialized, i.e., copied as bytes, or new ones built for every 
+ * record, i.e., serialized with the main record in one pass.
+ *
+ * <p>
+ * Usage: RecordSerializationBenchmark [number of records] [number of rounds]
+ * </p>
+ *
+ * @author yqi
+ */
+public class RecordSerializationBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int ITERATIONS = 10;
+
+	private final List<Object[]> valueList = Lists.newArrayList();
+	private final MainTableMetadata[] columns;
+	private final int rounds;
+	private long sink = 0;
+
+	@SuppressWarnings("unchecked")
+	public RecordSerializationBenchmark(int numOfRecords, int rounds) {
+		this.rounds = rounds;
+		List<MainTableMetadata> columnList = Lists.newArrayList();
+		for (MainTableMetadata col : MainTableMetadata.values()) {
+			if (col.getField().getId() > 0) { // skip the derived ones
+				columnList.add(col);
+			}
+		}
+		this.columns = columnList.toArray(new MainTableMetadata[columnList.size()]);
+
+		MainTableTestData data = new MainTableTestData(MainTableTestData.createInputData(numOfRecords));
+		for (MainTableInterface table : data.createObjects(new RecordBuffersBuilder())) {
+			Record<MainTableMetadata> record = (Record<MainTableMetadata>) table.getBaseObject();
+			Object[] values = new Object[columns.length];
+			for (int i = 0; i < columns.length; ++i) {
+				values[i] = record.getValue(columns[i]);
+				// serialize the nested records once, as the ones read from storage
+				for (Object nested : values[i] instanceof List ? (List<?>) values[i] : 
+					Collections.singletonList(values[i])) {
+					if (nested instanceof Record) {
+						((Record<?>) nested).getRecordBuffer();
+					}
+				}
+			}
+			valueList.add(values);
+		}
+	}
+
+	private WritableRecord<MainTableMetadata> createRecord(Object[] values, boolean isNestedFresh) {
+		WritableRecord<MainTableMetadata> record =
+				new WritableRecord<MainTableMetadata>(MainTableMetadata.class);
+		for (int j = 0; j < columns.length; ++j) {
+			record.setValue(columns[j], isNestedFresh ? 
+					rebuild(columns[j].getField().getType(), values[j]) : values[j]);
+		}
+		return record;
+	}
+
+	/**
+	 * Build the nested records of the value again from their values
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object rebuild(FieldType type, Object value) {
+		if (value == null) {
+			return null;
+		} else if (type instanceof GroupFieldType) {
+			Class tableClass = ((GroupFieldType) type).getTableClass();
+			Record source = (Record) value;
+			WritableRecord record = new WritableRecord(tableClass);
+			for (Object col : tableClass.getEnumConstants()) {
+				Field field = ((RecordMetadataInterface) col).getField();
+				if (field.getId() > 0) {
+					record.setValue(field, rebuild(field.getType(), source.getValue(field)));
+				}
+			}
+			return record;
+		} else if (type instanceof CollectionFieldType && 
+				((CollectionFieldType) type).getElementType() instanceof GroupFieldType) {
+			List<Object> list = Lists.newArrayList();
+			for (Object element : (List<?>) value) {
+				list.add(rebuild(((CollectionFieldType) type).getElementType(), element));
+			}
+			return list;
+		}
+		return value;
+	}
+
+	private double measure(ByteBuffer reused, boolean isNestedFresh) {
+		long start = System.nanoTime();
+		for (int r = 0; r < rounds; ++r) {
+			for (int i = 0, n = valueList.size(); i < n; ++i) {
+				WritableRecord<MainTableMetadata> record = createRecord(valueList.get(i), isNestedFresh);
+				if (reused == null) {
+					sink += record.getRecordBuffer().getRecordBufferSize();
+				} else {
+					reused.clear();
+					sink += record.writeTo(reused);
+				}
+			}
+		}
+		return (System.nanoTime() - start) / (double) rounds / valueList.size();
+	}
+
+	private double measureBest(ByteBuffer reused, boolean isNestedFresh) {
+		for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+			measure(reused, isNestedFresh);
+		}
+		double best = Double.MAX_VALUE;
+		for (int i = 0; i < ITERATIONS; ++i) {
+			best = Math.min(best, measure(reused, isNestedFresh));
+		}
+		return best;
+	}
+
+	public void run() {
+		int maxSize = 0;
+		for (Object[] values : valueList) {
+			maxSize = Math.max(maxSize, createRecord(values, false).getRecordBuffer().getRecordBufferSize());
+		}
+		System.out.println(String.format("%-28s %12s", "serializer", "ns/record"));
+		System.out.println(String.format("%-28s %12.2f", "getRecordBuffer", measureBest(null, false)));
+		System.out.println(String.format("%-28s %12.2f", "writeTo (reused)", 
+				measureBest(ByteBuffer.allocate(maxSize), false)));
+		System.out.println(String.format("%-28s %12.2f", "getRecordBuffer (new nested)", 
+				measureBest(null, true)));
+		System.out.println(String.format("%-28s %12.2f", "writeTo (new nested)", 
+				measureBest(ByteBuffer.allocate(maxSize), true)));
+		System.out.println("(checksum " + sink + ")");
+	}
+
+	public static void main(String[] args) {
+		int numOfRecords = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		new RecordSerializationBenchmark(numOfRecords, rounds).run();
+	}
+}
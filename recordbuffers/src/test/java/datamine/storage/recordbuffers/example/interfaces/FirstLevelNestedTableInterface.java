@@ -15,7 +15,7 @@
  */
 package datamine.storage.recordbuffers.example.interfaces;
 
-import datamine.storage.api.BaseInterface;
+import datamine.storage.api.*;
 
 import java.util.List;
 
@@ -37,6 +37,7 @@ public interface FirstLevelNestedTableInterface extends BaseInterface  {
 
 		public int getNestedTableColumnSize();
 
+
 		public void setDerivedValueImplementation(FirstLevelNestedTableDerivedValueInterface derived);
 
 }
@@ -15,7 +15,7 @@
  */
 package datamine.storage.recordbuffers.example.interfaces;
 
-import datamine.storage.api.BaseInterface;
+import datamine.storage.api.*;
 
 import java.util.List;
 
@@ -67,6 +67,8 @@ public interface MainTableInterface extends BaseInterface , Comparable<MainTable
 		public int getNestedTableColumnSize();
 		public int getIntListColumnSize();
 
+		public IntList getIntListColumnView();
+
 		public void setDerivedValueImplementation(MainTableDerivedValueInterface derived);
 
 }
@@ -15,7 +15,7 @@
  */
 package datamine.storage.recordbuffers.example.interfaces;
 
-import datamine.storage.api.BaseInterface;
+import datamine.storage.api.*;
 
 import java.util.List;
 
@@ -35,6 +35,8 @@ public interface SecondLevelNestedTableInterface extends BaseInterface  {
 
 		public int getBooleanListColumnSize();
 
+		public BoolList getBooleanListColumnView();
+
 
 }
 
@@ -15,7 +15,7 @@
  */
 package datamine.storage.recordbuffers.example.interfaces;
 
-import datamine.storage.api.BaseInterface;
+import datamine.storage.api.*;
 
 import java.util.List;
 
@@ -33,5 +33,6 @@ public interface StructTableInterface extends BaseInterface  {
 		public int getNestedTableColumnSize();
 
 
+
 }
 
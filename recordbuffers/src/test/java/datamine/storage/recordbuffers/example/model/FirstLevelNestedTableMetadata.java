@@ -28,9 +28,9 @@ import datamine.storage.idl.type.FieldTypeFactory;
  */
 public enum FirstLevelNestedTableMetadata implements RecordMetadataInterface {
 
-	INT_REQUIRED_COLUMN((short)1, "int_required_column", FieldTypeFactory.getPrimitiveType(PrimitiveType.INT32), true, null, false, false, false, false),
-	NESTED_TABLE_COLUMN((short)2, "nested_table_column", FieldTypeFactory.getListType(FieldTypeFactory.getGroupType(SecondLevelNestedTableMetadata.class)), false, null, false, false, false, false),
-	STRING_DERIVED_COLUMN((short)0, "string_derived_column", FieldTypeFactory.getPrimitiveType(PrimitiveType.STRING), false, (String)"Unknown", false, false, false, true),
+	INT_REQUIRED_COLUMN((short)1, "int_required_column", FieldTypeFactory.getPrimitiveType(PrimitiveType.INT32), true, null, false, false, false, false, false),
+	NESTED_TABLE_COLUMN((short)2, "nested_table_column", FieldTypeFactory.getListType(FieldTypeFactory.getGroupType(SecondLevelNestedTableMetadata.class)), false, null, false, false, false, false, false),
+	STRING_DERIVED_COLUMN((short)0, "string_derived_column", FieldTypeFactory.getPrimitiveType(PrimitiveType.STRING), false, (String)"Unknown", false, false, false, true, false),
 ;
 
 	static final short version = 1;
@@ -39,7 +39,8 @@ public enum FirstLevelNestedTableMetadata implements RecordMetadataInterface {
 
 	private FirstLevelNestedTableMetadata(short id, String name, FieldType type, 
 		boolean isRequired, Object defaultValue, boolean isDesSorted, 
-		boolean isAscSorted, boolean isFrequentlyUsed, boolean isDerived) {
+		boolean isAscSorted, boolean isFrequentlyUsed, boolean isDerived, 
+		boolean hasLargeList) {
 		field = Field.newBuilder(id, name, type).
 				withDefaultValue(defaultValue).
 				isRequired(isRequired).
@@ -47,6 +48,7 @@ public enum FirstLevelNestedTableMetadata implements RecordMetadataInterface {
 				isAscSorted(isAscSorted).
 				isFrequentlyUsed(isFrequentlyUsed).
 				isDerived(isDerived).
+				hasLargeList(hasLargeList).
 				build();
 	}
 
@@ -28,8 +28,8 @@ import datamine.storage.idl.type.FieldTypeFactory;
  */
 public enum SecondLevelNestedTableMetadata implements RecordMetadataInterface {
 
-	BYTE_REQUIRED_COLUMN((short)1, "byte_required_column", FieldTypeFactory.getPrimitiveType(PrimitiveType.BYTE), true, null, false, false, false, false),
-	BOOLEAN_LIST_COLUMN((short)2, "boolean_list_column", FieldTypeFactory.getListType(FieldTypeFactory.getPrimitiveType(PrimitiveType.BOOL)), false, null, false, false, false, false),
+	BYTE_REQUIRED_COLUMN((short)1, "byte_required_column", FieldTypeFactory.getPrimitiveType(PrimitiveType.BYTE), true, null, false, false, false, false, false),
+	BOOLEAN_LIST_COLUMN((short)2, "boolean_list_column", FieldTypeFactory.getListType(FieldTypeFactory.getPrimitiveType(PrimitiveType.BOOL)), false, null, false, false, false, false, false),
 ;
 
 	static final short version = 1;
@@ -38,7 +38,8 @@ public enum SecondLevelNestedTableMetadata implements RecordMetadataInterface {
 
 	private SecondLevelNestedTableMetadata(short id, String name, FieldType type, 
 		boolean isRequired, Object defaultValue, boolean isDesSorted, 
-		boolean isAscSorted, boolean isFrequentlyUsed, boolean isDerived) {
+		boolean isAscSorted, boolean isFrequentlyUsed, boolean isDerived, 
+		boolean hasLargeList) {
 		field = Field.newBuilder(id, name, type).
 				withDefaultValue(defaultValue).
 				isRequired(isRequired).
@@ -46,6 +47,7 @@ public enum SecondLevelNestedTableMetadata implements RecordMetadataInterface {
 				isAscSorted(isAscSorted).
 				isFrequentlyUsed(isFrequentlyUsed).
 				isDerived(isDerived).
+				hasLargeList(hasLargeList).
 				build();
 	}
 
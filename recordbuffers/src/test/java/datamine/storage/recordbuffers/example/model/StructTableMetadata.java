@@ -28,7 +28,7 @@ import datamine.storage.idl.type.FieldTypeFactory;
  */
 public enum StructTableMetadata implements RecordMetadataInterface {
 
-	NESTED_TABLE_COLUMN((short)1, "nested_table_column", FieldTypeFactory.getListType(FieldTypeFactory.getGroupType(SecondLevelNestedTableMetadata.class)), false, null, false, false, false, false),
+	NESTED_TABLE_COLUMN((short)1, "nested_table_column", FieldTypeFactory.getListType(FieldTypeFactory.getGroupType(SecondLevelNestedTableMetadata.class)), false, null, false, false, false, false, false),
 ;
 
 	static final short version = 1;
@@ -37,7 +37,8 @@ public enum StructTableMetadata implements RecordMetadataInterface {
 
 	private StructTableMetadata(short id, String name, FieldType type, 
 		boolean isRequired, Object defaultValue, boolean isDesSorted, 
-		boolean isAscSorted, boolean isFrequentlyUsed, boolean isDerived) {
+		boolean isAscSorted, boolean isFrequentlyUsed, boolean isDerived, 
+		boolean hasLargeList) {
 		field = Field.newBuilder(id, name, type).
 				withDefaultValue(defaultValue).
 				isRequired(isRequired).
@@ -45,6 +46,7 @@ public enum StructTableMetadata implements RecordMetadataInterface {
 				isAscSorted(isAscSorted).
 				isFrequentlyUsed(isFrequentlyUsed).
 				isDerived(isDerived).
+				hasLargeList(hasLargeList).
 				build();
 	}
 
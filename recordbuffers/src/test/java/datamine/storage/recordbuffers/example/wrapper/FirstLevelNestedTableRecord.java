@@ -17,7 +17,7 @@ package datamine.storage.recordbuffers.example.wrapper;
 
 import datamine.storage.recordbuffers.example.model.*;
 import datamine.storage.recordbuffers.example.interfaces.*;
-import datamine.storage.api.BaseInterface;
+import datamine.storage.api.*;
 import datamine.storage.recordbuffers.*;
 
 import java.nio.ByteBuffer;
@@ -133,7 +133,7 @@ public class FirstLevelNestedTableRecord implements FirstLevelNestedTableInterfa
 	public void setIntRequiredColumn(int input) {
 		if (1 == 1) {
 			
-			this.value.setValue(FirstLevelNestedTableMetadata.INT_REQUIRED_COLUMN, input);
+			this.value.setInt(FirstLevelNestedTableMetadata.INT_REQUIRED_COLUMN, input);
 		}
 	}
 
@@ -174,6 +174,7 @@ public class FirstLevelNestedTableRecord implements FirstLevelNestedTableInterfa
 
 
 
+
 	public static class FirstLevelNestedTableDefaultDerivedValues implements FirstLevelNestedTableDerivedValueInterface {
 
 	
@@ -17,7 +17,7 @@ package datamine.storage.recordbuffers.example.wrapper;
 
 import datamine.storage.recordbuffers.example.model.*;
 import datamine.storage.recordbuffers.example.interfaces.*;
-import datamine.storage.api.BaseInterface;
+import datamine.storage.api.*;
 import datamine.storage.recordbuffers.*;
 
 import java.nio.ByteBuffer;
@@ -184,12 +184,10 @@ public class MainTableRecord implements MainTableInterface {
 
     @Override
     public List<Integer> getIntListColumn() {
-            	List<Integer> dList = Lists.newArrayList();
-		List<Object> sList = (List<Object>) this.value.getValue(MainTableMetadata.INT_LIST_COLUMN);
-		if(sList != null) {
-		   	for (Object cur : sList) {
-    			dList.add((Integer) cur);
-	    	}
+            	IntList view = this.value.getIntList(MainTableMetadata.INT_LIST_COLUMN);
+		List<Integer> dList = Lists.newArrayListWithCapacity(view.size());
+		for (int i = 0; i < view.size(); i++) {
+			dList.add(view.get(i));
 		}
        return dList;
 
@@ -214,7 +212,7 @@ public class MainTableRecord implements MainTableInterface {
 	public void setLongRequiredColumn(long input) {
 		if (1 == 1) {
 			
-			this.value.setValue(MainTableMetadata.LONG_REQUIRED_COLUMN, input);
+			this.value.setLong(MainTableMetadata.LONG_REQUIRED_COLUMN, input);
 		}
 	}
 
@@ -223,7 +221,7 @@ public class MainTableRecord implements MainTableInterface {
 	public void setIntSortedColumn(int input) {
 		if (1 == 1) {
 			
-			this.value.setValue(MainTableMetadata.INT_SORTED_COLUMN, input);
+			this.value.setInt(MainTableMetadata.INT_SORTED_COLUMN, input);
 		}
 	}
 
@@ -232,7 +230,7 @@ public class MainTableRecord implements MainTableInterface {
 	public void setByteColumn(byte input) {
 		if (1 == 1) {
 			
-			this.value.setValue(MainTableMetadata.BYTE_COLUMN, input);
+			this.value.setByte(MainTableMetadata.BYTE_COLUMN, input);
 		}
 	}
 
@@ -241,7 +239,7 @@ public class MainTableRecord implements MainTableInterface {
 	public void setBooleanColumn(boolean input) {
 		if (1 == 1) {
 			
-			this.value.setValue(MainTableMetadata.BOOLEAN_COLUMN, input);
+			this.value.setBool(MainTableMetadata.BOOLEAN_COLUMN, input);
 		}
 	}
 
@@ -250,7 +248,7 @@ public class MainTableRecord implements MainTableInterface {
 	public void setShortColumn(short input) {
 		if (1 == 1) {
 			
-			this.value.setValue(MainTableMetadata.SHORT_COLUMN, input);
+			this.value.setShort(MainTableMetadata.SHORT_COLUMN, input);
 		}
 	}
 
@@ -259,7 +257,7 @@ public class MainTableRecord implements MainTableInterface {
 	public void setFloatColumn(float input) {
 		if (1 == 1) {
 			
-			this.value.setValue(MainTableMetadata.FLOAT_COLUMN, input);
+			this.value.setFloat(MainTableMetadata.FLOAT_COLUMN, input);
 		}
 	}
 
@@ -268,7 +266,7 @@ public class MainTableRecord implements MainTableInterface {
 	public void setDoubleColumn(double input) {
 		if (1 == 1) {
 			
-			this.value.setValue(MainTableMetadata.DOUBLE_COLUMN, input);
+			this.value.setDouble(MainTableMetadata.DOUBLE_COLUMN, input);
 		}
 	}
 
@@ -398,6 +396,12 @@ public class MainTableRecord implements MainTableInterface {
 	}
 
 
+	@Override
+	public IntList getIntListColumnView() {
+		return this.value.getIntList(MainTableMetadata.INT_LIST_COLUMN);
+	}
+
+
 	@Override
 	public int compareTo(MainTableInterface o) {
 		return (o.getIntSortedColumn() - this.getIntSortedColumn());
@@ -17,7 +17,7 @@ package datamine.storage.recordbuffers.example.wrapper;
 
 import datamine.storage.recordbuffers.example.model.*;
 import datamine.storage.recordbuffers.example.interfaces.*;
-import datamine.storage.api.BaseInterface;
+import datamine.storage.api.*;
 import datamine.storage.recordbuffers.*;
 
 import java.nio.ByteBuffer;
@@ -97,12 +97,10 @@ public class SecondLevelNestedTableRecord implements SecondLevelNestedTableInter
 
     @Override
     public List<Boolean> getBooleanListColumn() {
-            	List<Boolean> dList = Lists.newArrayList();
-		List<Object> sList = (List<Object>) this.value.getValue(SecondLevelNestedTableMetadata.BOOLEAN_LIST_COLUMN);
-		if(sList != null) {
-		   	for (Object cur : sList) {
-    			dList.add((Boolean) cur);
-	    	}
+            	BoolList view = this.value.getBoolList(SecondLevelNestedTableMetadata.BOOLEAN_LIST_COLUMN);
+		List<Boolean> dList = Lists.newArrayListWithCapacity(view.size());
+		for (int i = 0; i < view.size(); i++) {
+			dList.add(view.get(i));
 		}
        return dList;
 
@@ -115,7 +113,7 @@ public class SecondLevelNestedTableRecord implements SecondLevelNestedTableInter
 	public void setByteRequiredColumn(byte input) {
 		if (1 == 1) {
 			
-			this.value.setValue(SecondLevelNestedTableMetadata.BYTE_REQUIRED_COLUMN, input);
+			this.value.setByte(SecondLevelNestedTableMetadata.BYTE_REQUIRED_COLUMN, input);
 		}
 	}
 
@@ -147,6 +145,12 @@ public class SecondLevelNestedTableRecord implements SecondLevelNestedTableInter
 	}
 
 
+	@Override
+	public BoolList getBooleanListColumnView() {
+		return this.value.getBoolList(SecondLevelNestedTableMetadata.BOOLEAN_LIST_COLUMN);
+	}
+
+
 
 
 }
@@ -17,7 +17,7 @@ package datamine.storage.recordbuffers.example.wrapper;
 
 import datamine.storage.recordbuffers.example.model.*;
 import datamine.storage.recordbuffers.example.interfaces.*;
-import datamine.storage.api.BaseInterface;
+import datamine.storage.api.*;
 import datamine.storage.recordbuffers.*;
 
 import java.nio.ByteBuffer;
@@ -131,5 +131,6 @@ public class StructTableRecord implements StructTableInterface {
 
 
 
+
 }
 